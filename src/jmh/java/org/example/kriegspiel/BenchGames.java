@@ -0,0 +1,75 @@
+package org.example.kriegspiel;
+
+import org.example.kriegspiel.model.Player;
+import org.example.kriegspiel.model.unit.Artillery;
+import org.example.kriegspiel.model.unit.Cavalry;
+import org.example.kriegspiel.model.unit.Infantry;
+import org.example.kriegspiel.model.unit.Unit;
+
+/**
+ * Партии для бенчмарков: карта {@code size×size} и по {@code army} юнитов у каждой стороны.
+ * Первые четыре юнита — стандартная расстановка {@link Game}; остальные заполняют
+ * диагонали от своего угла навстречу друг другу. Стартовые зоны 3×3 остаются
+ * свободными от дополнительных юнитов (там равнина без ловушек — удобно для ходов).
+ */
+public final class BenchGames {
+    private BenchGames() {}
+
+    private static final int START_UNITS = 4;
+
+    public static Game withArmies(int size, int army) {
+        if (army < START_UNITS) {
+            throw new IllegalArgumentException("Армия меньше стартовой: " + army);
+        }
+        Game game = new Game(size, size);
+        Player p1 = game.getPlayer1();
+        Player p2 = game.getPlayer2();
+
+        // диагонали d = x + y от угла игрока 1; игрок 2 — зеркально
+        int d1 = 0;
+        int i1 = 0;
+        int d2 = 0;
+        int i2 = 0;
+        for (int n = START_UNITS; n < army; n++) {
+            int[] c1 = nextFree(game, d1, i1, false);
+            d1 = c1[2];
+            i1 = c1[3] + 1;
+            game.placeUnit(newUnit(p1, n), c1[0], c1[1]);
+
+            int[] c2 = nextFree(game, d2, i2, true);
+            d2 = c2[2];
+            i2 = c2[3] + 1;
+            game.placeUnit(newUnit(p2, n), c2[0], c2[1]);
+        }
+        return game;
+    }
+
+    // {x, y, d, i}: первая свободная клетка вне стартовых зон, начиная с диагонали d и позиции i на ней
+    private static int[] nextFree(Game game, int d, int i, boolean mirrored) {
+        int size = game.getMap().getWidth();
+        for (; d <= 2 * (size - 1); d++, i = 0) {
+            for (; i <= d; i++) {
+                int x = i;
+                int y = d - i;
+                if (x >= size || y >= size) continue;
+                if (mirrored) {
+                    x = size - 1 - x;
+                    y = size - 1 - y;
+                }
+                boolean startZone = (x < 3 && y < 3) || (x >= size - 3 && y >= size - 3);
+                if (!startZone && game.getMap().getUnitAt(x, y) == null) {
+                    return new int[]{x, y, d, i};
+                }
+            }
+        }
+        throw new IllegalArgumentException("Армия не помещается на карту " + size + "×" + size);
+    }
+
+    private static Unit newUnit(Player owner, int n) {
+        return switch (n % 3) {
+            case 0 -> new Infantry(owner);
+            case 1 -> new Cavalry(owner);
+            default -> new Artillery(owner);
+        };
+    }
+}
@@ -0,0 +1,152 @@
+package org.example.kriegspiel;
+
+import org.example.kriegspiel.map.GameMap;
+import org.example.kriegspiel.model.Player;
+import org.example.kriegspiel.model.unit.Infantry;
+import org.example.kriegspiel.model.unit.Unit;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Горячие пути движка в зависимости от размера карты и армии ({@link BenchGames}):
+ * <ul>
+ *   <li>{@code newGameMap}, {@code newGame} — генерация карты и расстановка армий;</li>
+ *   <li>{@code visibilityFor} — {@link GameMap#getVisibilityFor};</li>
+ *   <li>{@code canMoveTo}, {@code canAttack} — проверки правил для случайных пар юнит/клетка;</li>
+ *   <li>{@code moveAndEndTurn} — ход внутри стартовой зоны и передача хода;</li>
+ *   <li>{@code endTurn} — только передача хода (тик оглушения всей армии);</li>
+ *   <li>{@code attackAndKill} — две атаки артиллерии по свежему юниту до его гибели
+ *       (с четырьмя передачами хода), состояние после операции прежнее.</li>
+ * </ul>
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class EngineBenchmark {
+
+    private static final int LOOKUPS = 1024;
+
+    @Param({"32", "128", "512"})
+    public int size;
+
+    @Param({"4", "32", "256"})
+    public int army;
+
+    private Game game;
+    private GameMap map;
+    private Unit[] lookupUnits;
+    private int[] xs;
+    private int[] ys;
+
+    private Unit[] cycleUnits;
+    private int[] cycleX;
+    private int[] cycleY;
+    private int step;
+
+    private Unit artillery;
+    private final ActionBuffer actions = new ActionBuffer();
+    private long firstAction;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        game = BenchGames.withArmies(size, army);
+        map = game.getMap();
+        Player p1 = game.getPlayer1();
+        Player p2 = game.getPlayer2();
+
+        List<Unit> all = new ArrayList<>(p1.getUnits());
+        all.addAll(p2.getUnits());
+        SplittableRandom rnd = new SplittableRandom(42);
+        lookupUnits = new Unit[LOOKUPS];
+        xs = new int[LOOKUPS];
+        ys = new int[LOOKUPS];
+        for (int i = 0; i < LOOKUPS; i++) {
+            Unit u = all.get(rnd.nextInt(all.size()));
+            lookupUnits[i] = u;
+            xs[i] = u.getX() + rnd.nextInt(9) - 4;
+            ys[i] = u.getY() + rnd.nextInt(9) - 4;
+        }
+
+        // пехота обеих сторон ходит туда-обратно внутри стартовых зон
+        Unit a = map.getUnitAt(0, 0);
+        Unit b = map.getUnitAt(size - 2, size - 2);
+        cycleUnits = new Unit[]{a, b, a, b};
+        cycleX = new int[]{2, size - 3, 0, size - 2};
+        cycleY = new int[]{0, size - 2, 0, size - 2};
+
+        artillery = map.getUnitAt(1, 1);
+        game.generateActions(actions);
+        firstAction = actions.get(0);
+    }
+
+    @Benchmark
+    public GameMap newGameMap() {
+        return new GameMap(size, size);
+    }
+
+    @Benchmark
+    public Game newGame() {
+        return BenchGames.withArmies(size, army);
+    }
+
+    @Benchmark
+    public boolean[][] visibilityFor() {
+        return map.getVisibilityFor(game.getPlayer1());
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(LOOKUPS)
+    public void canMoveTo(Blackhole bh) {
+        for (int i = 0; i < LOOKUPS; i++) bh.consume(lookupUnits[i].canMoveTo(xs[i], ys[i], map));
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(LOOKUPS)
+    public void canAttack(Blackhole bh) {
+        for (int i = 0; i < LOOKUPS; i++) bh.consume(lookupUnits[i].canAttack(xs[i], ys[i], map));
+    }
+
+    @Benchmark
+    public int generateActions() {
+        return game.generateActions(actions);
+    }
+
+    @Benchmark
+    public void makeUnmake() {
+        game.make(firstAction);
+        game.unmake();
+    }
+
+    @Benchmark
+    public void moveAndEndTurn() {
+        int i = step;
+        step = (i + 1) & 3;
+        game.moveUnit(cycleUnits[i], cycleX[i], cycleY[i]);
+        game.endTurn();
+    }
+
+    @Benchmark
+    public void endTurn() {
+        game.endTurn();
+    }
+
+    @Benchmark
+    public Unit attackAndKill() {
+        Unit target = new Infantry(game.getPlayer2());
+        game.placeUnit(target, 2, 2);
+        while (target.isAlive()) {
+            game.attack(artillery, target);
+            game.endTurn();
+            game.endTurn();
+        }
+        return target;
+    }
+}
@@ -0,0 +1,151 @@
+package org.example.kriegspiel;
+
+import org.example.kriegspiel.map.TerrainType;
+import org.example.kriegspiel.net.GameStateDTO;
+import org.example.kriegspiel.net.UnitDTO;
+import org.example.kriegspiel.net.client.ClientGameState;
+import org.openjdk.jmh.annotations.*;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Время кадра MapPanel на большой карте. Рисуем в окно 1200×1200:
+ * <ul>
+ *   <li>{@code repaintIndexed} — видимая область, слой terrain из кэша;</li>
+ *   <li>{@code repaintAfterStateChange} — то же, но с перестройкой слоя terrain/тумана;</li>
+ *   <li>{@code repaintHoverCell} — перерисовка одной клетки при наведении мыши;</li>
+ *   <li>{@code repaintLinearScan} — поиск юнита линейным проходом по списку
+ *       ({@link LinearScanState}), как было до индекса клеток.</li>
+ * </ul>
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+@State(Scope.Benchmark)
+public class MapPanelRepaintBenchmark {
+
+    @Param({"200"})
+    public int size;
+
+    @Param({"2000"})
+    public int units;
+
+    private GameStateDTO dto;
+    private ClientGameState indexedState;
+    private MapPanel indexed;
+    private MapPanel linear;
+    private BufferedImage image;
+    private Graphics2D g;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        dto = syntheticState(size, units);
+        indexedState = new ClientGameState(dto);
+        indexed = panel(indexedState);
+        linear = panel(new LinearScanState(dto));
+        image = new BufferedImage(1200, 1200, BufferedImage.TYPE_INT_RGB);
+        g = image.createGraphics();
+        g.setClip(0, 0, image.getWidth(), image.getHeight());
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        g.dispose();
+    }
+
+    @Benchmark
+    public BufferedImage repaintIndexed() {
+        indexed.paint(g);
+        return image;
+    }
+
+    @Benchmark
+    public BufferedImage repaintAfterStateChange() {
+        indexedState.updateFromDTO(dto);
+        indexed.paint(g);
+        return image;
+    }
+
+    @Benchmark
+    public BufferedImage repaintHoverCell() {
+        Graphics2D cell = (Graphics2D) g.create(300, 300, 60, 60);
+        cell.translate(-300, -300);
+        indexed.paint(cell);
+        cell.dispose();
+        return image;
+    }
+
+    @Benchmark
+    public BufferedImage repaintLinearScan() {
+        linear.paint(g);
+        return image;
+    }
+
+    private static MapPanel panel(ClientGameState state) {
+        MapPanel panel = new MapPanel(state);
+        panel.setSize(panel.getPreferredSize());
+        return panel;
+    }
+
+    static GameStateDTO syntheticState(int size, int units) {
+        SplittableRandom rnd = new SplittableRandom(7);
+        TerrainType[] types = TerrainType.values();
+
+        GameStateDTO dto = new GameStateDTO();
+        dto.width = size;
+        dto.height = size;
+        dto.player1Name = "p1";
+        dto.player2Name = "p2";
+        dto.currentPlayer = 1;
+        dto.terrain = new TerrainType[size][size];
+        dto.traps = new boolean[size][size];
+        for (int y = 0; y < size; y++) {
+            for (int x = 0; x < size; x++) {
+                // примерно треть карты в тумане
+                dto.terrain[y][x] = rnd.nextInt(3) == 0 ? null : types[rnd.nextInt(types.length)];
+            }
+        }
+
+        String[] kinds = {"Infantry", "Cavalry", "Artillery"};
+        boolean[] taken = new boolean[size * size];
+        for (int i = 0; i < units; i++) {
+            int cell;
+            do {
+                cell = rnd.nextInt(size * size);
+            } while (taken[cell]);
+            taken[cell] = true;
+
+            UnitDTO u = new UnitDTO();
+            u.id = i;
+            u.type = kinds[i % kinds.length];
+            u.owner = 1 + (i & 1);
+            u.hp = 5;
+            u.x = cell % size;
+            u.y = cell / size;
+            dto.units.add(u);
+        }
+        return dto;
+    }
+
+    /**
+     * Поведение до индекса: линейный поиск по списку юнитов.
+     */
+    static final class LinearScanState extends ClientGameState {
+        LinearScanState(GameStateDTO dto) {
+            super(dto);
+        }
+
+        @Override
+        public UnitDTO getUnitAt(int x, int y) {
+            for (UnitDTO u : getDto().units) {
+                if (u.x == x && u.y == y) return u;
+            }
+            return null;
+        }
+    }
+}
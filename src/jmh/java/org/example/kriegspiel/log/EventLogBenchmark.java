@@ -0,0 +1,97 @@
+package org.example.kriegspiel.log;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.net.InetSocketAddress;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Цена записи о входящем кадре в потоке WebSocket: прежний
+ * {@code System.out.println("MSG FROM " + addr + ": " + message)} (stdout
+ * с автосбросом, направленный в /dev/null) против {@link EventLog} на
+ * уровне INFO (кадры не пишутся), DEBUG и DEBUG с текстом сообщения.
+ * Запуск с несколькими потоками показывает, что println сериализует их
+ * на мониторе PrintStream.
+ *
+ * <pre>
+ * java -jar target/benchmarks.jar EventLogBenchmark -t 1
+ * java -jar target/benchmarks.jar EventLogBenchmark -t 4
+ * </pre>
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class EventLogBenchmark {
+
+    private static final String MESSAGE =
+            "{\"type\":\"ACTION\",\"payload\":{\"action\":\"MOVE\",\"fromX\":3,\"fromY\":4,\"toX\":4,\"toY\":4}}";
+
+    private final InetSocketAddress addr = new InetSocketAddress("127.0.0.1", 52114);
+
+    private PrintStream stdout;
+    private EventLog info;
+    private EventLog debug;
+    private EventLog payloads;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        stdout = new PrintStream(new FileOutputStream("/dev/null"), true);
+        info = new EventLog(new FileOutputStream("/dev/null"), EventLog.Format.JSON,
+                EventLog.Level.INFO, 1, false, EventLog.DEFAULT_CAPACITY);
+        debug = new EventLog(new FileOutputStream("/dev/null"), EventLog.Format.JSON,
+                EventLog.Level.DEBUG, 1, false, EventLog.DEFAULT_CAPACITY);
+        payloads = new EventLog(new FileOutputStream("/dev/null"), EventLog.Format.JSON,
+                EventLog.Level.DEBUG, 1, true, EventLog.DEFAULT_CAPACITY);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        stdout.close();
+        info.close();
+        debug.close();
+        payloads.close();
+    }
+
+    @Benchmark
+    public void println() {
+        stdout.println("MSG FROM " + addr + ": " + MESSAGE);
+    }
+
+    @Benchmark
+    public void eventLogInfo() {
+        frame(info);
+    }
+
+    @Benchmark
+    public void eventLogDebug() {
+        frame(debug);
+    }
+
+    @Benchmark
+    public void eventLogDebugPayloads() {
+        frame(payloads);
+    }
+
+    // как в GameServer.onMessage
+    private void frame(EventLog log) {
+        if (log.isEnabled(EventLog.Level.DEBUG)) {
+            log.log(EventLog.Level.DEBUG, "message", addr, MESSAGE.length(), log.logsPayloads() ? MESSAGE : null);
+        }
+    }
+
+    /**
+     * Сколько событий отброшено за прогон: поток вывода не успевает за {@code -t N}.
+     */
+    @TearDown(Level.Iteration)
+    public void reportDrops() {
+        if (payloads.getDropped() > 0 || debug.getDropped() > 0) {
+            System.out.println("dropped: debug " + debug.getDropped() + ", payloads " + payloads.getDropped());
+        }
+    }
+}
@@ -0,0 +1,135 @@
+package org.example.kriegspiel.map;
+
+import org.example.kriegspiel.Game;
+import org.example.kriegspiel.model.unit.Unit;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * getTerrainAt/getUnitAt на упакованной карте против прежней раскладки
+ * {@code Cell[height][width]} (воспроизведена здесь как {@link LegacyGrid}).
+ * Объём памяти — см. {@link MapFootprint}. Генерация карты — в вызывающем
+ * потоке и тайлами в общем пуле.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+@State(Scope.Benchmark)
+public class GameMapBenchmark {
+
+    private static final int LOOKUPS = 1024;
+
+    @Param({"64", "1024", "4096"})
+    public int size;
+
+    private GameMap map;
+    private LegacyGrid legacy;
+    private int[] xs;
+    private int[] ys;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        map = new Game(size, size).getMap();
+        legacy = new LegacyGrid(map);
+
+        SplittableRandom rnd = new SplittableRandom(42);
+        xs = new int[LOOKUPS];
+        ys = new int[LOOKUPS];
+        for (int i = 0; i < LOOKUPS; i++) {
+            xs[i] = rnd.nextInt(size);
+            ys[i] = rnd.nextInt(size);
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(LOOKUPS)
+    public void terrainPacked(Blackhole bh) {
+        for (int i = 0; i < LOOKUPS; i++) bh.consume(map.getTerrainAt(xs[i], ys[i]));
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(LOOKUPS)
+    public void terrainCells(Blackhole bh) {
+        for (int i = 0; i < LOOKUPS; i++) bh.consume(legacy.getTerrainAt(xs[i], ys[i]));
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(LOOKUPS)
+    public void unitPacked(Blackhole bh) {
+        for (int i = 0; i < LOOKUPS; i++) bh.consume(map.getUnitAt(xs[i], ys[i]));
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(LOOKUPS)
+    public void unitCells(Blackhole bh) {
+        for (int i = 0; i < LOOKUPS; i++) bh.consume(legacy.getUnitAt(xs[i], ys[i]));
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    @BenchmarkMode(Mode.AverageTime)
+    public int[] generateSerial() {
+        return MapGenerator.generate(42, size, size, new byte[size * size], null);
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    @BenchmarkMode(Mode.AverageTime)
+    public int[] generateParallel() {
+        return MapGenerator.generate(42, size, size, new byte[size * size], ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Прежнее хранение: по объекту на клетку.
+     */
+    static final class LegacyGrid {
+
+        static final class Cell {
+            final int x;
+            final int y;
+            final TerrainType terrain;
+            Unit unit;
+            boolean hasTrap;
+
+            Cell(int x, int y, TerrainType terrain) {
+                this.x = x;
+                this.y = y;
+                this.terrain = terrain;
+            }
+        }
+
+        final int width;
+        final int height;
+        final Cell[][] cells;
+
+        LegacyGrid(GameMap source) {
+            width = source.getWidth();
+            height = source.getHeight();
+            cells = new Cell[height][width];
+            for (int y = 0; y < height; y++) {
+                for (int x = 0; x < width; x++) {
+                    Cell c = new Cell(x, y, source.getTerrainAt(x, y));
+                    c.unit = source.getUnitAt(x, y);
+                    c.hasTrap = source.hasTrapAt(x, y);
+                    cells[y][x] = c;
+                }
+            }
+        }
+
+        TerrainType getTerrainAt(int x, int y) {
+            if (x < 0 || x >= width || y < 0 || y >= height) return TerrainType.PLAIN;
+            return cells[y][x].terrain;
+        }
+
+        Unit getUnitAt(int x, int y) {
+            if (x < 0 || x >= width || y < 0 || y >= height) return null;
+            return cells[y][x].unit;
+        }
+    }
+}
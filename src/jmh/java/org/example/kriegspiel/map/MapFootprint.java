@@ -0,0 +1,39 @@
+package org.example.kriegspiel.map;
+
+import org.example.kriegspiel.Game;
+
+/**
+ * Грубая оценка памяти, занимаемой картой (упакованной и в раскладке Cell[][]).
+ *
+ * <pre>
+ * java -Xmx4g -cp target/benchmarks.jar org.example.kriegspiel.map.MapFootprint 4096
+ * </pre>
+ */
+public final class MapFootprint {
+    private MapFootprint() {}
+
+    public static void main(String[] args) {
+        int size = args.length > 0 ? Integer.parseInt(args[0]) : 4096;
+
+        long base = usedHeap();
+        Game game = new Game(size, size);
+        long packed = usedHeap() - base;
+        System.out.printf("%dx%d packed GameMap (+ visibility): %.1f MB%n", size, size, packed / 1e6);
+
+        base = usedHeap();
+        GameMapBenchmark.LegacyGrid legacy = new GameMapBenchmark.LegacyGrid(game.getMap());
+        long cells = usedHeap() - base;
+        System.out.printf("%dx%d Cell[][] layout: %.1f MB%n", size, size, cells / 1e6);
+
+        // держим ссылки живыми до последнего замера
+        if (legacy.width != game.getMap().getWidth()) throw new AssertionError();
+    }
+
+    private static long usedHeap() {
+        Runtime rt = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return rt.totalMemory() - rt.freeMemory();
+    }
+}
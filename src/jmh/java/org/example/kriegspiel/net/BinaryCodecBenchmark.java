@@ -0,0 +1,72 @@
+package org.example.kriegspiel.net;
+
+import com.google.gson.Gson;
+import org.example.kriegspiel.Game;
+import org.example.kriegspiel.net.server.GameStateMapper;
+import org.openjdk.jmh.annotations.*;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Персональный STATE (в тумане, как его видит игрок 1): {@link BinaryCodec}
+ * против JSON через {@link NetCodec}. Размеры кадров печатаются в setup.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class BinaryCodecBenchmark {
+
+    @Param({"16", "64", "256"})
+    public int size;
+
+    private Gson json;
+    private NetMessage message;
+    private String encodedJson;
+    private byte[] encodedBinary;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        json = NetCodec.gson();
+        Game game = new Game(size, size);
+        GameStateDTO dto = GameStateMapper.fromGame(game);
+        boolean[][] visible = game.getMap().getVisibilityFor(game.getPlayer1());
+        for (int y = 0; y < size; y++) {
+            for (int x = 0; x < size; x++) {
+                if (!visible[y][x]) dto.terrain[y][x] = null;
+                dto.traps[y][x] = false;
+            }
+        }
+        dto.units.removeIf(u -> u.owner != 1 && !visible[u.y][u.x]);
+
+        message = new NetMessage(Protocol.TYPE_STATE, dto);
+        encodedJson = json.toJson(message);
+        encodedBinary = BinaryCodec.encode(message);
+        System.out.printf("%n%dx%d STATE: json %d B, binary %d B%n", size, size,
+                encodedJson.getBytes(StandardCharsets.UTF_8).length, encodedBinary.length);
+    }
+
+    @Benchmark
+    public String encodeJson() {
+        return json.toJson(message);
+    }
+
+    @Benchmark
+    public byte[] encodeBinary() {
+        return BinaryCodec.encode(message);
+    }
+
+    @Benchmark
+    public Object decodeJson() {
+        return json.fromJson(encodedJson, NetMessage.class).payload;
+    }
+
+    @Benchmark
+    public Object decodeBinary() {
+        return BinaryCodec.decode(ByteBuffer.wrap(encodedBinary)).payload;
+    }
+}
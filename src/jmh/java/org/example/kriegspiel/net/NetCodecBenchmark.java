@@ -0,0 +1,64 @@
+package org.example.kriegspiel.net;
+
+import com.google.gson.Gson;
+import org.example.kriegspiel.BenchGames;
+import org.example.kriegspiel.net.server.GameStateMapper;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Кодирование/декодирование STATE: {@link NetCodec} против прежнего пути
+ * (рефлексивный Gson, terrain массивом имён enum, payload через toJsonTree).
+ * Размер карты и армии — см. {@link BenchGames}.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class NetCodecBenchmark {
+
+    @Param({"32", "64", "128"})
+    public int size;
+
+    @Param({"4", "32", "256"})
+    public int army;
+
+    private Gson codec;
+    private Gson legacy;
+    private NetMessage message;
+    private String codecJson;
+    private String legacyJson;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        codec = NetCodec.gson();
+        legacy = new Gson();
+        message = new NetMessage(Protocol.TYPE_STATE, GameStateMapper.fromGame(BenchGames.withArmies(size, army)));
+        codecJson = codec.toJson(message);
+        legacyJson = legacy.toJson(message);
+    }
+
+    @Benchmark
+    public String encodeCodec() {
+        return codec.toJson(message);
+    }
+
+    @Benchmark
+    public String encodeLegacy() {
+        return legacy.toJson(message);
+    }
+
+    @Benchmark
+    public GameStateDTO decodeCodec() {
+        return (GameStateDTO) codec.fromJson(codecJson, NetMessage.class).payload;
+    }
+
+    @Benchmark
+    public GameStateDTO decodeLegacy() {
+        NetMessage msg = legacy.fromJson(legacyJson, NetMessage.class);
+        return legacy.fromJson(legacy.toJsonTree(msg.payload), GameStateDTO.class);
+    }
+}
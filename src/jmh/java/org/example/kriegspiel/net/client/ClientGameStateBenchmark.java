@@ -0,0 +1,62 @@
+package org.example.kriegspiel.net.client;
+
+import org.example.kriegspiel.BenchGames;
+import org.example.kriegspiel.net.GameStateDTO;
+import org.example.kriegspiel.net.server.GameStateMapper;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link ClientGameState#getUnitAt} по случайным клеткам и перестройка индекса
+ * клеток при получении нового STATE.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ClientGameStateBenchmark {
+
+    private static final int LOOKUPS = 1024;
+
+    @Param({"32", "128", "512"})
+    public int size;
+
+    @Param({"4", "32", "256"})
+    public int army;
+
+    private GameStateDTO dto;
+    private ClientGameState state;
+    private int[] xs;
+    private int[] ys;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        dto = GameStateMapper.fromGame(BenchGames.withArmies(size, army));
+        state = new ClientGameState(dto);
+
+        SplittableRandom rnd = new SplittableRandom(42);
+        xs = new int[LOOKUPS];
+        ys = new int[LOOKUPS];
+        for (int i = 0; i < LOOKUPS; i++) {
+            xs[i] = rnd.nextInt(size);
+            ys[i] = rnd.nextInt(size);
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(LOOKUPS)
+    public void getUnitAt(Blackhole bh) {
+        for (int i = 0; i < LOOKUPS; i++) bh.consume(state.getUnitAt(xs[i], ys[i]));
+    }
+
+    @Benchmark
+    public ClientGameState updateFromDTO() {
+        state.updateFromDTO(dto);
+        return state;
+    }
+}
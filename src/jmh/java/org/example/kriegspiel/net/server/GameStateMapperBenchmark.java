@@ -0,0 +1,55 @@
+package org.example.kriegspiel.net.server;
+
+import org.example.kriegspiel.BenchGames;
+import org.example.kriegspiel.Game;
+import org.example.kriegspiel.net.GameStateDTO;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Построение состояния для отправки:
+ * <ul>
+ *   <li>{@code fromGame} — полное состояние без тумана;</li>
+ *   <li>{@code forViewer} — персональное состояние игрока 1 в новом DTO;</li>
+ *   <li>{@code forViewerReused} — то же в переиспользуемом буфере, как у {@link Viewer}.</li>
+ * </ul>
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class GameStateMapperBenchmark {
+
+    @Param({"32", "128", "512"})
+    public int size;
+
+    @Param({"4", "32", "256"})
+    public int army;
+
+    private Game game;
+    private GameStateDTO buffer;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        game = BenchGames.withArmies(size, army);
+        buffer = new GameStateDTO();
+    }
+
+    @Benchmark
+    public GameStateDTO fromGame() {
+        return GameStateMapper.fromGame(game);
+    }
+
+    @Benchmark
+    public GameStateDTO forViewer() {
+        return GameStateMapper.forViewer(game, 1);
+    }
+
+    @Benchmark
+    public GameStateDTO forViewerReused() {
+        return GameStateMapper.forViewer(game, 1, buffer);
+    }
+}
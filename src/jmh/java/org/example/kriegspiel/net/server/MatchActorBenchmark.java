@@ -0,0 +1,113 @@
+package org.example.kriegspiel.net.server;
+
+import com.google.gson.Gson;
+import org.example.kriegspiel.net.ActionRequest;
+import org.example.kriegspiel.net.Protocol;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Действия (actions/sec) в {@value #MATCHES} одновременных партиях. Ходы приходят
+ * в фиксированный пул платформенных потоков, как у Java-WebSocket (по потоку на ядро):
+ * <ul>
+ *   <li>{@code platformLock} — поток пула сам применяет ход под монитором комнаты
+ *       (как до акторов);</li>
+ *   <li>{@code virtualActor} — поток пула кладёт ход в почтовый ящик комнаты,
+ *       применяет его виртуальный поток актора.</li>
+ * </ul>
+ * {@code blockMicros} — блокирующая работа после хода (запись журнала с ожиданием
+ * диска, удалённый вызов): в {@code platformLock} её ждут потоки пула, в
+ * {@code virtualActor} — только виртуальные потоки.
+ *
+ * <pre>
+ * java -jar target/benchmarks.jar MatchActorBenchmark
+ * java -jar target/benchmarks.jar MatchActorBenchmark -p blockMicros=0
+ * </pre>
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class MatchActorBenchmark {
+
+    private static final int MATCHES = 10_000;
+    private static final int SIZE = 12;
+    // ходов одной партии за вызов: полный цикл туда-обратно
+    private static final int ROUND = 4;
+
+    @Param({"0", "100"})
+    public long blockMicros;
+
+    private GameRoom[] rooms;
+    private ActionRequest[] cycle;
+    private ExecutorService workers;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        MessageSender sender = new MessageSender(new Gson());
+        rooms = new GameRoom[MATCHES];
+        for (int i = 0; i < MATCHES; i++) {
+            rooms[i] = new GameRoom("bench" + i, SIZE, SIZE, sender);
+            rooms[i].takeSeat("p1");
+            rooms[i].takeSeat("p2");
+        }
+        // пехота обеих сторон ходит туда-обратно внутри стартовых зон, как в RoomThroughputBenchmark
+        cycle = new ActionRequest[]{
+                new ActionRequest(Protocol.ACTION_MOVE, 0, 0, 2, 0),
+                new ActionRequest(Protocol.ACTION_MOVE, SIZE - 2, SIZE - 2, SIZE - 3, SIZE - 2),
+                new ActionRequest(Protocol.ACTION_MOVE, 2, 0, 0, 0),
+                new ActionRequest(Protocol.ACTION_MOVE, SIZE - 3, SIZE - 2, SIZE - 2, SIZE - 2)
+        };
+        workers = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        workers.shutdownNow();
+    }
+
+    private void act(GameRoom room, int step) {
+        room.applyAction((step & 1) + 1, cycle[step]);
+        if (blockMicros > 0) {
+            LockSupport.parkNanos(TimeUnit.MICROSECONDS.toNanos(blockMicros));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(MATCHES * ROUND)
+    public void platformLock() throws InterruptedException {
+        CountDownLatch done = new CountDownLatch(MATCHES);
+        for (GameRoom room : rooms) {
+            workers.execute(() -> {
+                for (int step = 0; step < ROUND; step++) {
+                    act(room, step);
+                }
+                done.countDown();
+            });
+        }
+        done.await();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(MATCHES * ROUND)
+    public void virtualActor() throws InterruptedException {
+        CountDownLatch done = new CountDownLatch(MATCHES);
+        for (GameRoom room : rooms) {
+            workers.execute(() -> {
+                for (int step = 0; step < ROUND; step++) {
+                    int s = step;
+                    room.post(() -> act(room, s));
+                }
+                room.post(done::countDown);
+            });
+        }
+        done.await();
+    }
+}
@@ -0,0 +1,78 @@
+package org.example.kriegspiel.net.server;
+
+import com.google.gson.Gson;
+import org.example.kriegspiel.net.ActionRequest;
+import org.example.kriegspiel.net.Protocol;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Пропускная способность действий (actions/sec) при множестве независимых партий.
+ * Каждый поток JMH играет в своей комнате, поэтому {@code perRoomLock} должен
+ * масштабироваться с числом ядер, а {@code serverWideLock} (как было до комнат,
+ * один монитор на весь сервер) — нет.
+ *
+ * <pre>
+ * java -jar target/benchmarks.jar RoomThroughputBenchmark -t 1
+ * java -jar target/benchmarks.jar RoomThroughputBenchmark -t 4
+ * java -jar target/benchmarks.jar RoomThroughputBenchmark -t max
+ * </pre>
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RoomThroughputBenchmark {
+
+    private static final Object SERVER_MONITOR = new Object();
+
+    @State(Scope.Thread)
+    public static class RoomState {
+
+        @Param({"12", "64"})
+        public int size;
+
+        GameRoom room;
+        ActionRequest[] cycle;
+        int[] seats;
+        int step;
+
+        @Setup(Level.Trial)
+        public void setup() {
+            room = new GameRoom("bench", size, size, new MessageSender(new Gson()));
+            room.takeSeat("p1");
+            room.takeSeat("p2");
+
+            // пехота обеих сторон ходит туда-обратно внутри стартовых зон (всегда равнина, без ловушек)
+            int w = size;
+            int h = size;
+            cycle = new ActionRequest[]{
+                    new ActionRequest(Protocol.ACTION_MOVE, 0, 0, 2, 0),
+                    new ActionRequest(Protocol.ACTION_MOVE, w - 2, h - 2, w - 3, h - 2),
+                    new ActionRequest(Protocol.ACTION_MOVE, 2, 0, 0, 0),
+                    new ActionRequest(Protocol.ACTION_MOVE, w - 3, h - 2, w - 2, h - 2)
+            };
+            seats = new int[]{1, 2, 1, 2};
+        }
+
+        void next() {
+            int i = step;
+            step = (i + 1) & 3;
+            room.applyAction(seats[i], cycle[i]);
+        }
+    }
+
+    @Benchmark
+    public void perRoomLock(RoomState s) {
+        s.next();
+    }
+
+    @Benchmark
+    public void serverWideLock(RoomState s) {
+        synchronized (SERVER_MONITOR) {
+            s.next();
+        }
+    }
+}
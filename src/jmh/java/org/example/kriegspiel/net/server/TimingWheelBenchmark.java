@@ -0,0 +1,66 @@
+package org.example.kriegspiel.net.server;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Постановка и отмена таймера, когда уже взведено {@code armed} таймеров
+ * (часы хода и проверки простоя всех комнат): {@link TimingWheel} против
+ * {@link ScheduledThreadPoolExecutor}, у которого очередь — двоичная куча.
+ *
+ * <pre>
+ * java -jar target/benchmarks.jar TimingWheelBenchmark
+ * </pre>
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class TimingWheelBenchmark {
+
+    @Param({"1000", "100000"})
+    public int armed;
+
+    private static final Runnable NOOP = () -> { };
+
+    private TimingWheel wheel;
+    private ScheduledThreadPoolExecutor executor;
+    private final List<Object> background = new ArrayList<>();
+
+    @Setup(Level.Trial)
+    public void setup() {
+        wheel = new TimingWheel("bench-wheel", GameServer.TIMER_TICK_MILLIS);
+        executor = new ScheduledThreadPoolExecutor(1);
+        executor.setRemoveOnCancelPolicy(true);
+        // сроки от минуты до часа: за время замера ничего не срабатывает
+        for (int i = 0; i < armed; i++) {
+            long delay = 60_000 + (i * 37L) % 3_540_000;
+            background.add(wheel.schedule(NOOP, delay, TimeUnit.MILLISECONDS));
+            background.add(executor.schedule(NOOP, delay, TimeUnit.MILLISECONDS));
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        wheel.stop();
+        executor.shutdownNow();
+    }
+
+    @Benchmark
+    public boolean wheelScheduleCancel() {
+        return wheel.schedule(NOOP, GameRoom.TURN_MILLIS, TimeUnit.MILLISECONDS).cancel();
+    }
+
+    @Benchmark
+    public boolean executorScheduleCancel() {
+        ScheduledFuture<?> f = executor.schedule(NOOP, GameRoom.TURN_MILLIS, TimeUnit.MILLISECONDS);
+        return f.cancel(false);
+    }
+}
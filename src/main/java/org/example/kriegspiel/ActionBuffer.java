@@ -0,0 +1,93 @@
+package org.example.kriegspiel;
+
+import java.util.Arrays;
+
+/**
+ * Переиспользуемый буфер действий для {@link Game#generateActions}.
+ * Действие хранится в одном {@code long}: вид ({@link #MOVE}/{@link #ATTACK}/{@link #PASS}),
+ * клетка юнита и целевая клетка ({@code y * width + x}); после разогрева
+ * генерация ничего не выделяет.
+ */
+public final class ActionBuffer {
+
+    public static final int MOVE = 0;
+    public static final int ATTACK = 1;
+    // только передача хода (см. Game#make), генератором не выдаётся
+    public static final int PASS = 2;
+
+    private static final int CELL_BITS = 31;
+    private static final long CELL_MASK = (1L << CELL_BITS) - 1;
+
+    private long[] actions;
+    private int size;
+    private int width;
+
+    public ActionBuffer() {
+        this(64);
+    }
+
+    public ActionBuffer(int initialCapacity) {
+        this.actions = new long[Math.max(1, initialCapacity)];
+    }
+
+    void reset(int width) {
+        this.width = width;
+        this.size = 0;
+    }
+
+    void add(int kind, int fromCell, int toCell) {
+        if (size == actions.length) actions = Arrays.copyOf(actions, size * 2);
+        actions[size++] = encode(kind, fromCell, toCell);
+    }
+
+    public static long encode(int kind, int fromCell, int toCell) {
+        return ((long) kind << (2 * CELL_BITS)) | ((long) fromCell << CELL_BITS) | toCell;
+    }
+
+    public static int kindOf(long action) {
+        return (int) (action >>> (2 * CELL_BITS));
+    }
+
+    public static int fromCellOf(long action) {
+        return (int) ((action >>> CELL_BITS) & CELL_MASK);
+    }
+
+    public static int toCellOf(long action) {
+        return (int) (action & CELL_MASK);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public long get(int i) {
+        return actions[i];
+    }
+
+    /**
+     * Ширина карты, для которой сгенерированы действия (для перевода клеток в x/y).
+     */
+    public int getWidth() {
+        return width;
+    }
+
+    public int getKind(int i) {
+        return kindOf(actions[i]);
+    }
+
+    public int getFromX(int i) {
+        return fromCellOf(actions[i]) % width;
+    }
+
+    public int getFromY(int i) {
+        return fromCellOf(actions[i]) / width;
+    }
+
+    public int getToX(int i) {
+        return toCellOf(actions[i]) % width;
+    }
+
+    public int getToY(int i) {
+        return toCellOf(actions[i]) / width;
+    }
+}
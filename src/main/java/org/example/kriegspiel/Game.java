@@ -1,13 +1,18 @@
 package org.example.kriegspiel;
 
+import org.example.kriegspiel.jfr.ActionEvent;
 import org.example.kriegspiel.map.GameMap;
 import org.example.kriegspiel.map.TerrainType;
+import org.example.kriegspiel.map.ZobristHash;
 import org.example.kriegspiel.model.Player;
 import org.example.kriegspiel.model.unit.Artillery;
 import org.example.kriegspiel.model.unit.Cavalry;
 import org.example.kriegspiel.model.unit.Infantry;
 import org.example.kriegspiel.model.unit.Unit;
 
+import java.util.Arrays;
+import java.util.List;
+
 public class Game {
 
     private final GameMap map;
@@ -15,9 +20,30 @@ public class Game {
     private final Player player2;
     private Player currentPlayer;
     private boolean actionPerformedThisTurn;
+    private int nextUnitId = 0;
+    // юниты по id, включая погибших: журнал отката хранит только числа
+    private Unit[] unitsById = new Unit[8];
+
+    // журнал make/unmake: записи одного make лежат подряд, последней — число тиков оглушения
+    private int[] undo = new int[64];
+    private int undoTop = 0;
+    // хэши позиций перед каждым make (для обнаружения повторений)
+    private long[] hashHistory = new long[16];
+    private int makeDepth = 0;
 
     public Game(int width, int height, String p1Name, String p2Name) {
-        this.map = new GameMap(width, height);
+        this(p1Name, p2Name, new GameMap(width, height));
+    }
+
+    /**
+     * Партия на карте из {@code seed}: одинаковые seed и действия дают одинаковую партию.
+     */
+    public Game(int width, int height, String p1Name, String p2Name, long seed) {
+        this(p1Name, p2Name, new GameMap(width, height, seed));
+    }
+
+    private Game(String p1Name, String p2Name, GameMap map) {
+        this.map = map;
         this.player1 = new Player(p1Name);
         this.player2 = new Player(p2Name);
         this.currentPlayer = player1;
@@ -29,6 +55,24 @@ public class Game {
         this(width, height, "Игрок 1", "Игрок 2");
     }
 
+    /**
+     * Новая партия в этом же объекте: карта из {@code seed} того же размера,
+     * свежие армии, пустой журнал отката. Для пакетной симуляции, где партии
+     * одна за другой идут в одном потоке, без новых массивов карты.
+     */
+    public void reset(long seed) {
+        map.reset(seed);
+        player1.clearUnits();
+        player2.clearUnits();
+        Arrays.fill(unitsById, 0, nextUnitId, null);
+        nextUnitId = 0;
+        undoTop = 0;
+        makeDepth = 0;
+        currentPlayer = player1;
+        actionPerformedThisTurn = false;
+        initUnits();
+    }
+
     private void initUnits() {
         int p1X = 0;
         int p1Y = 0;
@@ -45,7 +89,11 @@ public class Game {
         placeUnit(new Artillery(player2), p2X, p2Y - 1);
     }
 
-    private void placeUnit(Unit unit, int x, int y) {
+    // виден в пакете: бенчмарки расставляют армии заданного размера
+    void placeUnit(Unit unit, int x, int y) {
+        if (nextUnitId == unitsById.length) unitsById = Arrays.copyOf(unitsById, nextUnitId * 2);
+        unitsById[nextUnitId] = unit;
+        unit.setId(nextUnitId++);
         map.placeUnit(unit, x, y);
         unit.getOwner().addUnit(unit);
     }
@@ -70,12 +118,159 @@ public class Game {
         return player2;
     }
 
+    /**
+     * Zobrist-хэш позиции: юниты с клетками, здоровьем и оглушением,
+     * ловушки и сторона хода (см. {@link ZobristHash}).
+     */
+    public long getHash() {
+        return map.getHash().get();
+    }
+
+    /**
+     * Сколько раз текущая позиция уже встречалась среди позиций
+     * перед ещё не откаченными {@link #make(long)}.
+     */
+    public int countRepetitions() {
+        long h = getHash();
+        int n = 0;
+        for (int i = 0; i < makeDepth; i++) {
+            if (hashHistory[i] == h) n++;
+        }
+        return n;
+    }
+
     public void endTurn() {
+        ActionEvent event = new ActionEvent();
+        event.begin();
+        map.getHash().toggleSide();
         currentPlayer = (currentPlayer == player1) ? player2 : player1;
         actionPerformedThisTurn = false;
         for (Unit u : currentPlayer.getUnits()) {
             u.tickTurn();
         }
+        commit(event, "END_TURN");
+    }
+
+    /**
+     * Выполняет действие из {@link ActionBuffer} (с проверками {@link #moveUnit}/{@link #attack})
+     * и передаёт ход, запоминая всё, что нужно для точного {@link #unmake()}: позицию,
+     * здоровье и оглушение, сработавшую ловушку, гибель цели и место в списке игрока,
+     * тики оглушения в {@link #endTurn()}. {@link ActionBuffer#PASS} — только передача хода.
+     * Списки изменений видимости после make/unmake не восстанавливаются.
+     */
+    public void make(long action) {
+        long hashBefore = getHash();
+        boolean performedBefore = actionPerformedThisTurn;
+        int kind = ActionBuffer.kindOf(action);
+        if (kind == ActionBuffer.MOVE) {
+            Unit unit = unitAtCell(ActionBuffer.fromCellOf(action));
+            int to = ActionBuffer.toCellOf(action);
+            int w = map.getWidth();
+            int from = unit.getY() * w + unit.getX();
+            int hp = unit.getHp();
+            int skip = unit.getSkipTurnsRemaining();
+            boolean trap = map.hasTrapAt(to % w, to / w);
+            int index = unit.getOwner().indexOf(unit);
+            applyMove(unit, to % w, to / w);
+            push(unit.getId());
+            push(index);
+            push(from);
+            push(hp);
+            push(skip);
+            push(trap ? 1 : 0);
+        } else if (kind == ActionBuffer.ATTACK) {
+            Unit attacker = unitAtCell(ActionBuffer.fromCellOf(action));
+            Unit target = unitAtCell(ActionBuffer.toCellOf(action));
+            int hp = target.getHp();
+            int index = target.getOwner().indexOf(target);
+            applyAttack(attacker, target);
+            push(target.getId());
+            push(hp);
+            push(index);
+        } else if (kind != ActionBuffer.PASS) {
+            throw new IllegalArgumentException("Неизвестное действие: " + kind);
+        }
+        push(kind);
+        push(performedBefore ? 1 : 0);
+        if (makeDepth == hashHistory.length) hashHistory = Arrays.copyOf(hashHistory, makeDepth * 2);
+        hashHistory[makeDepth++] = hashBefore;
+
+        map.getHash().toggleSide();
+        currentPlayer = (currentPlayer == player1) ? player2 : player1;
+        actionPerformedThisTurn = false;
+        List<Unit> units = currentPlayer.getUnits();
+        int ticked = 0;
+        for (int i = 0; i < units.size(); i++) {
+            Unit u = units.get(i);
+            if (u.getSkipTurnsRemaining() > 0) {
+                u.tickTurn();
+                push(u.getId());
+                ticked++;
+            }
+        }
+        push(ticked);
+    }
+
+    /**
+     * Откатывает последний {@link #make(long)}.
+     */
+    public void unmake() {
+        if (undoTop == 0) throw new IllegalStateException("Нечего откатывать.");
+        int ticked = pop();
+        for (int i = 0; i < ticked; i++) {
+            Unit u = unitsById[pop()];
+            u.setSkipTurnsRemaining(u.getSkipTurnsRemaining() + 1);
+        }
+        map.getHash().toggleSide();
+        currentPlayer = (currentPlayer == player1) ? player2 : player1;
+        actionPerformedThisTurn = pop() != 0;
+        makeDepth--;
+
+        int kind = pop();
+        if (kind == ActionBuffer.MOVE) {
+            boolean trap = pop() != 0;
+            int skip = pop();
+            int hp = pop();
+            int from = pop();
+            int index = pop();
+            Unit unit = unitsById[pop()];
+            if (trap) map.setTrapAt(unit.getX(), unit.getY());
+            int w = map.getWidth();
+            if (unit.isAlive()) {
+                map.moveUnit(unit, from % w, from / w);
+            } else {
+                // погиб в ловушке
+                map.placeUnit(unit, from % w, from / w);
+                unit.getOwner().addUnit(index, unit);
+            }
+            unit.setHp(hp);
+            unit.setSkipTurnsRemaining(skip);
+        } else if (kind == ActionBuffer.ATTACK) {
+            int index = pop();
+            int hp = pop();
+            Unit target = unitsById[pop()];
+            if (!target.isAlive()) {
+                map.placeUnit(target, target.getX(), target.getY());
+                target.getOwner().addUnit(index, target);
+            }
+            target.setHp(hp);
+        }
+        map.clearVisibilityChanges();
+    }
+
+    private Unit unitAtCell(int cell) {
+        Unit unit = map.getUnitAtCell(cell);
+        if (unit == null) throw new IllegalArgumentException("В выбранной клетке нет юнита.");
+        return unit;
+    }
+
+    private void push(int v) {
+        if (undoTop == undo.length) undo = Arrays.copyOf(undo, undoTop * 2);
+        undo[undoTop++] = v;
+    }
+
+    private int pop() {
+        return undo[--undoTop];
     }
 
     public boolean isActionPerformedThisTurn() {
@@ -87,6 +282,30 @@ public class Game {
     }
 
     public void moveUnit(Unit unit, int x, int y) {
+        ActionEvent event = new ActionEvent();
+        event.begin();
+        applyMove(unit, x, y);
+        commit(event, "MOVE");
+    }
+
+    public void attack(Unit attacker, Unit target) {
+        ActionEvent event = new ActionEvent();
+        event.begin();
+        applyAttack(attacker, target);
+        commit(event, "ATTACK");
+    }
+
+    // событие JFR: поля заполняются, только если оно включено в записи
+    private void commit(ActionEvent event, String type) {
+        if (event.shouldCommit()) {
+            event.actionType = type;
+            event.setMap(map);
+            event.commit();
+        }
+    }
+
+    // проверки и действие без события JFR: make вызывает их миллионы раз за поиск
+    private void applyMove(Unit unit, int x, int y) {
         if (actionPerformedThisTurn) {
             throw new IllegalArgumentException("Вы уже выполнили действие в этом ходу. Завершите ход.");
         }
@@ -101,12 +320,18 @@ public class Game {
             throw new IllegalArgumentException("Нельзя переместиться на эту клетку.");
         }
 
+        map.clearVisibilityChanges();
         map.moveUnit(unit, x, y);
         applyCellEffects(unit);
+        if (!unit.isAlive()) {
+            // погибший в ловушке уходит с карты так же, как убитый в атаке
+            map.removeUnit(unit);
+            unit.getOwner().removeUnit(unit);
+        }
         actionPerformedThisTurn = true;
     }
 
-    public void attack(Unit attacker, Unit target) {
+    private void applyAttack(Unit attacker, Unit target) {
         if (actionPerformedThisTurn) {
             throw new IllegalArgumentException("Вы уже выполнили действие в этом ходу. Завершите ход.");
         }
@@ -123,6 +348,7 @@ public class Game {
             throw new IllegalArgumentException("Цель вне диапазона атаки.");
         }
 
+        map.clearVisibilityChanges();
         attacker.attack(target);
         if (!target.isAlive()) {
             map.removeUnit(target);
@@ -131,17 +357,87 @@ public class Game {
         actionPerformedThisTurn = true;
     }
 
+    /**
+     * Все действия текущего игрока, которые примут {@link #moveUnit} и {@link #attack},
+     * в {@code out} (буфер очищается). Цели атаки — по правилам, без учёта тумана.
+     *
+     * @return число действий; 0, если действие в этом ходу уже выполнено
+     */
+    public int generateActions(ActionBuffer out) {
+        out.reset(map.getWidth());
+        if (actionPerformedThisTurn) return 0;
+        Player enemy = getOpponentPlayer();
+        List<Unit> units = currentPlayer.getUnits();
+        for (int i = 0; i < units.size(); i++) {
+            addActions(units.get(i), enemy, out);
+        }
+        return out.size();
+    }
+
+    /**
+     * Допустимые действия одного юнита (пусто, если сейчас ходит не его владелец).
+     */
+    public int generateActions(Unit unit, ActionBuffer out) {
+        out.reset(map.getWidth());
+        if (!actionPerformedThisTurn && unit.getOwner() == currentPlayer) {
+            addActions(unit, getOpponentPlayer(), out);
+        }
+        return out.size();
+    }
+
+    private void addActions(Unit unit, Player enemy, ActionBuffer out) {
+        if (!unit.canAct()) return;
+        int w = map.getWidth();
+        int h = map.getHeight();
+        int ux = unit.getX();
+        int uy = unit.getY();
+        int from = uy * w + ux;
+
+        // атаки: перебираем врагов или ромб дальности — что короче
+        int range = unit.getAttackRangeOn(map);
+        List<Unit> enemies = enemy.getUnits();
+        if (enemies.size() <= 2 * range * (range + 1) + 1) {
+            for (int i = 0; i < enemies.size(); i++) {
+                Unit t = enemies.get(i);
+                if (Math.abs(t.getX() - ux) + Math.abs(t.getY() - uy) <= range) {
+                    out.add(ActionBuffer.ATTACK, from, t.getY() * w + t.getX());
+                }
+            }
+        } else {
+            for (int y = Math.max(0, uy - range), yTo = Math.min(h - 1, uy + range); y <= yTo; y++) {
+                int span = range - Math.abs(y - uy);
+                int row = y * w;
+                for (int x = Math.max(0, ux - span), xTo = Math.min(w - 1, ux + span); x <= xTo; x++) {
+                    Unit t = map.getUnitAtCell(row + x);
+                    if (t != null && t.getOwner() == enemy) {
+                        out.add(ActionBuffer.ATTACK, from, row + x);
+                    }
+                }
+            }
+        }
+
+        // ходы: свободные клетки ромба, куда пускает местность
+        int move = unit.getMoveRange();
+        int mask = unit.getTerrainMask();
+        for (int y = Math.max(0, uy - move), yTo = Math.min(h - 1, uy + move); y <= yTo; y++) {
+            int span = move - Math.abs(y - uy);
+            int row = y * w;
+            for (int x = Math.max(0, ux - span), xTo = Math.min(w - 1, ux + span); x <= xTo; x++) {
+                int cell = row + x;
+                if (!map.isOccupiedCell(cell) && (mask & (1 << map.getTerrainOrdinalAtCell(cell))) != 0) {
+                    out.add(ActionBuffer.MOVE, from, cell);
+                }
+            }
+        }
+    }
+
     private void applyCellEffects(Unit unit) {
         int ux = unit.getX();
         int uy = unit.getY();
         TerrainType terrain = map.getTerrainAt(ux, uy);
 
         if (terrain == TerrainType.SWAMP) {
-            if (unit instanceof Cavalry) {
-                unit.stunForTurns(2);
-            } else {
-                unit.stunForTurns(1);
-            }
+            unit.stunForTurns(unit.getSwampStun());
         }
 
         if (map.hasTrapAt(ux, uy)) {
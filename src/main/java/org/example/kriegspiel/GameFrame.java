@@ -1,6 +1,7 @@
 package org.example.kriegspiel;
 
 import org.example.kriegspiel.net.GameStateDTO;
+import org.example.kriegspiel.net.StateDelta;
 import org.example.kriegspiel.net.client.ClientGameState;
 import org.example.kriegspiel.net.client.NetworkClient;
 import org.example.kriegspiel.net.server.GameServer;
@@ -25,6 +26,7 @@ public class GameFrame extends JFrame {
     private final MapPanel mapPanel;
     private Supplier<Integer> myPlayerIndexSupplier;
     private boolean gameStarted = false;
+    private boolean resyncRequested = false;
 
     public GameFrame() {
         super("Kriegspiel");
@@ -169,6 +171,8 @@ public class GameFrame extends JFrame {
                     () -> SwingUtilities.invokeLater(() ->
                             statusLabel.setText("Подключено. Отправляем JOIN…"))
             );
+            client.setOnDelta(this::applyDelta);
+            client.setBinary(true);
 
             client.connect();
 
@@ -180,50 +184,72 @@ public class GameFrame extends JFrame {
     public void applyState(GameStateDTO dto) {
         SwingUtilities.invokeLater(() -> {
             boolean wasGameOver = localState.isGameOver();
-            
             localState.updateFromDTO(dto);
+            resyncRequested = false;
+            onStateChanged(wasGameOver);
+        });
+    }
 
-            if (myPlayerIndexSupplier != null) {
-                localState.setMyPlayerIndex(myPlayerIndexSupplier.get());
-            } else if (client != null) {
-                localState.setMyPlayerIndex(client.getMyPlayerIndex());
+    /**
+     * DELTA от сервера; при разрыве последовательности просим полный STATE.
+     */
+    public void applyDelta(StateDelta delta) {
+        SwingUtilities.invokeLater(() -> {
+            boolean wasGameOver = localState.isGameOver();
+            if (!localState.applyDelta(delta)) {
+                if (client != null && !resyncRequested) {
+                    resyncRequested = true;
+                    client.requestResync();
+                }
+                return;
             }
+            onStateChanged(wasGameOver);
+        });
+    }
 
-            if (!gameStarted && dto.currentPlayer > 0 && !dto.gameOver) {
-                gameStarted = true;
-                hostBtn.setVisible(false);
-                joinBtn.setVisible(false);
-                topPanel.revalidate();
-                topPanel.repaint();
-            }
-            
-            if (dto.gameOver && gameStarted) {
-                gameStarted = false;
-                hostBtn.setVisible(true);
-                joinBtn.setVisible(true);
-                topPanel.revalidate();
-                topPanel.repaint();
-            }
-            
-            mapPanel.repaint();
+    private void onStateChanged(boolean wasGameOver) {
+        GameStateDTO dto = localState.getDto();
 
-            int myIdx = localState.getMyPlayerIndex();
-            boolean myTurn = (myIdx > 0 && dto.currentPlayer == myIdx && !dto.gameOver);
+        if (myPlayerIndexSupplier != null) {
+            localState.setMyPlayerIndex(myPlayerIndexSupplier.get());
+        } else if (client != null) {
+            localState.setMyPlayerIndex(client.getMyPlayerIndex());
+        }
 
-            if (dto.gameOver) {
-                if (!wasGameOver) {
-                    showGameOverDialog(dto);
-                }
-                if (dto.winner == 0) {
-                    statusLabel.setText("Игра окончена: ничья");
-                } else {
-                    String winnerName = dto.winner == 1 ? dto.player1Name : dto.player2Name;
-                    statusLabel.setText("Игра окончена. Победил: " + winnerName);
-                }
+        if (!gameStarted && dto.currentPlayer > 0 && !dto.gameOver) {
+            gameStarted = true;
+            hostBtn.setVisible(false);
+            joinBtn.setVisible(false);
+            topPanel.revalidate();
+            topPanel.repaint();
+        }
+
+        if (dto.gameOver && gameStarted) {
+            gameStarted = false;
+            hostBtn.setVisible(true);
+            joinBtn.setVisible(true);
+            topPanel.revalidate();
+            topPanel.repaint();
+        }
+
+        mapPanel.repaint();
+
+        int myIdx = localState.getMyPlayerIndex();
+        boolean myTurn = (myIdx > 0 && dto.currentPlayer == myIdx && !dto.gameOver);
+
+        if (dto.gameOver) {
+            if (!wasGameOver) {
+                showGameOverDialog(dto);
+            }
+            if (dto.winner == 0) {
+                statusLabel.setText("Игра окончена: ничья");
             } else {
-                statusLabel.setText(myTurn ? "Ваш ход" : "Ходит противник");
+                String winnerName = dto.winner == 1 ? dto.player1Name : dto.player2Name;
+                statusLabel.setText("Игра окончена. Победил: " + winnerName);
             }
-        });
+        } else {
+            statusLabel.setText(myTurn ? "Ваш ход" : "Ходит противник");
+        }
     }
 
     private void showGameOverDialog(GameStateDTO dto) {
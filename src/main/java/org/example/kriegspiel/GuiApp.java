@@ -13,7 +13,7 @@ public class GuiApp {
 
     public static void main(String[] args) {
         SwingUtilities.invokeLater(() -> {
-            String[] options = {"Создать сервер", "Подключиться"};
+            String[] options = {"Создать сервер", "Подключиться", "Игра с ботом"};
             int choice = JOptionPane.showOptionDialog(
                     null,
                     "Выберите режим:",
@@ -33,7 +33,7 @@ public class GuiApp {
             int port = 8080;
             String url = "ws://localhost:8080";
 
-            if (choice == 0) {
+            if (choice == 0 || choice == 2) {
                 String portStr = JOptionPane.showInputDialog(null, "Порт сервера:", "8080");
                 if (portStr != null && !portStr.isBlank()) {
                     try { port = Integer.parseInt(portStr.trim()); } catch (Exception ignored) {}
@@ -91,7 +91,11 @@ public class GuiApp {
 
                 GameFrame frame = new GameFrame(state, client, client::getMyPlayerIndex);
                 frameHolder[0] = frame;
+                client.setOnDelta(frame::applyDelta);
+                client.setBinary(true);
+                client.setVsBot(choice == 2);
 
+                client.setAutoReconnect(true);
                 client.setConnectionLostTimeout(10);
                 client.connect();
 
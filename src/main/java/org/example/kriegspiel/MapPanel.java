@@ -15,22 +15,57 @@ import java.util.HashMap;
 import java.util.Map;
 import javax.imageio.ImageIO;
 
+/**
+ * Отрисовка слоями: terrain и туман заранее рисуются в кэш-картинку
+ * (пиксель на клетку, растягивается при выводе) и перестраиваются только при
+ * смене состояния; юниты, выделение и подсказка рисуются поверх и только в
+ * пределах clip. Наведение мыши перерисовывает лишь затронутые клетки.
+ */
 public class MapPanel extends JPanel {
 
     private static final int CELL_SIZE = 60;
 
+    private static final Color FOG_COLOR = new Color(40, 40, 40);
+    private static final Color PLAIN_COLOR = new Color(170, 210, 140);
+    private static final Color FOREST_COLOR = new Color(60, 140, 70);
+    private static final Color SWAMP_COLOR = new Color(120, 120, 90);
+    private static final Color HILL_COLOR = new Color(150, 130, 100);
+    private static final Color P1_COLOR = new Color(60, 80, 200);
+    private static final Color P2_COLOR = new Color(200, 70, 70);
+    private static final Color TOOLTIP_BG = new Color(0, 0, 0, 117);
+
+    private static final Font HP_FONT = new Font("Arial", Font.BOLD, 10);
+    private static final Font TOOLTIP_FONT = new Font("Arial", Font.PLAIN, 11);
+    private static final Stroke SELECTION_STROKE = new BasicStroke(3);
+    private static final Stroke DEFAULT_STROKE = new BasicStroke(1);
+
+    private static final String[] HP_LABELS = new String[100];
+
     private final ClientGameState state;
 
+    // слой terrain/тумана: пиксель на клетку
+    private BufferedImage terrainLayer;
+    private int[] terrainPixels;
+    private int terrainVersion = -1;
+
+    private long lastPaintNanos;
+
     private int selectedX = -1;
     private int selectedY = -1;
     private int hoverX = -1;
     private int hoverY = -1;
     private String hoverTooltip = null;
+    private Rectangle tooltipBounds = null;
 
     private static final Map<String, Image> unitIcons = new HashMap<>();
+    // иконки по UnitDTO.type: [синяя, красная]
+    private static final Map<String, Image[]> iconsByType = new HashMap<>();
 
     static {
         loadIcons();
+        for (int i = 0; i < HP_LABELS.length; i++) {
+            HP_LABELS[i] = "HP:" + i;
+        }
     }
 
     private static void loadIcons() {
@@ -67,10 +102,11 @@ public class MapPanel extends JPanel {
             
             @Override
             public void mouseExited(MouseEvent e) {
+                repaintHover();
                 hoverX = -1;
                 hoverY = -1;
                 hoverTooltip = null;
-                repaint();
+                tooltipBounds = null;
             }
         });
         
@@ -81,15 +117,33 @@ public class MapPanel extends JPanel {
                 int y = e.getY() / CELL_SIZE;
                 
                 if (x != hoverX || y != hoverY) {
+                    repaintHover();
                     hoverX = x;
                     hoverY = y;
                     updateTooltip(x, y);
-                    repaint();
+                    repaintHover();
                 }
             }
         });
     }
 
+    /**
+     * Длительность последней отрисовки paintComponent, нс.
+     */
+    public long getLastPaintNanos() {
+        return lastPaintNanos;
+    }
+
+    // клетка под курсором и её подсказка
+    private void repaintHover() {
+        if (hoverX >= 0 && hoverY >= 0) {
+            repaint(hoverX * CELL_SIZE, hoverY * CELL_SIZE, CELL_SIZE, CELL_SIZE);
+        }
+        if (tooltipBounds != null) {
+            repaint(tooltipBounds);
+        }
+    }
+
     private void handleClick(int x, int y, MouseEvent e) {
         if (!state.isInside(x, y)) return;
 
@@ -138,61 +192,98 @@ public class MapPanel extends JPanel {
     @Override
     protected void paintComponent(Graphics g) {
         super.paintComponent(g);
+        long started = System.nanoTime();
 
         int w = state.getWidth();
         int h = state.getHeight();
 
-        for (int y = 0; y < h; y++) {
-            for (int x = 0; x < w; x++) {
-                drawCell(g, x, y);
-            }
-        }
+        Rectangle clip = g.getClipBounds();
+        if (clip == null) clip = new Rectangle(0, 0, w * CELL_SIZE, h * CELL_SIZE);
 
-        g.setColor(Color.DARK_GRAY);
-        for (int x = 0; x <= w; x++) g.drawLine(x * CELL_SIZE, 0, x * CELL_SIZE, h * CELL_SIZE);
-        for (int y = 0; y <= h; y++) g.drawLine(0, y * CELL_SIZE, w * CELL_SIZE, y * CELL_SIZE);
-    }
+        int x0 = Math.max(0, clip.x / CELL_SIZE);
+        int y0 = Math.max(0, clip.y / CELL_SIZE);
+        int x1 = Math.min(w - 1, (clip.x + clip.width - 1) / CELL_SIZE);
+        int y1 = Math.min(h - 1, (clip.y + clip.height - 1) / CELL_SIZE);
 
-    private void drawCell(Graphics g, int x, int y) {
-        TerrainType t = state.getTerrainAt(x, y);
+        if (x0 <= x1 && y0 <= y1) {
+            ensureTerrainLayer(w, h);
+            g.drawImage(terrainLayer,
+                    x0 * CELL_SIZE, y0 * CELL_SIZE, (x1 + 1) * CELL_SIZE, (y1 + 1) * CELL_SIZE,
+                    x0, y0, x1 + 1, y1 + 1, null);
 
-        if (t == null) {
-            g.setColor(new Color(40, 40, 40));
-            g.fillRect(x * CELL_SIZE, y * CELL_SIZE, CELL_SIZE, CELL_SIZE);
-            return;
-        }
+            for (int y = y0; y <= y1; y++) {
+                for (int x = x0; x <= x1; x++) {
+                    UnitDTO u = state.getUnitAt(x, y);
+                    if (u != null) {
+                        drawUnit(g, u, x, y);
+                    }
+                }
+            }
 
-        switch (t) {
-            case PLAIN -> g.setColor(new Color(170, 210, 140));
-            case FOREST -> g.setColor(new Color(60, 140, 70));
-            case SWAMP -> g.setColor(new Color(120, 120, 90));
-            case HILL -> g.setColor(new Color(150, 130, 100));
-            default -> g.setColor(new Color(170, 210, 140));
+            g.setColor(Color.DARK_GRAY);
+            for (int x = x0; x <= x1 + 1; x++) g.drawLine(x * CELL_SIZE, y0 * CELL_SIZE, x * CELL_SIZE, (y1 + 1) * CELL_SIZE);
+            for (int y = y0; y <= y1 + 1; y++) g.drawLine(x0 * CELL_SIZE, y * CELL_SIZE, (x1 + 1) * CELL_SIZE, y * CELL_SIZE);
+
+            if (selectedX >= x0 && selectedX <= x1 && selectedY >= y0 && selectedY <= y1) {
+                Graphics2D g2d = (Graphics2D) g;
+                g2d.setColor(Color.YELLOW);
+                g2d.setStroke(SELECTION_STROKE);
+                g2d.drawRect(selectedX * CELL_SIZE + 2, selectedY * CELL_SIZE + 2, CELL_SIZE - 4, CELL_SIZE - 4);
+                g2d.setStroke(DEFAULT_STROKE);
+            }
         }
-        g.fillRect(x * CELL_SIZE, y * CELL_SIZE, CELL_SIZE, CELL_SIZE);
 
-        UnitDTO u = state.getUnitAt(x, y);
-        if (u != null) {
-            drawUnit(g, u, x, y);
+        // подсказка поверх всех клеток, может выходить за пределы своей
+        if (hoverTooltip != null && tooltipBounds != null && tooltipBounds.intersects(clip)) {
+            drawTooltip(g);
         }
 
-        if (x == selectedX && y == selectedY) {
-            g.setColor(Color.YELLOW);
-            ((Graphics2D) g).setStroke(new BasicStroke(3));
-            g.drawRect(x * CELL_SIZE + 2, y * CELL_SIZE + 2, CELL_SIZE - 4, CELL_SIZE - 4);
-            ((Graphics2D) g).setStroke(new BasicStroke(1));
+        lastPaintNanos = System.nanoTime() - started;
+    }
+
+    // перестраивает слой terrain/тумана, если состояние изменилось
+    private void ensureTerrainLayer(int w, int h) {
+        if (terrainLayer == null || terrainLayer.getWidth() != w || terrainLayer.getHeight() != h) {
+            terrainLayer = new BufferedImage(w, h, BufferedImage.TYPE_INT_RGB);
+            terrainPixels = new int[w * h];
+            terrainVersion = -1;
         }
-        
-        if (x == hoverX && y == hoverY && hoverTooltip != null) {
-            drawTooltip(g, x, y);
+        if (terrainVersion == state.getVersion()) return;
+
+        for (int y = 0; y < h; y++) {
+            for (int x = 0; x < w; x++) {
+                terrainPixels[y * w + x] = terrainColor(state.getTerrainAt(x, y)).getRGB();
+            }
         }
+        terrainLayer.setRGB(0, 0, w, h, terrainPixels, 0, w);
+        terrainVersion = state.getVersion();
+    }
+
+    private static Color terrainColor(TerrainType t) {
+        if (t == null) return FOG_COLOR;
+        return switch (t) {
+            case PLAIN -> PLAIN_COLOR;
+            case FOREST -> FOREST_COLOR;
+            case SWAMP -> SWAMP_COLOR;
+            case HILL -> HILL_COLOR;
+        };
     }
     
-    private void drawTooltip(Graphics g, int x, int y) {
-        if (hoverTooltip == null) return;
-        
+    private void drawTooltip(Graphics g) {
         Graphics2D g2d = (Graphics2D) g;
-        FontMetrics fm = g2d.getFontMetrics();
+        FontMetrics fm = g2d.getFontMetrics(TOOLTIP_FONT);
+        int padding = 5;
+        
+        g2d.setColor(TOOLTIP_BG);
+        g2d.fillRoundRect(tooltipBounds.x, tooltipBounds.y, tooltipBounds.width, tooltipBounds.height, 5, 5);
+        
+        g2d.setColor(Color.WHITE);
+        g2d.setFont(TOOLTIP_FONT);
+        g2d.drawString(hoverTooltip, tooltipBounds.x + padding, tooltipBounds.y + fm.getHeight() - 2);
+    }
+
+    private Rectangle computeTooltipBounds(int x, int y) {
+        FontMetrics fm = getFontMetrics(TOOLTIP_FONT);
         int textWidth = fm.stringWidth(hoverTooltip);
         int textHeight = fm.getHeight();
         
@@ -206,46 +297,39 @@ public class MapPanel extends JPanel {
         if (tooltipY < 0) {
             tooltipY = y * CELL_SIZE + CELL_SIZE + 5;
         }
-        
-        g2d.setColor(new Color(0, 0, 0, 117));
-        g2d.fillRoundRect(tooltipX, tooltipY, tooltipWidth, tooltipHeight, 5, 5);
-        
-        g2d.setColor(Color.WHITE);
-        g2d.setFont(new Font("Arial", Font.PLAIN, 11));
-        g2d.drawString(hoverTooltip, tooltipX + padding, tooltipY + textHeight - 2);
+        return new Rectangle(tooltipX, tooltipY, tooltipWidth, tooltipHeight);
     }
     
     private void updateTooltip(int x, int y) {
-        hoverTooltip = null;
+        hoverTooltip = computeTooltip(x, y);
+        tooltipBounds = (hoverTooltip != null) ? computeTooltipBounds(x, y) : null;
+    }
+
+    private String computeTooltip(int x, int y) {
         
-        if (selectedX == -1 || selectedY == -1) return;
-        if (!state.isInside(x, y)) return;
+        if (selectedX == -1 || selectedY == -1) return null;
+        if (!state.isInside(x, y)) return null;
         
         int myIdx = state.getMyPlayerIndex();
-        if (myIdx <= 0) return;
+        if (myIdx <= 0) return null;
         
         boolean myTurn = state.getCurrentPlayer() == myIdx && !state.isGameOver();
-        if (!myTurn) return;
+        if (!myTurn) return null;
         
         UnitDTO selected = state.getUnitAt(selectedX, selectedY);
-        if (selected == null || selected.owner != myIdx) return;
+        if (selected == null || selected.owner != myIdx) return null;
         
         UnitDTO target = state.getUnitAt(x, y);
         
         if (target != null && target.owner == myIdx) {
-            hoverTooltip = "Ваш юнит";
-            return;
+            return "Ваш юнит";
         }
         
         if (target != null && target.owner != myIdx) {
-            hoverTooltip = "Атака врага";
-            return;
+            return "Атака врага";
         }
         
-        String reason = getMoveReason(selected, x, y);
-        if (reason != null) {
-            hoverTooltip = reason;
-        }
+        return getMoveReason(selected, x, y);
     }
     
     private String getMoveReason(UnitDTO unit, int targetX, int targetY) {
@@ -292,11 +376,11 @@ public class MapPanel extends JPanel {
     }
 
     private void drawUnit(Graphics g, UnitDTO u, int x, int y) {
-        String unitType = u.type.toLowerCase();
-        String color = (u.owner == 1) ? "blue" : "red";
-        String iconKey = unitType + "_" + color;
-        
-        Image icon = unitIcons.get(iconKey);
+        Image[] icons = iconsByType.computeIfAbsent(u.type, t -> new Image[]{
+                unitIcons.get(t.toLowerCase() + "_blue"),
+                unitIcons.get(t.toLowerCase() + "_red")
+        });
+        Image icon = icons[u.owner == 1 ? 0 : 1];
         
         int pad = 10;
         int iconSize = CELL_SIZE - 2 * pad;
@@ -304,8 +388,7 @@ public class MapPanel extends JPanel {
         if (icon != null) {
             g.drawImage(icon, x * CELL_SIZE + pad, y * CELL_SIZE + pad, iconSize, iconSize, null);
         } else {
-            if (u.owner == 1) g.setColor(new Color(60, 80, 200));
-            else g.setColor(new Color(200, 70, 70));
+            g.setColor(u.owner == 1 ? P1_COLOR : P2_COLOR);
             g.fillOval(x * CELL_SIZE + pad, y * CELL_SIZE + pad, iconSize, iconSize);
             
             g.setColor(Color.WHITE);
@@ -314,7 +397,8 @@ public class MapPanel extends JPanel {
         }
 
         g.setColor(Color.BLACK);
-        g.setFont(new Font("Arial", Font.BOLD, 10));
-        g.drawString("HP:" + u.hp, x * CELL_SIZE + 5, y * CELL_SIZE + CELL_SIZE - 5);
+        g.setFont(HP_FONT);
+        String hp = (u.hp >= 0 && u.hp < HP_LABELS.length) ? HP_LABELS[u.hp] : "HP:" + u.hp;
+        g.drawString(hp, x * CELL_SIZE + 5, y * CELL_SIZE + CELL_SIZE - 5);
     }
-}
\ No newline at end of file
+}
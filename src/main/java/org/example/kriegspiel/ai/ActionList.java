@@ -0,0 +1,40 @@
+package org.example.kriegspiel.ai;
+
+import java.util.Arrays;
+
+/**
+ * Растущий список действий {@link SearchPosition} без упаковки в объекты;
+ * в поиске переиспользуется по одному на глубину.
+ */
+final class ActionList {
+
+    private long[] data = new long[64];
+    private int size;
+
+    void clear() {
+        size = 0;
+    }
+
+    void add(long action) {
+        if (size == data.length) data = Arrays.copyOf(data, size * 2);
+        data[size++] = action;
+    }
+
+    int size() {
+        return size;
+    }
+
+    long get(int i) {
+        return data[i];
+    }
+
+    void swap(int i, int j) {
+        long t = data[i];
+        data[i] = data[j];
+        data[j] = t;
+    }
+
+    long[] toArray() {
+        return Arrays.copyOf(data, size);
+    }
+}
@@ -0,0 +1,278 @@
+package org.example.kriegspiel.ai;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Итеративное углубление alpha-beta (negamax) с ограничением времени на ход.
+ * На каждой глубине первое (лучшее по прошлой итерации) действие корня
+ * считается с полным окном, остальные — параллельно в fork-join пуле, каждое
+ * в своей копии позиции, с общей нижней границей alpha. Итерация, прерванная
+ * по времени, отбрасывается: результат — последняя завершённая глубина.
+ *
+ * <p>Один ход = одно действие и передача хода, поэтому глубина считается в ходах.
+ *
+ * <p>Все потоки и все поиски одного экземпляра делят {@link TranspositionTable}:
+ * уже просчитанные транспозиции отсекаются, а лучшее действие из таблицы
+ * перебирается первым.
+ */
+public final class AlphaBetaSearch {
+
+    static final int WIN = 1_000_000;
+    private static final int INF = Integer.MAX_VALUE - 1;
+    private static final int MAX_DEPTH = 64;
+    // как часто сверяться с часами, узлов
+    private static final int CLOCK_MASK = 1023;
+    // 2^20 записей = 16 МБ
+    private static final int DEFAULT_TABLE_LOG2 = 20;
+
+    private final ForkJoinPool pool;
+    private final TranspositionTable table;
+
+    public AlphaBetaSearch(ForkJoinPool pool) {
+        this(pool, DEFAULT_TABLE_LOG2);
+    }
+
+    public AlphaBetaSearch(ForkJoinPool pool, int tableSizeLog2) {
+        this.pool = pool;
+        this.table = new TranspositionTable(tableSizeLog2);
+    }
+
+    /**
+     * Поиск в пуле; завершение (в потоке пула) не блокирует вызывающего.
+     */
+    public CompletableFuture<SearchResult> searchAsync(SearchPosition root, long budgetNanos) {
+        return CompletableFuture.supplyAsync(() -> search(root, budgetNanos), pool);
+    }
+
+    public SearchResult search(SearchPosition root, long budgetNanos) {
+        Iteration task = new Iteration(root, table, System.nanoTime() + budgetNanos);
+        return ForkJoinTask.getPool() == pool ? task.invoke() : pool.invoke(task);
+    }
+
+    private static final class Timeout extends RuntimeException {
+        Timeout() {
+            super(null, null, false, false);
+        }
+    }
+
+    private static final Timeout TIMEOUT = new Timeout();
+
+    /**
+     * Корень поиска: цикл углубления.
+     */
+    private static final class Iteration extends RecursiveTask<SearchResult> {
+        private final SearchPosition root;
+        private final TranspositionTable table;
+        private final long deadline;
+
+        Iteration(SearchPosition root, TranspositionTable table, long deadline) {
+            this.root = root;
+            this.table = table;
+            this.deadline = deadline;
+        }
+
+        @Override
+        protected SearchResult compute() {
+            ActionList list = new ActionList();
+            root.generate(list);
+            long[] order = list.toArray();
+            int n = order.length;
+            if (n == 1) {
+                return new SearchResult(order, 0, 0, 0);
+            }
+
+            int[] scores = new int[n];
+            int bestScore = 0;
+            int completed = 0;
+            long nodes = 0;
+
+            for (int depth = 1; depth <= MAX_DEPTH; depth++) {
+                long depthNodes = 0;
+                try {
+                    Searcher first = new Searcher(root.copy(), table, deadline);
+                    scores[0] = first.rootChild(order[0], depth, -INF);
+                    depthNodes += first.nodes;
+
+                    AtomicInteger alpha = new AtomicInteger(scores[0]);
+                    List<Sibling> siblings = new ArrayList<>(n - 1);
+                    for (int i = 1; i < n; i++) {
+                        siblings.add(new Sibling(root, table, order[i], depth, alpha, deadline));
+                    }
+                    ForkJoinTask.invokeAll(siblings);
+                    for (int i = 1; i < n; i++) {
+                        Sibling s = siblings.get(i - 1);
+                        scores[i] = s.join();
+                        depthNodes += s.nodes;
+                    }
+                } catch (Timeout timeout) {
+                    nodes += depthNodes;
+                    break;
+                }
+                nodes += depthNodes;
+
+                sortByScore(order, scores);
+                bestScore = scores[0];
+                completed = depth;
+                if (Math.abs(bestScore) >= WIN - MAX_DEPTH || System.nanoTime() >= deadline) break;
+            }
+            return new SearchResult(order, bestScore, completed, nodes);
+        }
+
+        // устойчивая сортировка вставками по убыванию оценки
+        private static void sortByScore(long[] order, int[] scores) {
+            for (int i = 1; i < order.length; i++) {
+                long a = order[i];
+                int s = scores[i];
+                int j = i - 1;
+                while (j >= 0 && scores[j] < s) {
+                    order[j + 1] = order[j];
+                    scores[j + 1] = scores[j];
+                    j--;
+                }
+                order[j + 1] = a;
+                scores[j + 1] = s;
+            }
+        }
+    }
+
+    /**
+     * Одно действие корня на своей копии позиции.
+     */
+    private static final class Sibling extends RecursiveTask<Integer> {
+        private final SearchPosition root;
+        private final TranspositionTable table;
+        private final long action;
+        private final int depth;
+        private final AtomicInteger alpha;
+        private final long deadline;
+        long nodes;
+
+        Sibling(SearchPosition root, TranspositionTable table, long action, int depth,
+                AtomicInteger alpha, long deadline) {
+            this.root = root;
+            this.table = table;
+            this.action = action;
+            this.depth = depth;
+            this.alpha = alpha;
+            this.deadline = deadline;
+        }
+
+        @Override
+        protected Integer compute() {
+            Searcher s = new Searcher(root.copy(), table, deadline);
+            try {
+                int score = s.rootChild(action, depth, alpha.get());
+                alpha.accumulateAndGet(score, Math::max);
+                return score;
+            } finally {
+                nodes = s.nodes;
+            }
+        }
+    }
+
+    /**
+     * Negamax одного потока: своя позиция и списки действий по глубинам.
+     */
+    private static final class Searcher {
+        private final SearchPosition pos;
+        private final TranspositionTable table;
+        private final long deadline;
+        private final ActionList[] lists = new ActionList[MAX_DEPTH + 1];
+        long nodes;
+
+        Searcher(SearchPosition pos, TranspositionTable table, long deadline) {
+            this.pos = pos;
+            this.table = table;
+            this.deadline = deadline;
+        }
+
+        /**
+         * Оценка действия корня; при оценке не выше {@code alpha} это лишь верхняя граница.
+         */
+        int rootChild(long action, int depth, int alpha) {
+            pos.make(action);
+            int score = -negamax(depth - 1, 1, -INF, -alpha);
+            pos.unmake();
+            return score;
+        }
+
+        private int negamax(int depth, int ply, int alpha, int beta) {
+            if ((++nodes & CLOCK_MASK) == 0 && System.nanoTime() >= deadline) {
+                throw TIMEOUT;
+            }
+            if (pos.isLost()) {
+                return -WIN + ply;
+            }
+            if (depth == 0) {
+                return pos.evaluate();
+            }
+
+            long key = pos.hash();
+            int alphaOrig = alpha;
+            int ttMove = TranspositionTable.NO_MOVE;
+            long entry = table.probe(key);
+            if (entry != 0) {
+                ttMove = TranspositionTable.moveOf(entry);
+                if (TranspositionTable.depthOf(entry) >= depth) {
+                    int score = fromTable(TranspositionTable.scoreOf(entry), ply);
+                    switch (TranspositionTable.boundOf(entry)) {
+                        case TranspositionTable.EXACT -> {
+                            return score;
+                        }
+                        case TranspositionTable.LOWER -> alpha = Math.max(alpha, score);
+                        default -> beta = Math.min(beta, score);
+                    }
+                    if (alpha >= beta) return score;
+                }
+            }
+
+            ActionList list = lists[ply];
+            if (list == null) list = lists[ply] = new ActionList();
+            pos.generate(list);
+            // лучшее действие из таблицы — первым; индексы в таблице — в порядке генерации
+            if (ttMove < list.size()) list.swap(0, ttMove);
+            else ttMove = 0;
+
+            int best = -INF;
+            int bestIndex = 0;
+            for (int i = 0; i < list.size(); i++) {
+                pos.make(list.get(i));
+                int score = -negamax(depth - 1, ply + 1, -beta, -alpha);
+                pos.unmake();
+                if (score > best) {
+                    best = score;
+                    bestIndex = i;
+                    if (score > alpha) {
+                        alpha = score;
+                        if (alpha >= beta) break;
+                    }
+                }
+            }
+
+            int generated = (bestIndex == 0) ? ttMove : (bestIndex == ttMove) ? 0 : bestIndex;
+            int bound = best <= alphaOrig ? TranspositionTable.UPPER
+                    : best >= beta ? TranspositionTable.LOWER : TranspositionTable.EXACT;
+            table.store(key, toTable(best, ply), depth, bound, generated);
+            return best;
+        }
+
+        // оценки выигрыша хранятся относительно узла, а не корня
+        private static int toTable(int score, int ply) {
+            if (score >= WIN - MAX_DEPTH) return score + ply;
+            if (score <= -WIN + MAX_DEPTH) return score - ply;
+            return score;
+        }
+
+        private static int fromTable(int score, int ply) {
+            if (score >= WIN - MAX_DEPTH) return score - ply;
+            if (score <= -WIN + MAX_DEPTH) return score + ply;
+            return score;
+        }
+    }
+}
@@ -0,0 +1,385 @@
+package org.example.kriegspiel.ai;
+
+import org.example.kriegspiel.Game;
+import org.example.kriegspiel.map.GameMap;
+import org.example.kriegspiel.map.TerrainType;
+import org.example.kriegspiel.map.VisibilityGrid;
+import org.example.kriegspiel.map.ZobristHash;
+import org.example.kriegspiel.model.Player;
+import org.example.kriegspiel.model.unit.Unit;
+
+import java.util.Arrays;
+
+/**
+ * Компактная позиция для поиска, построенная по тому, что видит игрок:
+ * свои юниты, видимые враги, местность в видимости (в тумане считается равниной),
+ * ловушки неизвестны. Юниты — параллельные массивы по индексу, клетки —
+ * {@code y * width + x}. Сторона 0 — игрок, для которого строилась позиция.
+ *
+ * <p>Действие — {@code long}: вид ({@link #MOVE}, {@link #ATTACK}, {@link #PASS}),
+ * индекс юнита и целевая клетка. {@link #make(long)} применяет действие вместе с
+ * передачей хода, {@link #unmake()} точно его откатывает.
+ *
+ * <p>Zobrist-хэш ({@link #hash()}) ведётся так же, как в Game, но юниты
+ * различаются индексом, а местность и цель похода входят в базу хэша, поэтому
+ * позиции из разных партий могут делить одну таблицу транспозиций.
+ */
+public final class SearchPosition {
+
+    public static final int MOVE = 0;
+    public static final int ATTACK = 1;
+    // ходить некем: только передача хода
+    public static final int PASS = 2;
+
+    private static final int SWAMP = TerrainType.SWAMP.ordinal();
+
+    private final int width;
+    private final int height;
+    private final byte[] terrain; // не меняется, общий для копий
+
+    private final int count;
+    private final byte[] type;
+    private final byte[] side;
+    private final int[] x;
+    private final int[] y;
+    private final int[] hp;
+    private final int[] stun;
+    private final int[] occupant; // индекс юнита + 1, 0 — пусто
+    private final int[] alive = new int[2];
+    private final int[] initial = new int[2];
+
+    // куда идти стороне 0, пока врагов не видно (угол старта противника)
+    private final int searchX;
+    private final int searchY;
+
+    private int sideToMove;
+
+    private int[] undo = new int[256];
+    private int undoTop;
+
+    private long hash;
+    private long[] hashStack = new long[64];
+    private int hashTop;
+
+    private SearchPosition(int width, int height, byte[] terrain, int count, int searchX, int searchY) {
+        this.width = width;
+        this.height = height;
+        this.terrain = terrain;
+        this.count = count;
+        this.type = new byte[count];
+        this.side = new byte[count];
+        this.x = new int[count];
+        this.y = new int[count];
+        this.hp = new int[count];
+        this.stun = new int[count];
+        this.occupant = new int[width * height];
+        this.searchX = searchX;
+        this.searchY = searchY;
+    }
+
+    /**
+     * Позиция глазами {@code viewer}: враги вне его видимости в позицию не попадают.
+     */
+    public static SearchPosition fromView(Game game, Player viewer) {
+        GameMap map = game.getMap();
+        Player enemy = (viewer == game.getPlayer1()) ? game.getPlayer2() : game.getPlayer1();
+        VisibilityGrid visible = map.getVisibilityGrid(viewer);
+        int w = map.getWidth();
+        int h = map.getHeight();
+
+        byte[] terrain = new byte[w * h];
+        for (int yy = 0; yy < h; yy++) {
+            for (int xx = 0; xx < w; xx++) {
+                int cell = yy * w + xx;
+                terrain[cell] = visible.isVisibleCell(cell) ? (byte) map.getTerrainAt(xx, yy).ordinal() : 0;
+            }
+        }
+
+        int visibleEnemies = 0;
+        for (Unit u : enemy.getUnits()) {
+            if (visible.isVisible(u.getX(), u.getY())) visibleEnemies++;
+        }
+
+        // игрок 1 стартует в левом верхнем углу, игрок 2 — в правом нижнем
+        boolean enemyIsSecond = enemy == game.getPlayer2();
+        SearchPosition p = new SearchPosition(w, h, terrain, viewer.getUnits().size() + visibleEnemies,
+                enemyIsSecond ? w - 1 : 0, enemyIsSecond ? h - 1 : 0);
+        int i = 0;
+        for (Unit u : viewer.getUnits()) {
+            p.add(i++, u, 0);
+        }
+        for (Unit u : enemy.getUnits()) {
+            if (visible.isVisible(u.getX(), u.getY())) p.add(i++, u, 1);
+        }
+        p.sideToMove = (game.getCurrentPlayer() == viewer) ? 0 : 1;
+        p.initial[0] = p.alive[0];
+        p.initial[1] = p.alive[1];
+        p.hash = p.computeHash();
+        return p;
+    }
+
+    private long computeHash() {
+        long h = ZobristHash.unitAtKey(-1, searchY * width + searchX);
+        for (int cell = 0; cell < terrain.length; cell++) {
+            if (terrain[cell] != 0) h ^= ZobristHash.terrainKey(cell, terrain[cell]);
+        }
+        for (int u = 0; u < count; u++) {
+            if (hp[u] > 0) {
+                h ^= ZobristHash.unitAtKey(u, y[u] * width + x[u])
+                        ^ ZobristHash.hpKey(u, hp[u]) ^ ZobristHash.stunKey(u, stun[u]);
+            }
+        }
+        return sideToMove == 0 ? h : h ^ ZobristHash.sideKey();
+    }
+
+    private void add(int i, Unit u, int s) {
+        type[i] = (byte) UnitStats.typeOf(u);
+        side[i] = (byte) s;
+        x[i] = u.getX();
+        y[i] = u.getY();
+        hp[i] = u.getHp();
+        stun[i] = u.getSkipTurnsRemaining();
+        if (hp[i] > 0) {
+            occupant[y[i] * width + x[i]] = i + 1;
+            alive[s]++;
+        }
+    }
+
+    /**
+     * Независимая копия для другого потока поиска (местность общая).
+     */
+    public SearchPosition copy() {
+        SearchPosition c = new SearchPosition(width, height, terrain, count, searchX, searchY);
+        System.arraycopy(type, 0, c.type, 0, count);
+        System.arraycopy(side, 0, c.side, 0, count);
+        System.arraycopy(x, 0, c.x, 0, count);
+        System.arraycopy(y, 0, c.y, 0, count);
+        System.arraycopy(hp, 0, c.hp, 0, count);
+        System.arraycopy(stun, 0, c.stun, 0, count);
+        System.arraycopy(occupant, 0, c.occupant, 0, occupant.length);
+        c.alive[0] = alive[0];
+        c.alive[1] = alive[1];
+        c.initial[0] = initial[0];
+        c.initial[1] = initial[1];
+        c.sideToMove = sideToMove;
+        c.hash = hash;
+        return c;
+    }
+
+    public static long action(int kind, int unit, int cell) {
+        return ((long) kind << 56) | ((long) unit << 32) | (cell & 0xFFFFFFFFL);
+    }
+
+    public static int kindOf(long action) {
+        return (int) (action >>> 56);
+    }
+
+    public static int unitOf(long action) {
+        return (int) (action >>> 32) & 0xFFFFFF;
+    }
+
+    public static int cellOf(long action) {
+        return (int) action;
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getUnitX(int unit) {
+        return x[unit];
+    }
+
+    public int getUnitY(int unit) {
+        return y[unit];
+    }
+
+    public int getSideToMove() {
+        return sideToMove;
+    }
+
+    public long hash() {
+        return hash;
+    }
+
+    /**
+     * Сторона, которой ходить, потеряла все юниты (если они у неё были).
+     */
+    boolean isLost() {
+        return alive[sideToMove] == 0 && initial[sideToMove] > 0;
+    }
+
+    /**
+     * Все действия стороны, которой ходить: сначала атаки, затем ходы;
+     * если действовать некем — единственный {@link #PASS}.
+     */
+    void generate(ActionList out) {
+        out.clear();
+        int me = sideToMove;
+        for (int u = 0; u < count; u++) {
+            if (side[u] != me || hp[u] == 0 || stun[u] > 0) continue;
+            int range = UnitStats.RANGE_ON[type[u]][terrain[y[u] * width + x[u]]];
+            for (int v = 0; v < count; v++) {
+                if (side[v] == me || hp[v] == 0) continue;
+                if (Math.abs(x[v] - x[u]) + Math.abs(y[v] - y[u]) <= range) {
+                    out.add(action(ATTACK, u, y[v] * width + x[v]));
+                }
+            }
+        }
+        for (int u = 0; u < count; u++) {
+            if (side[u] != me || hp[u] == 0 || stun[u] > 0) continue;
+            int t = type[u];
+            int r = UnitStats.MOVE[t];
+            int mask = UnitStats.TERRAIN_MASK[t];
+            int yFrom = Math.max(0, y[u] - r);
+            int yTo = Math.min(height - 1, y[u] + r);
+            for (int yy = yFrom; yy <= yTo; yy++) {
+                int span = r - Math.abs(yy - y[u]);
+                int xFrom = Math.max(0, x[u] - span);
+                int xTo = Math.min(width - 1, x[u] + span);
+                int row = yy * width;
+                for (int xx = xFrom; xx <= xTo; xx++) {
+                    int cell = row + xx;
+                    if (occupant[cell] == 0 && (mask & (1 << terrain[cell])) != 0) {
+                        out.add(action(MOVE, u, cell));
+                    }
+                }
+            }
+        }
+        if (out.size() == 0) {
+            out.add(action(PASS, 0, 0));
+        }
+    }
+
+    /**
+     * Применяет действие и передаёт ход (с тиком оглушения у следующей стороны).
+     */
+    void make(long a) {
+        if (hashTop == hashStack.length) hashStack = Arrays.copyOf(hashStack, hashTop * 2);
+        hashStack[hashTop++] = hash;
+        long h = hash;
+        int kind = kindOf(a);
+        if (kind == MOVE) {
+            int u = unitOf(a);
+            int cell = cellOf(a);
+            int from = y[u] * width + x[u];
+            push(u);
+            push(from);
+            push(stun[u]);
+            occupant[from] = 0;
+            occupant[cell] = u + 1;
+            x[u] = cell % width;
+            y[u] = cell / width;
+            h ^= ZobristHash.unitAtKey(u, from) ^ ZobristHash.unitAtKey(u, cell);
+            if (terrain[cell] == SWAMP) {
+                int s = Math.max(stun[u], UnitStats.SWAMP_STUN[type[u]]);
+                h ^= ZobristHash.stunKey(u, stun[u]) ^ ZobristHash.stunKey(u, s);
+                stun[u] = s;
+            }
+        } else if (kind == ATTACK) {
+            int u = unitOf(a);
+            int cell = cellOf(a);
+            int t = occupant[cell] - 1;
+            push(t);
+            push(hp[t]);
+            int left = Math.max(0, hp[t] - UnitStats.ATTACK[type[u]]);
+            if (left == 0) {
+                // убитый юнит уходит из хэша целиком
+                h ^= ZobristHash.unitAtKey(t, cell) ^ ZobristHash.hpKey(t, hp[t]) ^ ZobristHash.stunKey(t, stun[t]);
+                occupant[cell] = 0;
+                alive[side[t]]--;
+            } else {
+                h ^= ZobristHash.hpKey(t, hp[t]) ^ ZobristHash.hpKey(t, left);
+            }
+            hp[t] = left;
+        }
+        push(kind);
+
+        sideToMove ^= 1;
+        h ^= ZobristHash.sideKey();
+        int ticked = 0;
+        for (int u = 0; u < count; u++) {
+            if (side[u] == sideToMove && hp[u] > 0 && stun[u] > 0) {
+                h ^= ZobristHash.stunKey(u, stun[u]) ^ ZobristHash.stunKey(u, stun[u] - 1);
+                stun[u]--;
+                push(u);
+                ticked++;
+            }
+        }
+        push(ticked);
+        hash = h;
+    }
+
+    void unmake() {
+        hash = hashStack[--hashTop];
+        int ticked = pop();
+        for (int i = 0; i < ticked; i++) {
+            stun[pop()]++;
+        }
+        sideToMove ^= 1;
+
+        int kind = pop();
+        if (kind == MOVE) {
+            int oldStun = pop();
+            int from = pop();
+            int u = pop();
+            occupant[y[u] * width + x[u]] = 0;
+            occupant[from] = u + 1;
+            x[u] = from % width;
+            y[u] = from / width;
+            stun[u] = oldStun;
+        } else if (kind == ATTACK) {
+            int oldHp = pop();
+            int t = pop();
+            if (hp[t] == 0) {
+                occupant[y[t] * width + x[t]] = t + 1;
+                alive[side[t]]++;
+            }
+            hp[t] = oldHp;
+        }
+    }
+
+    /**
+     * Оценка с точки зрения стороны, которой ходить: здоровье и число юнитов,
+     * минус расстояние каждого юнита до ближайшего врага (сторона 0, не видя
+     * врагов, идёт к их стартовому углу).
+     */
+    int evaluate() {
+        int score = material(0) - material(1) - approach(0) + approach(1);
+        return sideToMove == 0 ? score : -score;
+    }
+
+    private int material(int s) {
+        int m = 0;
+        for (int u = 0; u < count; u++) {
+            if (side[u] == s && hp[u] > 0) m += 40 + 10 * hp[u];
+        }
+        return m;
+    }
+
+    private int approach(int s) {
+        int total = 0;
+        for (int u = 0; u < count; u++) {
+            if (side[u] != s || hp[u] == 0) continue;
+            int best = Integer.MAX_VALUE;
+            for (int v = 0; v < count; v++) {
+                if (side[v] == s || hp[v] == 0) continue;
+                best = Math.min(best, Math.abs(x[v] - x[u]) + Math.abs(y[v] - y[u]));
+            }
+            if (best == Integer.MAX_VALUE) {
+                best = (s == 0) ? Math.abs(searchX - x[u]) + Math.abs(searchY - y[u]) : 0;
+            }
+            total += best;
+        }
+        return total;
+    }
+
+    private void push(int v) {
+        if (undoTop == undo.length) undo = Arrays.copyOf(undo, undoTop * 2);
+        undo[undoTop++] = v;
+    }
+
+    private int pop() {
+        return undo[--undoTop];
+    }
+}
@@ -0,0 +1,20 @@
+package org.example.kriegspiel.ai;
+
+/**
+ * Результат поиска: действия корня от лучшего к худшему (по последней
+ * завершённой глубине), оценка лучшего и статистика.
+ */
+public final class SearchResult {
+
+    public final long[] rankedActions;
+    public final int score;
+    public final int depth;
+    public final long nodes;
+
+    SearchResult(long[] rankedActions, int score, int depth, long nodes) {
+        this.rankedActions = rankedActions;
+        this.score = score;
+        this.depth = depth;
+        this.nodes = nodes;
+    }
+}
@@ -0,0 +1,72 @@
+package org.example.kriegspiel.ai;
+
+/**
+ * Таблица транспозиций фиксированного размера, общая для всех потоков поиска.
+ * Запись — два {@code long} в одном массиве: {@code key ^ data} и {@code data}.
+ * Запись и чтение без блокировок; если запись разорвана гонкой потоков,
+ * XOR не сойдётся с ключом и чтение вернёт промах (lockless hashing Хайатта).
+ *
+ * <p>data: оценка (биты 0–31), глубина (32–39), вид границы (40–41),
+ * индекс лучшего действия в порядке генерации (42–57), бит занятости (63).
+ */
+final class TranspositionTable {
+
+    static final int EXACT = 0;
+    static final int LOWER = 1;
+    static final int UPPER = 2;
+
+    static final int NO_MOVE = 0xFFFF;
+    private static final long USED = 1L << 63;
+
+    private final long[] table;
+    private final int mask;
+
+    /**
+     * @param sizeLog2 log2 числа записей (16 байт на запись)
+     */
+    TranspositionTable(int sizeLog2) {
+        this.table = new long[2 << sizeLog2];
+        this.mask = (1 << sizeLog2) - 1;
+    }
+
+    /**
+     * @return data записи или 0, если позиции в таблице нет
+     */
+    long probe(long key) {
+        int i = ((int) (key ^ (key >>> 32)) & mask) << 1;
+        long data = table[i + 1];
+        return (table[i] ^ data) == key && data != 0 ? data : 0;
+    }
+
+    /**
+     * Заменяет запись другой позиции всегда, своей — если глубина не меньше.
+     */
+    void store(long key, int score, int depth, int bound, int move) {
+        int i = ((int) (key ^ (key >>> 32)) & mask) << 1;
+        long old = table[i + 1];
+        if ((table[i] ^ old) == key && old != 0 && depthOf(old) > depth) return;
+        long data = USED
+                | (score & 0xFFFFFFFFL)
+                | ((long) Math.min(depth, 0xFF) << 32)
+                | ((long) bound << 40)
+                | ((long) Math.min(move, NO_MOVE) << 42);
+        table[i] = key ^ data;
+        table[i + 1] = data;
+    }
+
+    static int scoreOf(long data) {
+        return (int) data;
+    }
+
+    static int depthOf(long data) {
+        return (int) (data >>> 32) & 0xFF;
+    }
+
+    static int boundOf(long data) {
+        return (int) (data >>> 40) & 0x3;
+    }
+
+    static int moveOf(long data) {
+        return (int) (data >>> 42) & 0xFFFF;
+    }
+}
@@ -0,0 +1,54 @@
+package org.example.kriegspiel.ai;
+
+import org.example.kriegspiel.map.TerrainType;
+import org.example.kriegspiel.model.unit.Artillery;
+import org.example.kriegspiel.model.unit.Cavalry;
+import org.example.kriegspiel.model.unit.Infantry;
+import org.example.kriegspiel.model.unit.Unit;
+
+/**
+ * Характеристики типов юнитов в виде таблиц по индексу типа.
+ * Значения берутся из самих классов модели, чтобы поиск не расходился
+ * с правилами при их изменении.
+ */
+final class UnitStats {
+    private UnitStats() {}
+
+    static final int INFANTRY = 0;
+    static final int CAVALRY = 1;
+    static final int ARTILLERY = 2;
+
+    private static final Unit[] PROTOTYPES = {new Infantry(null), new Cavalry(null), new Artillery(null)};
+
+    static final int[] HP = new int[PROTOTYPES.length];
+    static final int[] ATTACK = new int[PROTOTYPES.length];
+    static final int[] MOVE = new int[PROTOTYPES.length];
+    static final int[] RANGE = new int[PROTOTYPES.length];
+    // дальность атаки по типу и ordinal-у местности под юнитом
+    static final int[][] RANGE_ON = new int[PROTOTYPES.length][TerrainType.values().length];
+    // бит ordinal-а TerrainType выставлен, если тип может войти на клетку
+    static final int[] TERRAIN_MASK = new int[PROTOTYPES.length];
+    // оглушение при входе в болото
+    static final int[] SWAMP_STUN = new int[PROTOTYPES.length];
+
+    static {
+        for (int t = 0; t < PROTOTYPES.length; t++) {
+            Unit u = PROTOTYPES[t];
+            HP[t] = u.getHp();
+            ATTACK[t] = u.getAttackPower();
+            MOVE[t] = u.getMoveRange();
+            RANGE[t] = u.getAttackRange();
+            TERRAIN_MASK[t] = u.getTerrainMask();
+            SWAMP_STUN[t] = u.getSwampStun();
+            for (TerrainType here : TerrainType.values()) {
+                RANGE_ON[t][here.ordinal()] = u.getAttackRangeOn(here);
+            }
+        }
+    }
+
+    static int typeOf(Unit u) {
+        if (u instanceof Artillery) return ARTILLERY;
+        if (u instanceof Cavalry) return CAVALRY;
+        return INFANTRY;
+    }
+}
@@ -0,0 +1,13 @@
+package org.example.kriegspiel.jfr;
+
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Принятое правилами действие: {@code Game.moveUnit}, {@code Game.attack}
+ * или {@code Game.endTurn}. Ходы поиска бота (make/unmake) сюда не попадают.
+ */
+@Name("kriegspiel.Action")
+@Label("Game Action")
+public final class ActionEvent extends MatchEvent {
+}
@@ -0,0 +1,56 @@
+package org.example.kriegspiel.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.StackTrace;
+import org.example.kriegspiel.map.GameMap;
+
+/**
+ * Общие поля событий JFR партии. События выключены по умолчанию: пока их не
+ * включили в записи, {@code begin()/shouldCommit()} — проверка одного флага,
+ * а поля заполняются только после {@code shouldCommit()}. Включить все:
+ *
+ * <pre>
+ * java -XX:StartFlightRecording:filename=ks.jfr,+kriegspiel.Action#enabled=true,\
+ *      +kriegspiel.Visibility#enabled=true,+kriegspiel.StateMapping#enabled=true,\
+ *      +kriegspiel.SendState#enabled=true ...
+ * jfr print --events kriegspiel.SendState ks.jfr
+ * </pre>
+ */
+@Category("Kriegspiel")
+@Enabled(false)
+@StackTrace(false)
+public abstract class MatchEvent extends Event {
+
+    @Label("Match")
+    public String matchId;
+
+    @Label("Action Type")
+    public String actionType;
+
+    @Label("Map Width")
+    public int mapWidth;
+
+    @Label("Map Height")
+    public int mapHeight;
+
+    @Label("Unit Count")
+    public int unitCount;
+
+    @Label("Payload Bytes")
+    @DataAmount
+    public int payloadBytes;
+
+    /**
+     * Партия, размер карты и число юнитов на ней.
+     */
+    public void setMap(GameMap map) {
+        matchId = map.getMatchId();
+        mapWidth = map.getWidth();
+        mapHeight = map.getHeight();
+        unitCount = map.getUnitCount();
+    }
+}
@@ -0,0 +1,13 @@
+package org.example.kriegspiel.jfr;
+
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Отправка состояния одному участнику: построение, кодирование и постановка
+ * в исходящую очередь. Размер — закодированного сообщения.
+ */
+@Name("kriegspiel.SendState")
+@Label("Send State")
+public final class SendStateEvent extends MatchEvent {
+}
@@ -0,0 +1,13 @@
+package org.example.kriegspiel.jfr;
+
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Построение состояния для клиента: полный STATE ({@code GameStateMapper})
+ * или DELTA участника.
+ */
+@Name("kriegspiel.StateMapping")
+@Label("State Mapping")
+public final class StateMappingEvent extends MatchEvent {
+}
@@ -0,0 +1,12 @@
+package org.example.kriegspiel.jfr;
+
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Копия видимости игрока в массив: {@code GameMap.getVisibilityFor}.
+ */
+@Name("kriegspiel.Visibility")
+@Label("Visibility Copy")
+public final class VisibilityEvent extends MatchEvent {
+}
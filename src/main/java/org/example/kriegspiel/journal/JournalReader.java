@@ -0,0 +1,158 @@
+package org.example.kriegspiel.journal;
+
+import org.example.kriegspiel.ActionBuffer;
+import org.example.kriegspiel.Game;
+import org.example.kriegspiel.map.GameMap;
+import org.example.kriegspiel.model.unit.Unit;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32C;
+
+/**
+ * Чтение журнала {@link MatchJournal} и детерминированный повтор партии.
+ * Запуск: {@code JournalReader <каталог> <имя журнала>} — печатает заголовок,
+ * число действий и итог повтора.
+ */
+public final class JournalReader {
+
+    public interface RecordVisitor {
+        void record(long seq, int seat, int kind, int fromX, int fromY, int toX, int toY);
+    }
+
+    private final Path dir;
+    private final String name;
+
+    public final long seed;
+    public final int width;
+    public final int height;
+    public final String p1Name;
+    public final String p2Name;
+    private final int firstRecord;
+
+    private JournalReader(Path dir, String name, ByteBuffer segment0) throws IOException {
+        this.dir = dir;
+        this.name = name;
+        checkSegmentHeader(segment0, 0);
+        this.seed = segment0.getLong();
+        this.width = segment0.getInt();
+        this.height = segment0.getInt();
+        this.p1Name = readName(segment0);
+        this.p2Name = readName(segment0);
+        this.firstRecord = MatchJournal.SEGMENT_HEADER
+                + MatchJournal.align(segment0.position() - MatchJournal.SEGMENT_HEADER);
+    }
+
+    public static JournalReader open(Path dir, String name) throws IOException {
+        return new JournalReader(dir, name, readSegment(MatchJournal.segmentPath(dir, name, 0)));
+    }
+
+    /**
+     * Обходит записи по порядку до первой пустой или повреждённой.
+     *
+     * @return число записей
+     */
+    public long forEach(RecordVisitor visitor) throws IOException {
+        CRC32C crc = new CRC32C();
+        byte[] body = new byte[MatchJournal.RECORD_SIZE - 4];
+        long expected = 1;
+        for (int segment = 0; ; segment++) {
+            Path path = MatchJournal.segmentPath(dir, name, segment);
+            if (!Files.exists(path)) return expected - 1;
+            ByteBuffer b = readSegment(path);
+            checkSegmentHeader(b, segment);
+            b.position(segment == 0 ? firstRecord : MatchJournal.SEGMENT_HEADER);
+
+            while (b.remaining() >= MatchJournal.RECORD_SIZE) {
+                b.get(body);
+                int stored = b.getInt();
+                crc.reset();
+                crc.update(body, 0, body.length);
+                ByteBuffer r = ByteBuffer.wrap(body);
+                long seq = r.getLong();
+                if (seq != expected || stored != (int) crc.getValue()) return expected - 1;
+                int seat = r.get();
+                int kind = r.get();
+                r.getShort();
+                visitor.record(seq, seat, kind, r.getInt(), r.getInt(), r.getInt(), r.getInt());
+                expected++;
+            }
+        }
+    }
+
+    /**
+     * Партия в состоянии после последнего записанного действия.
+     */
+    public Game replay() throws IOException {
+        Game game = new Game(width, height, p1Name, p2Name, seed);
+        forEach((seq, seat, kind, fromX, fromY, toX, toY) -> {
+            int current = (game.getCurrentPlayer() == game.getPlayer1()) ? 1 : 2;
+            if (seat != current) {
+                throw new IllegalStateException("Журнал расходится с партией: действие " + seq
+                        + " игрока " + seat + ", а ходит игрок " + current);
+            }
+            GameMap map = game.getMap();
+            switch (kind) {
+                case ActionBuffer.MOVE -> game.moveUnit(unitAt(map, seq, fromX, fromY), toX, toY);
+                case ActionBuffer.ATTACK -> game.attack(unitAt(map, seq, fromX, fromY), unitAt(map, seq, toX, toY));
+                case ActionBuffer.PASS -> { }
+                default -> throw new IllegalStateException("Неизвестное действие в журнале: " + kind);
+            }
+            game.endTurn();
+        });
+        return game;
+    }
+
+    private static Unit unitAt(GameMap map, long seq, int x, int y) {
+        Unit unit = map.getUnitAt(x, y);
+        if (unit == null) {
+            throw new IllegalStateException("Журнал расходится с партией: действие " + seq
+                    + " ссылается на пустую клетку (" + x + ", " + y + ")");
+        }
+        return unit;
+    }
+
+    private static ByteBuffer readSegment(Path path) throws IOException {
+        try (FileChannel ch = FileChannel.open(path, StandardOpenOption.READ)) {
+            return ch.map(FileChannel.MapMode.READ_ONLY, 0, ch.size());
+        }
+    }
+
+    private static void checkSegmentHeader(ByteBuffer b, int segment) throws IOException {
+        if (b.remaining() < MatchJournal.SEGMENT_HEADER
+                || b.getInt() != MatchJournal.MAGIC
+                || b.getShort() != MatchJournal.VERSION) {
+            throw new IOException("Не журнал партии или неподдерживаемая версия");
+        }
+        b.getShort();
+        if (b.getInt() != segment || b.getInt() != MatchJournal.RECORD_SIZE) {
+            throw new IOException("Неверный заголовок сегмента " + segment);
+        }
+    }
+
+    private static String readName(ByteBuffer b) {
+        byte[] bytes = new byte[b.getShort() & 0xFFFF];
+        b.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    public static void main(String[] args) throws Exception {
+        if (args.length < 2) {
+            System.out.println("Использование: JournalReader <каталог> <имя журнала>");
+            return;
+        }
+        JournalReader reader = open(Path.of(args[0]), args[1]);
+        System.out.println("seed=" + reader.seed + " map=" + reader.width + "x" + reader.height
+                + " players=" + reader.p1Name + " / " + reader.p2Name);
+        Game game = reader.replay();
+        System.out.println("actions=" + reader.forEach((seq, seat, kind, fx, fy, tx, ty) -> { })
+                + " units=" + game.getPlayer1().getUnits().size() + " / " + game.getPlayer2().getUnits().size()
+                + " next=" + game.getCurrentPlayer().getName()
+                + (game.isGameOver() ? " (игра окончена)" : ""));
+    }
+}
@@ -0,0 +1,191 @@
+package org.example.kriegspiel.journal;
+
+import org.example.kriegspiel.log.EventLog;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Каталог журналов партий и общий поток group commit: раз в интервал
+ * все открытые журналы сбрасываются на диск одним {@code force()} каждый,
+ * так что запись действия не ждёт диска. Действия последнего интервала
+ * могут потеряться при падении машины, но не при падении процесса
+ * (данные уже в page cache).
+ *
+ * <p>Тот же поток держит несколько заранее созданных и отображённых файлов
+ * сегментов: новый журнал или следующий сегмент получает готовый файл
+ * переименованием, без создания и mmap под монитором комнаты.
+ */
+public final class JournalStore implements Closeable {
+
+    // 2040 записей: обычная партия умещается в один сегмент
+    public static final int DEFAULT_SEGMENT_SIZE = 64 << 10;
+    // каждый журнал — свой msync за интервал: чаще — почти по вызову на действие
+    public static final long DEFAULT_FLUSH_MILLIS = 20;
+    private static final int SPARES = 4;
+
+    record Mapped(FileChannel channel, MappedByteBuffer buffer) {}
+
+    private record Spare(Path path, Mapped mapped) {}
+
+    private final Path dir;
+    private final int segmentSize;
+    private final AtomicLong counter = new AtomicLong();
+
+    private final Set<MatchJournal> open = ConcurrentHashMap.newKeySet();
+    private final ConcurrentLinkedQueue<MatchJournal> released = new ConcurrentLinkedQueue<>();
+    private final ConcurrentLinkedQueue<Spare> spares = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger spareCount = new AtomicInteger();
+    private final ScheduledExecutorService flusher;
+    private final EventLog log;
+
+    public JournalStore(Path dir) throws IOException {
+        this(dir, EventLog.off());
+    }
+
+    /**
+     * @param log ошибки записи и сброса журналов
+     */
+    public JournalStore(Path dir, EventLog log) throws IOException {
+        this(dir, DEFAULT_SEGMENT_SIZE, DEFAULT_FLUSH_MILLIS, log);
+    }
+
+    public JournalStore(Path dir, int segmentSize, long flushMillis) throws IOException {
+        this(dir, segmentSize, flushMillis, EventLog.off());
+    }
+
+    public JournalStore(Path dir, int segmentSize, long flushMillis, EventLog log) throws IOException {
+        this.log = log;
+        this.dir = Files.createDirectories(dir);
+        this.segmentSize = segmentSize;
+        this.flusher = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "journal-flusher");
+            t.setDaemon(true);
+            return t;
+        });
+        flusher.scheduleWithFixedDelay(this::flush, flushMillis, flushMillis, TimeUnit.MILLISECONDS);
+    }
+
+    public Path getDir() {
+        return dir;
+    }
+
+    /**
+     * Новый журнал партии; имя — {@code match} (только безопасные для файлов
+     * символы), время начала и порядковый номер.
+     */
+    public MatchJournal open(String match, long seed, int width, int height,
+                             String p1Name, String p2Name) throws IOException {
+        String name = match.replaceAll("[^A-Za-z0-9_-]", "_")
+                + "-" + System.currentTimeMillis() + "-" + counter.incrementAndGet();
+        MatchJournal journal = MatchJournal.create(this, name, segmentSize, seed, width, height, p1Name, p2Name);
+        open.add(journal);
+        return journal;
+    }
+
+    /**
+     * Партия окончена: журнал будет сброшен и закрыт потоком сброса.
+     */
+    public void release(MatchJournal journal) {
+        if (open.remove(journal)) {
+            released.add(journal);
+        }
+    }
+
+    /**
+     * Отображённый файл сегмента по пути {@code path}: готовый из запаса или новый.
+     */
+    Mapped allocate(Path path) throws IOException {
+        Spare spare = spares.poll();
+        if (spare != null) {
+            spareCount.decrementAndGet();
+            try {
+                Files.move(spare.path(), path, StandardCopyOption.ATOMIC_MOVE);
+                return spare.mapped();
+            } catch (IOException ex) {
+                // ФС без атомарного переименования открытого файла — создаём как обычно
+                spare.mapped().channel().close();
+                Files.deleteIfExists(spare.path());
+            }
+        }
+        return map(path);
+    }
+
+    private Mapped map(Path path) throws IOException {
+        FileChannel ch = FileChannel.open(path,
+                StandardOpenOption.CREATE_NEW, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        return new Mapped(ch, ch.map(FileChannel.MapMode.READ_WRITE, 0, segmentSize));
+    }
+
+    private void refillSpares() {
+        while (spareCount.get() < SPARES) {
+            Path path = dir.resolve("spare-" + counter.incrementAndGet() + ".tmp");
+            try {
+                Mapped mapped = map(path);
+                // страницы подгружаются здесь, а не при первых записях действий
+                mapped.buffer().load();
+                spares.add(new Spare(path, mapped));
+                spareCount.incrementAndGet();
+            } catch (IOException ex) {
+                log.error("journal", "spare", ex.getMessage());
+                return;
+            }
+        }
+    }
+
+    private void flush() {
+        for (MatchJournal j : open) {
+            try {
+                j.force();
+            } catch (IOException ex) {
+                log.error("journal", j.getName(), ex.getMessage());
+            }
+        }
+        for (MatchJournal j; (j = released.poll()) != null; ) {
+            try {
+                j.close();
+            } catch (IOException ex) {
+                log.error("journal", j.getName(), ex.getMessage());
+            }
+        }
+        refillSpares();
+    }
+
+    /**
+     * Останавливает поток сброса, сбрасывает и закрывает все журналы.
+     */
+    @Override
+    public void close() {
+        flusher.shutdown();
+        try {
+            flusher.awaitTermination(1, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        released.addAll(open);
+        open.clear();
+        flush();
+        for (Spare spare; (spare = spares.poll()) != null; ) {
+            try {
+                spare.mapped().channel().close();
+                Files.deleteIfExists(spare.path());
+            } catch (IOException ignored) {
+                // запасной файл без данных
+            }
+        }
+    }
+}
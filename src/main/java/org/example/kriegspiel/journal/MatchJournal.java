@@ -0,0 +1,185 @@
+package org.example.kriegspiel.journal;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.zip.CRC32C;
+
+/**
+ * Журнал одной партии: последовательность файлов-сегментов фиксированного
+ * размера, отображённых в память. Запись действия — копирование 32 байт в
+ * отображённый буфер, без системных вызовов; сбрасывает данные на диск
+ * {@link JournalStore} — одним {@code force()} за все действия интервала
+ * (group commit).
+ *
+ * <p>Формат (big-endian). Каждый сегмент {@code <name>.NNNNNN.kjl} начинается
+ * с заголовка {@value #SEGMENT_HEADER} байт: magic, версия, номер сегмента,
+ * размер записи. В сегменте 0 за ним следует заголовок партии: seed, ширина,
+ * высота, имена игроков (длина + UTF-8), выровненный до размера записи.
+ * Дальше — записи по {@value #RECORD_SIZE} байт: seq (с 1), место игрока, вид
+ * действия ({@code ActionBuffer.MOVE/ATTACK/PASS}), from x/y, to x/y, CRC32C
+ * первых 28 байт. Нулевой seq или неверная CRC — конец журнала.
+ *
+ * <p>{@link #append} вызывается под монитором комнаты, {@link #force()} —
+ * из потока {@link JournalStore}.
+ */
+public final class MatchJournal {
+
+    static final int MAGIC = 0x4B534A4C; // "KSJL"
+    // 2 — карта из MapGenerator (тайлы SplittableRandom); журналы версии 1 не повторяются
+    static final short VERSION = 2;
+    static final int SEGMENT_HEADER = 16;
+    static final int RECORD_SIZE = 32;
+    static final String SUFFIX = ".kjl";
+
+    private final JournalStore store;
+    private final String name;
+
+    private volatile Segment active;
+    private long nextSeq = 1;
+
+    // последний записанный seq (публикует запись для потока сброса) и последний сброшенный
+    private volatile long appendedSeq = 0;
+    private volatile long durableSeq = 0;
+
+    // заполненные сегменты, которые ещё надо сбросить и закрыть
+    private final ConcurrentLinkedQueue<Segment> retired = new ConcurrentLinkedQueue<>();
+
+    private final byte[] record = new byte[RECORD_SIZE - 4];
+    private final ByteBuffer recordBuf = ByteBuffer.wrap(record);
+    private final CRC32C crc = new CRC32C();
+
+    private static final class Segment {
+        final int index;
+        final FileChannel channel;
+        final MappedByteBuffer buffer;
+        // конец записанных данных (пишет append) и конец сброшенных (только поток сброса)
+        volatile int end;
+        int forced;
+
+        Segment(int index, FileChannel channel, MappedByteBuffer buffer) {
+            this.index = index;
+            this.channel = channel;
+            this.buffer = buffer;
+        }
+
+        // msync только нового диапазона, а не всего сегмента
+        void force() {
+            int e = end;
+            if (e > forced) {
+                buffer.force(forced, e - forced);
+                forced = e;
+            }
+        }
+    }
+
+    private MatchJournal(JournalStore store, String name) {
+        this.store = store;
+        this.name = name;
+    }
+
+    static MatchJournal create(JournalStore store, String name, int segmentSize,
+                               long seed, int width, int height, String p1Name, String p2Name) throws IOException {
+        byte[] n1 = p1Name.getBytes(StandardCharsets.UTF_8);
+        byte[] n2 = p2Name.getBytes(StandardCharsets.UTF_8);
+        int header = 8 + 4 + 4 + 2 + n1.length + 2 + n2.length;
+        if (n1.length > 0xFFFF || n2.length > 0xFFFF || SEGMENT_HEADER + align(header) + RECORD_SIZE > segmentSize) {
+            throw new IOException("Сегмент журнала слишком мал для заголовка партии");
+        }
+
+        MatchJournal j = new MatchJournal(store, name);
+        j.openSegment(0);
+        MappedByteBuffer b = j.active.buffer;
+        b.putLong(seed).putInt(width).putInt(height);
+        b.putShort((short) n1.length).put(n1);
+        b.putShort((short) n2.length).put(n2);
+        b.position(SEGMENT_HEADER + align(header));
+        j.active.end = b.position();
+        return j;
+    }
+
+    static int align(int bytes) {
+        return (bytes + RECORD_SIZE - 1) / RECORD_SIZE * RECORD_SIZE;
+    }
+
+    static Path segmentPath(Path dir, String name, int segment) {
+        return dir.resolve(String.format("%s.%06d%s", name, segment, SUFFIX));
+    }
+
+    private void openSegment(int index) throws IOException {
+        JournalStore.Mapped mapped = store.allocate(segmentPath(store.getDir(), name, index));
+        MappedByteBuffer b = mapped.buffer();
+        b.putInt(MAGIC).putShort(VERSION).putShort((short) 0).putInt(index).putInt(RECORD_SIZE);
+        Segment s = new Segment(index, mapped.channel(), b);
+        s.end = b.position();
+        if (active != null) {
+            retired.add(active);
+        }
+        active = s;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Добавляет действие; на диск оно попадёт при ближайшем сбросе.
+     * Новый сегмент создаётся, когда текущий заполнен.
+     *
+     * @return seq записи
+     */
+    public long append(int seat, int kind, int fromX, int fromY, int toX, int toY) throws IOException {
+        Segment s = active;
+        if (s.buffer.remaining() < RECORD_SIZE) {
+            openSegment(s.index + 1);
+            s = active;
+        }
+        long seq = nextSeq++;
+        recordBuf.clear();
+        recordBuf.putLong(seq).put((byte) seat).put((byte) kind).putShort((short) 0)
+                .putInt(fromX).putInt(fromY).putInt(toX).putInt(toY);
+        crc.reset();
+        crc.update(record, 0, record.length);
+        s.buffer.put(record).putInt((int) crc.getValue());
+        s.end = s.buffer.position();
+        appendedSeq = seq;
+        return seq;
+    }
+
+    public long getAppendedSeq() {
+        return appendedSeq;
+    }
+
+    /**
+     * Последний seq, гарантированно сброшенный на диск.
+     */
+    public long getDurableSeq() {
+        return durableSeq;
+    }
+
+    /**
+     * Сбрасывает на диск всё записанное (поток {@link JournalStore}).
+     */
+    void force() throws IOException {
+        // порядок важен: если сегмент сменился после чтения seq, прежний уже в retired
+        long seq = appendedSeq;
+        Segment current = active;
+        for (Segment s; (s = retired.poll()) != null; ) {
+            s.force();
+            s.channel.close();
+        }
+        if (seq != durableSeq) {
+            current.force();
+            durableSeq = seq;
+        }
+    }
+
+    void close() throws IOException {
+        force();
+        active.channel.close();
+    }
+}
@@ -0,0 +1,360 @@
+package org.example.kriegspiel.log;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.FileDescriptor;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Locale;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Асинхронный журнал событий сервера. Событие — имя, уровень, объект
+ * (обычно адрес соединения), число и текст; вызывающий поток только копирует
+ * ссылки в заранее созданную ячейку кольцевого буфера, строку из них собирает
+ * и пишет фоновый поток. Когда буфер полон, событие отбрасывается (счётчик
+ * {@link #getDropped()}), а не ждёт вывода.
+ *
+ * <p>Вывод — строки JSON или компактные двоичные записи ({@link Format#BINARY},
+ * читаются {@link #main}). DEBUG-события можно прореживать: пишется в среднем
+ * одно из {@code sampleEvery}. Тексты сообщений клиентов пишутся, только если
+ * включено {@link #logsPayloads()}.
+ *
+ * <p>Настройки {@link #fromSystemProperties()}:
+ * <ul>
+ *   <li>{@code kriegspiel.log.level} — DEBUG, INFO (по умолчанию), WARN, ERROR, OFF;</li>
+ *   <li>{@code kriegspiel.log.sample} — одно из N DEBUG-событий, по умолчанию 1;</li>
+ *   <li>{@code kriegspiel.log.payloads} — писать тексты сообщений, по умолчанию false;</li>
+ *   <li>{@code kriegspiel.log.format} — json (по умолчанию) или binary;</li>
+ *   <li>{@code kriegspiel.log.file} — файл вывода, по умолчанию stdout.</li>
+ * </ul>
+ */
+public final class EventLog implements Closeable {
+
+    public enum Level { DEBUG, INFO, WARN, ERROR, OFF }
+
+    public enum Format { JSON, BINARY }
+
+    public static final int DEFAULT_CAPACITY = 1 << 14;
+    // у события нет числа
+    public static final long NO_VALUE = Long.MIN_VALUE;
+
+    private static final int MAGIC = 0x4B534C31; // "KSL1"
+    // writeUTF не принимает строки длиннее 64 КБ
+    private static final int MAX_DETAIL = 16_384;
+    private static final long IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    private static final class Slot {
+        // номер записанного события; ячейка готова к чтению, когда совпадает с ожидаемым
+        volatile long seq = -1;
+        long time;
+        Level level;
+        String event;
+        Object subject;
+        long value;
+        String detail;
+    }
+
+    private final Slot[] ring;
+    private final int mask;
+    // следующий номер для записи
+    private final AtomicLong head = new AtomicLong();
+    // следующий номер для чтения; пишет только поток вывода
+    private volatile long tail;
+    private final LongAdder dropped = new LongAdder();
+
+    private final Level minLevel;
+    private final int sampleEvery;
+    private final boolean payloads;
+    private final Writer json;
+    private final DataOutputStream binary;
+    private final Thread thread;
+    private volatile boolean closing;
+
+    /**
+     * @param capacity    размер буфера, округляется вверх до степени двойки
+     * @param sampleEvery одно из скольких DEBUG-событий писать
+     */
+    public EventLog(OutputStream out, Format format, Level minLevel, int sampleEvery,
+                    boolean payloads, int capacity) {
+        int size = Integer.highestOneBit(Math.max(2, capacity - 1)) << 1;
+        this.ring = new Slot[size];
+        for (int i = 0; i < size; i++) {
+            ring[i] = new Slot();
+        }
+        this.mask = size - 1;
+        this.minLevel = minLevel;
+        this.sampleEvery = Math.max(1, sampleEvery);
+        this.payloads = payloads;
+        OutputStream buffered = new BufferedOutputStream(out, 1 << 16);
+        if (format == Format.BINARY) {
+            this.json = null;
+            this.binary = new DataOutputStream(buffered);
+        } else {
+            this.json = new BufferedWriter(new OutputStreamWriter(buffered, StandardCharsets.UTF_8), 1 << 16);
+            this.binary = null;
+        }
+        // выключенному журналу поток вывода не нужен
+        if (minLevel == Level.OFF) {
+            this.thread = null;
+            return;
+        }
+        this.thread = new Thread(this::run, "event-log");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Журнал по системным свойствам {@code kriegspiel.log.*} (см. описание класса).
+     *
+     * @throws UncheckedIOException файл вывода не открывается
+     */
+    public static EventLog fromSystemProperties() {
+        Level level = Level.valueOf(System.getProperty("kriegspiel.log.level", "INFO").toUpperCase(Locale.ROOT));
+        int sample = Integer.parseInt(System.getProperty("kriegspiel.log.sample", "1"));
+        boolean payloads = Boolean.parseBoolean(System.getProperty("kriegspiel.log.payloads", "false"));
+        Format format = Format.valueOf(System.getProperty("kriegspiel.log.format", "json").toUpperCase(Locale.ROOT));
+        String file = System.getProperty("kriegspiel.log.file");
+        // двоичный файл начинается с заголовка, поэтому пишется заново; JSON дописывается
+        OutputStream out;
+        try {
+            out = (file == null) ? new FileOutputStream(FileDescriptor.out)
+                    : new FileOutputStream(file, format == Format.JSON);
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+        return new EventLog(out, format, level, sample, payloads, DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Журнал, который ничего не пишет.
+     */
+    public static EventLog off() {
+        return new EventLog(OutputStream.nullOutputStream(), Format.JSON, Level.OFF, 1, false, 2);
+    }
+
+    public boolean isEnabled(Level level) {
+        return level.compareTo(minLevel) >= 0 && level != Level.OFF;
+    }
+
+    public boolean logsPayloads() {
+        return payloads;
+    }
+
+    public long getDropped() {
+        return dropped.sum();
+    }
+
+    public void debug(String event, Object subject, String detail) {
+        log(Level.DEBUG, event, subject, NO_VALUE, detail);
+    }
+
+    public void info(String event, Object subject, String detail) {
+        log(Level.INFO, event, subject, NO_VALUE, detail);
+    }
+
+    public void warn(String event, Object subject, String detail) {
+        log(Level.WARN, event, subject, NO_VALUE, detail);
+    }
+
+    public void error(String event, Object subject, String detail) {
+        log(Level.ERROR, event, subject, NO_VALUE, detail);
+    }
+
+    /**
+     * Ставит событие в буфер. {@code subject} превращается в строку в потоке
+     * вывода, поэтому должен быть неизменяемым.
+     */
+    public void log(Level level, String event, Object subject, long value, String detail) {
+        if (!isEnabled(level)) return;
+        if (level == Level.DEBUG && sampleEvery > 1 && ThreadLocalRandom.current().nextInt(sampleEvery) != 0) {
+            return;
+        }
+        long n;
+        do {
+            n = head.get();
+            if (n - tail >= ring.length) {
+                dropped.increment();
+                return;
+            }
+        } while (!head.compareAndSet(n, n + 1));
+
+        Slot s = ring[(int) n & mask];
+        s.time = System.currentTimeMillis();
+        s.level = level;
+        s.event = event;
+        s.subject = subject;
+        s.value = value;
+        s.detail = detail;
+        s.seq = n;
+    }
+
+    private void run() {
+        long reportedDrops = 0;
+        boolean pending = false;
+        try {
+            if (binary != null) binary.writeInt(MAGIC);
+            while (true) {
+                long n = tail;
+                Slot s = ring[(int) n & mask];
+                if (s.seq != n) {
+                    long drops = dropped.sum();
+                    if (drops != reportedDrops) {
+                        write(System.currentTimeMillis(), Level.WARN, "log-dropped", null, drops - reportedDrops, null);
+                        reportedDrops = drops;
+                        pending = true;
+                    }
+                    if (pending) {
+                        flush();
+                        pending = false;
+                    }
+                    if (closing && head.get() == n) return;
+                    LockSupport.parkNanos(this, IDLE_PARK_NANOS);
+                    continue;
+                }
+                write(s.time, s.level, s.event, s.subject, s.value, s.detail);
+                s.subject = null;
+                s.detail = null;
+                tail = n + 1;
+                pending = true;
+            }
+        } catch (IOException ex) {
+            // вывод недоступен: дальше события только копятся и отбрасываются
+            System.err.println("EVENT LOG ERROR: " + ex.getMessage());
+        }
+    }
+
+    private void write(long time, Level level, String event, Object subject, long value, String detail)
+            throws IOException {
+        String subj = (subject == null) ? null : subject.toString();
+        if (binary != null) {
+            binary.writeLong(time);
+            binary.writeByte(level.ordinal());
+            binary.writeUTF(event);
+            binary.writeUTF(subj == null ? "" : subj);
+            binary.writeLong(value);
+            binary.writeUTF(detail == null ? "" : (detail.length() > MAX_DETAIL ? detail.substring(0, MAX_DETAIL) : detail));
+        } else {
+            writeJson(json, time, level, event, subj, value, detail);
+        }
+    }
+
+    private static void writeJson(Writer w, long time, Level level, String event, String subject, long value,
+                                  String detail) throws IOException {
+        w.write("{\"ts\":");
+        w.write(Long.toString(time));
+        w.write(",\"level\":\"");
+        w.write(level.name());
+        w.write("\",\"event\":");
+        quote(w, event);
+        if (subject != null && !subject.isEmpty()) {
+            w.write(",\"conn\":");
+            quote(w, subject);
+        }
+        if (value != NO_VALUE) {
+            w.write(",\"value\":");
+            w.write(Long.toString(value));
+        }
+        if (detail != null && !detail.isEmpty()) {
+            w.write(",\"detail\":");
+            quote(w, detail);
+        }
+        w.write("}\n");
+    }
+
+    private static void quote(Writer w, String s) throws IOException {
+        w.write('"');
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            switch (c) {
+                case '"' -> w.write("\\\"");
+                case '\\' -> w.write("\\\\");
+                case '\n' -> w.write("\\n");
+                case '\r' -> w.write("\\r");
+                case '\t' -> w.write("\\t");
+                default -> {
+                    if (c < 0x20) {
+                        w.write(String.format("\\u%04x", (int) c));
+                    } else {
+                        w.write(c);
+                    }
+                }
+            }
+        }
+        w.write('"');
+    }
+
+    private void flush() throws IOException {
+        if (binary != null) binary.flush(); else json.flush();
+    }
+
+    /**
+     * Дописывает накопленные события и останавливает поток вывода.
+     */
+    @Override
+    public void close() {
+        if (thread == null) return;
+        closing = true;
+        LockSupport.unpark(thread);
+        try {
+            thread.join(TimeUnit.SECONDS.toMillis(1));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        try {
+            flush();
+        } catch (IOException ignored) {
+            // вывод уже недоступен
+        }
+    }
+
+    /**
+     * Двоичный журнал в строки JSON: {@code EventLog <файл>}.
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1) {
+            System.out.println("Использование: EventLog <двоичный журнал>");
+            return;
+        }
+        Level[] levels = Level.values();
+        Writer w = new BufferedWriter(new OutputStreamWriter(System.out, StandardCharsets.UTF_8));
+        try (InputStream file = Files.newInputStream(Path.of(args[0]));
+             DataInputStream in = new DataInputStream(new BufferedInputStream(file))) {
+            if (in.readInt() != MAGIC) {
+                throw new IOException("Не двоичный журнал событий: " + args[0]);
+            }
+            while (true) {
+                long time;
+                try {
+                    time = in.readLong();
+                } catch (EOFException end) {
+                    break;
+                }
+                Level level = levels[in.readByte()];
+                String event = in.readUTF();
+                String subject = in.readUTF();
+                long value = in.readLong();
+                String detail = in.readUTF();
+                writeJson(w, time, level, event, subject, value, detail);
+            }
+        }
+        w.flush();
+    }
+}
@@ -1,102 +1,110 @@
 package org.example.kriegspiel.map;
 
+import org.example.kriegspiel.jfr.VisibilityEvent;
 import org.example.kriegspiel.model.Player;
 import org.example.kriegspiel.model.unit.Unit;
 
-import java.util.List;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.Map;
 import java.util.Random;
 
+/**
+ * Карта хранится плоскими массивами (индекс клетки — {@code y * width + x}):
+ * terrain — ordinal в {@code byte[]}, ловушки — битовая маска в {@code long[]},
+ * юниты — номер слота в {@code char[]} (0 — пусто) плюс таблица слотов.
+ * Карта 4096×4096 занимает ~50 МБ вместо сотен МБ объектов Cell.
+ */
 public class GameMap {
 
+    private static final TerrainType[] TERRAIN = TerrainType.values();
+    private static final int MAX_SLOTS = Character.MAX_VALUE;
+
     private final int width;
     private final int height;
-    private final Cell[][] cells;
-    private final Random random;
+    private final byte[] terrain;
+    private final long[] traps;
+    private final char[] unitSlots;
+    private long seed;
+    // метка партии в событиях JFR; null — партия без имени (GUI, бенчмарки)
+    private String matchId;
+
+    // таблица слотов юнитов; слот 0 не используется
+    private Unit[] slotUnits = new Unit[16];
+    private int[] freeSlots = new int[16];
+    private int freeCount = 0;
+    private int nextSlot = 1;
+
+    // видимость по игрокам, обновляется в placeUnit/moveUnit/removeUnit
+    private final Map<Player, VisibilityGrid> visibility = new IdentityHashMap<>();
+
+    // юниты и ловушки на карте; сторону хода переключает Game
+    private final ZobristHash hash = new ZobristHash();
 
     public GameMap(int width, int height) {
+        this(width, height, new Random().nextLong());
+    }
+
+    /**
+     * Карта, однозначно заданная размером и seed (повтор партии из журнала):
+     * одинакова при любом числе потоков генерации, см. {@link MapGenerator}.
+     */
+    public GameMap(int width, int height, long seed) {
         this.width = width;
         this.height = height;
-        this.cells = new Cell[height][width];
-        this.random = new Random();
+        this.terrain = new byte[width * height];
+        this.traps = new long[(width * height + 63) >>> 6];
+        this.unitSlots = new char[width * height];
+        this.seed = seed;
+        generate();
+    }
 
-        for (int y = 0; y < height; y++) {
-            for (int x = 0; x < width; x++) {
-                cells[y][x] = new Cell(x, y, TerrainType.PLAIN);
-            }
+    /**
+     * Та же карта, что {@code new GameMap(width, height, seed)}, в уже выделенных
+     * массивах: юниты, ловушки и видимость сбрасываются, местность генерируется
+     * заново. Метка партии сохраняется.
+     */
+    public void reset(long seed) {
+        this.seed = seed;
+        Arrays.fill(traps, 0);
+        Arrays.fill(unitSlots, (char) 0);
+        Arrays.fill(slotUnits, null);
+        freeCount = 0;
+        nextSlot = 1;
+        for (VisibilityGrid grid : visibility.values()) {
+            grid.clear();
         }
+        hash.reset();
+        generate();
+    }
 
-        initTerrain();
-        initTraps();
-    }
-
-    private void initTerrain() {
-        // Случайная генерация terrain
-        for (int y = 0; y < height; y++) {
-            for (int x = 0; x < width; x++) {
-                TerrainType type = TerrainType.PLAIN;
-                double rand = random.nextDouble();
-
-                if (rand < 0.20) {
-                    type = TerrainType.FOREST;
-                }
-
-                else if (rand < 0.35) {
-                    type = TerrainType.SWAMP;
-                }
-
-                else if (rand < 0.50) {
-                    type = TerrainType.HILL;
-                }
-
-                boolean isStartZone1 = (x < 3 && y < 3);
-                boolean isStartZone2 = (x >= width - 3 && y >= height - 3);
-                
-                if (isStartZone1 || isStartZone2) {
-                    type = TerrainType.PLAIN;
-                }
-                
-                cells[y][x] = new Cell(x, y, type);
-            }
+    private void generate() {
+        for (int cell : MapGenerator.generate(seed, width, height, terrain)) {
+            setTrapAt(cell % width, cell / width);
         }
     }
 
-    private void initTraps() {
-        int numTraps = (width * height) / 20;
-        numTraps = Math.max(3, Math.min(numTraps, 15));
-        
-        int trapsPlaced = 0;
-        int attempts = 0;
-        int maxAttempts = width * height * 2;
-        
-        while (trapsPlaced < numTraps && attempts < maxAttempts) {
-            attempts++;
-            int x = random.nextInt(width);
-            int y = random.nextInt(height);
-
-            boolean isStartZone1 = (x < 3 && y < 3);
-            boolean isStartZone2 = (x >= width - 3 && y >= height - 3);
-            
-            if (isStartZone1 || isStartZone2) {
-                continue;
-            }
+    /**
+     * Ставит ловушку (генерация карты и откат сработавшей ловушки в Game.unmake).
+     */
+    public void setTrapAt(int x, int y) {
+        if (isInside(x, y) && !hasTrapAt(x, y)) {
+            int cell = y * width + x;
+            traps[cell >>> 6] |= 1L << cell;
+            hash.toggleTrap(cell);
+        }
+    }
 
-            if (cells[y][x].hasTrap()) {
-                continue;
-            }
+    public long getSeed() {
+        return seed;
+    }
 
-            if (cells[y][x].getTerrain() == TerrainType.SWAMP) {
-                continue;
-            }
-            
-            setTrapAt(x, y);
-            trapsPlaced++;
-        }
+    public String getMatchId() {
+        return matchId;
     }
 
-    private void setTrapAt(int x, int y) {
-        if (isInside(x, y)) {
-            cells[y][x].setTrap(true);
-        }
+    public void setMatchId(String matchId) {
+        this.matchId = matchId;
     }
 
     public int getWidth() {
@@ -113,68 +121,151 @@ public class GameMap {
 
     public Unit getUnitAt(int x, int y) {
         if (!isInside(x, y)) return null;
-        return cells[y][x].getUnit();
+        return slotUnits[unitSlots[y * width + x]];
+    }
+
+    /**
+     * Юнит в клетке {@code y * width + x}, без проверки границ (перебор клеток в Game).
+     */
+    public Unit getUnitAtCell(int cell) {
+        return slotUnits[unitSlots[cell]];
+    }
+
+    public boolean isOccupiedCell(int cell) {
+        return unitSlots[cell] != 0;
+    }
+
+    /**
+     * {@code ordinal()} местности клетки {@code y * width + x}, без проверки границ.
+     */
+    public int getTerrainOrdinalAtCell(int cell) {
+        return terrain[cell];
+    }
+
+    /**
+     * Сколько юнитов стоит на карте (занятые слоты).
+     */
+    public int getUnitCount() {
+        return nextSlot - 1 - freeCount;
     }
 
     public void placeUnit(Unit unit, int x, int y) {
         if (!isInside(x, y)) throw new IllegalArgumentException("Координаты вне карты");
-        cells[y][x].setUnit(unit);
+        int cell = y * width + x;
+        setUnitCell(cell, unit);
         unit.setPosition(x, y);
+        getVisibilityGrid(unit.getOwner()).addVision(x, y, unit.getVisionRange());
+
+        hash.toggleUnitAt(unit.getId(), cell);
+        hash.toggleHp(unit.getId(), unit.getHp());
+        hash.toggleStun(unit.getId(), unit.getSkipTurnsRemaining());
+        unit.attachHash(hash);
     }
 
     public void moveUnit(Unit unit, int newX, int newY) {
         if (!isInside(newX, newY)) throw new IllegalArgumentException("Координаты вне карты");
-        cells[unit.getY()][unit.getX()].setUnit(null);
-        cells[newY][newX].setUnit(unit);
+        int oldX = unit.getX();
+        int oldY = unit.getY();
+        setUnitCell(oldY * width + oldX, null);
+        setUnitCell(newY * width + newX, unit);
         unit.setPosition(newX, newY);
+        hash.toggleUnitAt(unit.getId(), oldY * width + oldX);
+        hash.toggleUnitAt(unit.getId(), newY * width + newX);
+
+        // сначала добавляем новый обзор: пересечение ромбов не мигает 1 -> 0 -> 1
+        VisibilityGrid grid = getVisibilityGrid(unit.getOwner());
+        grid.addVision(newX, newY, unit.getVisionRange());
+        grid.removeVision(oldX, oldY, unit.getVisionRange());
     }
 
     public void removeUnit(Unit unit) {
         if (isInside(unit.getX(), unit.getY())) {
-            cells[unit.getY()][unit.getX()].setUnit(null);
+            int cell = unit.getY() * width + unit.getX();
+            setUnitCell(cell, null);
+            getVisibilityGrid(unit.getOwner()).removeVision(unit.getX(), unit.getY(), unit.getVisionRange());
+
+            unit.attachHash(null);
+            hash.toggleUnitAt(unit.getId(), cell);
+            hash.toggleHp(unit.getId(), unit.getHp());
+            hash.toggleStun(unit.getId(), unit.getSkipTurnsRemaining());
+        }
+    }
+
+    // кладёт юнит в клетку (null — очищает), освобождая слот прежнего юнита
+    private void setUnitCell(int cell, Unit unit) {
+        int old = unitSlots[cell];
+        if (old != 0) {
+            slotUnits[old] = null;
+            if (freeCount == freeSlots.length) {
+                freeSlots = Arrays.copyOf(freeSlots, freeCount * 2);
+            }
+            freeSlots[freeCount++] = old;
         }
+        unitSlots[cell] = (unit == null) ? 0 : (char) allocSlot(unit);
+    }
+
+    private int allocSlot(Unit unit) {
+        int slot;
+        if (freeCount > 0) {
+            slot = freeSlots[--freeCount];
+        } else {
+            if (nextSlot > MAX_SLOTS) throw new IllegalStateException("Слишком много юнитов на карте");
+            slot = nextSlot++;
+            if (slot == slotUnits.length) {
+                slotUnits = Arrays.copyOf(slotUnits, Math.min(slotUnits.length * 2, MAX_SLOTS + 1));
+            }
+        }
+        slotUnits[slot] = unit;
+        return slot;
     }
 
     public TerrainType getTerrainAt(int x, int y) {
         if (!isInside(x, y)) return TerrainType.PLAIN;
-        return cells[y][x].getTerrain();
+        return TERRAIN[terrain[y * width + x]];
     }
 
     public boolean hasTrapAt(int x, int y) {
         if (!isInside(x, y)) return false;
-        return cells[y][x].hasTrap();
+        int cell = y * width + x;
+        return (traps[cell >>> 6] & (1L << cell)) != 0;
     }
 
     public void triggerTrapAt(int x, int y) {
-        if (!isInside(x, y)) return;
-        cells[y][x].triggerTrap();
+        if (!hasTrapAt(x, y)) return;
+        int cell = y * width + x;
+        traps[cell >>> 6] &= ~(1L << cell);
+        hash.toggleTrap(cell);
     }
 
-    public boolean[][] getVisibilityFor(Player player) {
-        boolean[][] visible = new boolean[height][width];
-        List<Unit> units = player.getUnits();
-
-        for (Unit u : units) {
-            int vision = u.getVisionRange();
-            int ux = u.getX();
-            int uy = u.getY();
-
-            for (int dy = -vision; dy <= vision; dy++) {
-                for (int dx = -vision; dx <= vision; dx++) {
-                    int tx = ux + dx;
-                    int ty = uy + dy;
-                    if (!isInside(tx, ty)) continue;
-                    int manhattan = Math.abs(dx) + Math.abs(dy);
-                    if (manhattan <= vision) {
-                        visible[ty][tx] = true;
-                    }
-                }
-            }
+    public ZobristHash getHash() {
+        return hash;
+    }
 
-            if (isInside(ux, uy)) {
-                visible[uy][ux] = true;
-            }
+    /**
+     * Поддерживаемая видимость игрока; не копируется, меняется вместе с картой.
+     */
+    public VisibilityGrid getVisibilityGrid(Player player) {
+        return visibility.computeIfAbsent(player, p -> new VisibilityGrid(width, height));
+    }
+
+    /**
+     * Сбрасывает списки изменений видимости у всех игроков
+     * (вызывается перед каждым действием, см. Game).
+     */
+    public void clearVisibilityChanges() {
+        for (VisibilityGrid grid : visibility.values()) {
+            grid.clearChanges();
+        }
+    }
+
+    public boolean[][] getVisibilityFor(Player player) {
+        VisibilityEvent event = new VisibilityEvent();
+        event.begin();
+        boolean[][] visible = getVisibilityGrid(player).toArray();
+        if (event.shouldCommit()) {
+            event.setMap(this);
+            event.commit();
         }
         return visible;
     }
-}
\ No newline at end of file
+}
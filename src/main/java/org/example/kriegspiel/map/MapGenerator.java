@@ -0,0 +1,182 @@
+package org.example.kriegspiel.map;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Генерация карты из seed. Местность строится тайлами {@value #TILE}×{@value #TILE}:
+ * у каждого тайла свой {@link SplittableRandom}, полученный {@code split()} от корня
+ * по порядку тайлов, поэтому результат не зависит от числа потоков и порядка обхода.
+ * Ловушки — выборка без возвращения из допустимых клеток (алгоритм Флойда),
+ * без повторных попыток.
+ */
+final class MapGenerator {
+
+    static final int TILE = 64;
+    // карты меньше генерируются в вызывающем потоке
+    static final int PARALLEL_CELLS = 1 << 16;
+
+    private static final byte PLAIN = (byte) TerrainType.PLAIN.ordinal();
+    private static final byte FOREST = (byte) TerrainType.FOREST.ordinal();
+    private static final byte SWAMP = (byte) TerrainType.SWAMP.ordinal();
+    private static final byte HILL = (byte) TerrainType.HILL.ordinal();
+
+    private final int width;
+    private final int height;
+    private final byte[] terrain;
+    private final int tilesX;
+    private final SplittableRandom trapRandom;
+    private final SplittableRandom[] tileRandom;
+    // число клеток тайла, где можно поставить ловушку
+    private final int[] eligible;
+
+    private MapGenerator(long seed, int width, int height, byte[] terrain) {
+        this.width = width;
+        this.height = height;
+        this.terrain = terrain;
+        this.tilesX = (width + TILE - 1) / TILE;
+        int tiles = tilesX * ((height + TILE - 1) / TILE);
+
+        SplittableRandom root = new SplittableRandom(seed);
+        this.trapRandom = root.split();
+        this.tileRandom = new SplittableRandom[tiles];
+        for (int t = 0; t < tiles; t++) {
+            tileRandom[t] = root.split();
+        }
+        this.eligible = new int[tiles];
+    }
+
+    /**
+     * Заполняет {@code terrain} (индекс {@code y * width + x}) и возвращает клетки ловушек.
+     */
+    static int[] generate(long seed, int width, int height, byte[] terrain) {
+        return generate(seed, width, height, terrain, (long) width * height >= PARALLEL_CELLS
+                ? ForkJoinPool.commonPool() : null);
+    }
+
+    /**
+     * То же в заданном пуле; {@code null} — в вызывающем потоке.
+     */
+    static int[] generate(long seed, int width, int height, byte[] terrain, ForkJoinPool pool) {
+        MapGenerator g = new MapGenerator(seed, width, height, terrain);
+        if (pool == null) {
+            for (int t = 0; t < g.tileRandom.length; t++) {
+                g.generateTile(t);
+            }
+        } else {
+            pool.invoke(g.new Tiles(0, g.tileRandom.length));
+        }
+        return g.placeTraps();
+    }
+
+    private final class Tiles extends RecursiveAction {
+        private final int from;
+        private final int to;
+
+        Tiles(int from, int to) {
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from == 1) {
+                generateTile(from);
+            } else {
+                int mid = (from + to) >>> 1;
+                invokeAll(new Tiles(from, mid), new Tiles(mid, to));
+            }
+        }
+    }
+
+    private void generateTile(int tile) {
+        SplittableRandom random = tileRandom[tile];
+        int x0 = (tile % tilesX) * TILE;
+        int y0 = (tile / tilesX) * TILE;
+        int x1 = Math.min(x0 + TILE, width);
+        int y1 = Math.min(y0 + TILE, height);
+        int count = 0;
+
+        for (int y = y0; y < y1; y++) {
+            for (int x = x0; x < x1; x++) {
+                byte type = PLAIN;
+                double rand = random.nextDouble();
+                if (rand < 0.20) {
+                    type = FOREST;
+                } else if (rand < 0.35) {
+                    type = SWAMP;
+                } else if (rand < 0.50) {
+                    type = HILL;
+                }
+
+                if (isStartZone(x, y)) {
+                    type = PLAIN;
+                } else if (type != SWAMP) {
+                    count++;
+                }
+                terrain[y * width + x] = type;
+            }
+        }
+        eligible[tile] = count;
+    }
+
+    private boolean isStartZone(int x, int y) {
+        return (x < 3 && y < 3) || (x >= width - 3 && y >= height - 3);
+    }
+
+    // ловушки: k различных номеров среди допустимых клеток (Флойд), затем номер -> клетка
+    private int[] placeTraps() {
+        int[] before = new int[eligible.length];
+        int total = 0;
+        for (int t = 0; t < eligible.length; t++) {
+            before[t] = total;
+            total += eligible[t];
+        }
+
+        int numTraps = Math.max(3, Math.min((width * height) / 20, 15));
+        int k = Math.min(numTraps, total);
+        int[] ranks = new int[k];
+        for (int i = 0, j = total - k; j < total; i++, j++) {
+            int r = trapRandom.nextInt(j + 1);
+            ranks[i] = contains(ranks, i, r) ? j : r;
+        }
+
+        int[] cells = new int[k];
+        for (int i = 0; i < k; i++) {
+            cells[i] = cellOfRank(before, ranks[i]);
+        }
+        return cells;
+    }
+
+    private static boolean contains(int[] values, int count, int value) {
+        for (int i = 0; i < count; i++) {
+            if (values[i] == value) return true;
+        }
+        return false;
+    }
+
+    private int cellOfRank(int[] before, int rank) {
+        // последний тайл, до которого не больше rank допустимых клеток: в нём они не кончаются
+        int lo = 0;
+        int hi = before.length - 1;
+        while (lo < hi) {
+            int mid = (lo + hi + 1) >>> 1;
+            if (before[mid] <= rank) lo = mid; else hi = mid - 1;
+        }
+
+        int left = rank - before[lo];
+        int x0 = (lo % tilesX) * TILE;
+        int y0 = (lo / tilesX) * TILE;
+        int x1 = Math.min(x0 + TILE, width);
+        int y1 = Math.min(y0 + TILE, height);
+        for (int y = y0; y < y1; y++) {
+            for (int x = x0; x < x1; x++) {
+                if (!isStartZone(x, y) && terrain[y * width + x] != SWAMP && left-- == 0) {
+                    return y * width + x;
+                }
+            }
+        }
+        throw new IllegalStateException("Нет клетки для ловушки " + rank);
+    }
+}
@@ -0,0 +1,131 @@
+package org.example.kriegspiel.map;
+
+import java.util.Arrays;
+
+/**
+ * Видимость клеток для одного игрока, поддерживаемая инкрементально.
+ * Для каждой клетки хранится число юнитов игрока, которые её видят;
+ * клетка видима, пока счётчик больше нуля. {@link GameMap} обновляет
+ * счётчики при расстановке, перемещении и удалении юнитов, поэтому
+ * стоимость одного действия — O(vision²), а не O(units · vision²).
+ *
+ * <p>Клетки, у которых видимость переключилась после последнего
+ * {@link #clearChanges()}, собираются в список изменений
+ * (индекс клетки — {@code y * width + x}).
+ *
+ * <p>Счётчик — 16 бит на клетку: юнитов на карте не больше, чем слотов
+ * в {@link GameMap}, так что переполнения нет.
+ */
+public final class VisibilityGrid {
+
+    private final int width;
+    private final int height;
+    private final char[] counts;
+
+    private final long[] touched;
+    private int[] changed = new int[64];
+    private int changedCount;
+
+    VisibilityGrid(int width, int height) {
+        this.width = width;
+        this.height = height;
+        this.counts = new char[width * height];
+        this.touched = new long[(width * height + 63) >>> 6];
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    public boolean isVisible(int x, int y) {
+        if (x < 0 || x >= width || y < 0 || y >= height) return false;
+        return counts[y * width + x] > 0;
+    }
+
+    public boolean isVisibleCell(int cell) {
+        return counts[cell] > 0;
+    }
+
+    /**
+     * Число клеток, у которых видимость переключалась после {@link #clearChanges()}.
+     * Текущее значение нужно смотреть через {@link #isVisibleCell(int)}: если между
+     * очистками прошло несколько действий, клетка может вернуться в исходное состояние.
+     */
+    public int getChangedCount() {
+        return changedCount;
+    }
+
+    public int getChangedCell(int i) {
+        return changed[i];
+    }
+
+    public void clearChanges() {
+        for (int i = 0; i < changedCount; i++) {
+            int cell = changed[i];
+            touched[cell >>> 6] &= ~(1L << cell);
+        }
+        changedCount = 0;
+    }
+
+    /**
+     * Ничего не видно, изменений нет (пустая карта).
+     */
+    void clear() {
+        Arrays.fill(counts, (char) 0);
+        Arrays.fill(touched, 0);
+        changedCount = 0;
+    }
+
+    public boolean[][] toArray() {
+        boolean[][] visible = new boolean[height][width];
+        for (int y = 0; y < height; y++) {
+            int row = y * width;
+            for (int x = 0; x < width; x++) {
+                visible[y][x] = counts[row + x] > 0;
+            }
+        }
+        return visible;
+    }
+
+    void addVision(int ux, int uy, int vision) {
+        update(ux, uy, vision, 1);
+    }
+
+    void removeVision(int ux, int uy, int vision) {
+        update(ux, uy, vision, -1);
+    }
+
+    // ромб манхэттенского радиуса vision, обрезанный по краям карты
+    private void update(int ux, int uy, int vision, int delta) {
+        int yFrom = Math.max(0, uy - vision);
+        int yTo = Math.min(height - 1, uy + vision);
+        for (int y = yFrom; y <= yTo; y++) {
+            int span = vision - Math.abs(y - uy);
+            int xFrom = Math.max(0, ux - span);
+            int xTo = Math.min(width - 1, ux + span);
+            int row = y * width;
+            for (int x = xFrom; x <= xTo; x++) {
+                int cell = row + x;
+                int before = counts[cell];
+                counts[cell] = (char) (before + delta);
+                if (before == 0 || before + delta == 0) {
+                    markChanged(cell);
+                }
+            }
+        }
+    }
+
+    private void markChanged(int cell) {
+        long bit = 1L << cell;
+        if ((touched[cell >>> 6] & bit) != 0) return;
+        touched[cell >>> 6] |= bit;
+        if (changedCount == changed.length) {
+            changed = Arrays.copyOf(changed, Math.min(changed.length * 2, counts.length));
+        }
+        changed[changedCount++] = cell;
+    }
+}
@@ -0,0 +1,83 @@
+package org.example.kriegspiel.map;
+
+/**
+ * 64-битный Zobrist-хэш позиции, поддерживаемый инкрементально: каждое
+ * свойство позиции (юнит в клетке, его здоровье и оглушение, ловушка,
+ * сторона хода) вносит свой ключ через XOR, изменение — два XOR.
+ *
+ * <p>Ключи не хранятся таблицей (клеток может быть миллионы), а вычисляются
+ * перемешиванием splitmix64 из вида свойства и его координат. Юниты
+ * различаются по id, поэтому их число и размер карты не ограничены.
+ */
+public final class ZobristHash {
+
+    private static final long UNIT_AT = 1;
+    private static final long UNIT_HP = 2;
+    private static final long UNIT_STUN = 3;
+    private static final long TRAP = 4;
+    private static final long SIDE = 5;
+
+    private long value;
+
+    public long get() {
+        return value;
+    }
+
+    /**
+     * Хэш пустой карты (перед новой расстановкой, см. {@link GameMap#reset}).
+     */
+    public void reset() {
+        value = 0;
+    }
+
+    public void toggleUnitAt(int unitId, int cell) {
+        value ^= key(UNIT_AT, unitId, cell);
+    }
+
+    public void toggleHp(int unitId, int hp) {
+        value ^= key(UNIT_HP, unitId, hp);
+    }
+
+    public void toggleStun(int unitId, int turns) {
+        value ^= key(UNIT_STUN, unitId, turns);
+    }
+
+    public void toggleTrap(int cell) {
+        value ^= key(TRAP, 0, cell);
+    }
+
+    public void toggleSide() {
+        value ^= key(SIDE, 0, 0);
+    }
+
+    public static long unitAtKey(int unit, int cell) {
+        return key(UNIT_AT, unit, cell);
+    }
+
+    public static long hpKey(int unit, int hp) {
+        return key(UNIT_HP, unit, hp);
+    }
+
+    public static long stunKey(int unit, int turns) {
+        return key(UNIT_STUN, unit, turns);
+    }
+
+    public static long sideKey() {
+        return key(SIDE, 0, 0);
+    }
+
+    /**
+     * Ключ местности клетки (для позиций, у которых местность не фиксирована, см. ai).
+     */
+    public static long terrainKey(int cell, int terrainOrdinal) {
+        return key(6 + terrainOrdinal, 0, cell);
+    }
+
+    private static long key(long kind, int a, int b) {
+        long z = (kind << 58) ^ ((long) a << 32) ^ (b & 0xFFFFFFFFL);
+        z += 0x9E3779B97F4A7C15L;
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+}
@@ -0,0 +1,76 @@
+package org.example.kriegspiel.metrics;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Гистограмма длительностей в наносекундах без блокировок: лог-линейные
+ * корзины (16 на каждую степень двойки, погрешность перцентиля не больше ~6%),
+ * как в HdrHistogram. Запись — {@code incrementAndGet} корзины и два
+ * {@link LongAdder}, её можно вызывать из любых потоков.
+ */
+public final class Histogram {
+
+    private static final int SUB_BITS = 4;
+    private static final int SUB = 1 << SUB_BITS;
+    private static final int BUCKETS = (64 - SUB_BITS) * SUB;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final LongAdder count = new LongAdder();
+    private final LongAdder sum = new LongAdder();
+
+    public void record(long nanos) {
+        long v = Math.max(0, nanos);
+        counts.incrementAndGet(bucketOf(v));
+        count.increment();
+        sum.add(v);
+    }
+
+    /**
+     * Записывает время с {@code startNanos} ({@link System#nanoTime()}).
+     */
+    public void recordSince(long startNanos) {
+        record(System.nanoTime() - startNanos);
+    }
+
+    public long count() {
+        return count.sum();
+    }
+
+    public long sumNanos() {
+        return sum.sum();
+    }
+
+    /**
+     * Перцентиль в наносекундах (верхняя граница корзины); 0, если записей нет.
+     * Записи, идущие параллельно, могут попасть в подсчёт частично.
+     *
+     * @param q доля от 0 до 1, например 0.999
+     */
+    public long quantileNanos(double q) {
+        long total = 0;
+        for (int i = 0; i < BUCKETS; i++) total += counts.get(i);
+        if (total == 0) return 0;
+        long rank = Math.max(1, (long) Math.ceil(q * total));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += counts.get(i);
+            if (seen >= rank) return upperBound(i);
+        }
+        return upperBound(BUCKETS - 1);
+    }
+
+    // значения меньше 2·SUB — по корзине на наносекунду, дальше SUB корзин на октаву
+    private static int bucketOf(long nanos) {
+        if (nanos < 2 * SUB) return (int) nanos;
+        int shift = 63 - Long.numberOfLeadingZeros(nanos) - SUB_BITS;
+        return Math.min(BUCKETS - 1, shift * SUB + (int) (nanos >>> shift));
+    }
+
+    private static long upperBound(int bucket) {
+        if (bucket < 2 * SUB) return bucket;
+        int shift = bucket / SUB - 1;
+        long mantissa = bucket - (long) shift * SUB;
+        return ((mantissa + 1) << shift) - 1;
+    }
+}
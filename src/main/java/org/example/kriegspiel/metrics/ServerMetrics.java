@@ -0,0 +1,223 @@
+package org.example.kriegspiel.metrics;
+
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * Метрики одного сервера: длительности этапов обработки сообщения, счётчики
+ * сообщений по типу, ошибок по причине, байтов и соединений, плюс значения,
+ * которые сервер отдаёт через {@link #gauge}. Запись без блокировок
+ * ({@link LongAdder}, {@link Histogram}); строки для вывода собираются только
+ * при чтении — в {@link #writePrometheus} и в JMX.
+ */
+public final class ServerMetrics implements ServerMetricsMXBean {
+
+    /**
+     * Этапы: разбор входящего кадра, обработка ACTION целиком (в акторе комнаты),
+     * построение STATE/DELTA для участника, кодирование исходящего сообщения
+     * и передача кадра в Java-WebSocket.
+     */
+    public final Histogram decode = new Histogram();
+    public final Histogram action = new Histogram();
+    public final Histogram mapper = new Histogram();
+    public final Histogram encode = new Histogram();
+    public final Histogram send = new Histogram();
+
+    private static final double[] QUANTILES = {0.5, 0.9, 0.99, 0.999};
+
+    private record Sampled(String name, String help, boolean counter, LongSupplier value) {}
+
+    private final Map<String, LongAdder> messagesIn = new ConcurrentHashMap<>();
+    private final Map<String, LongAdder> messagesOut = new ConcurrentHashMap<>();
+    private final Map<String, LongAdder> errors = new ConcurrentHashMap<>();
+    private final LongAdder bytesIn = new LongAdder();
+    private final LongAdder bytesOut = new LongAdder();
+    private final LongAdder connections = new LongAdder();
+    private final List<Sampled> sampled = new CopyOnWriteArrayList<>();
+
+    public void messageIn(String type) {
+        adder(messagesIn, type).increment();
+    }
+
+    public void messageOut(String type) {
+        adder(messagesOut, type).increment();
+    }
+
+    /**
+     * Ошибка, отправленная клиенту; {@code reason} — короткий ключ
+     * ({@code "rule"}, {@code "not-joined"}, ...), а не текст для игрока.
+     */
+    public void error(String reason) {
+        adder(errors, reason).increment();
+    }
+
+    public void bytesIn(long bytes) {
+        bytesIn.add(bytes);
+    }
+
+    public void bytesOut(long bytes) {
+        bytesOut.add(bytes);
+    }
+
+    public void connectionOpened() {
+        connections.increment();
+    }
+
+    public void connectionClosed() {
+        connections.decrement();
+    }
+
+    /**
+     * Значение, которое считывается при каждом выводе метрик.
+     *
+     * @param name имя в формате Prometheus без префикса {@code kriegspiel_}
+     */
+    public void gauge(String name, String help, LongSupplier value) {
+        sampled.add(new Sampled(name, help, false, value));
+    }
+
+    /**
+     * То же для монотонно растущего счётчика, который ведёт сам сервер.
+     */
+    public void counter(String name, String help, LongSupplier value) {
+        sampled.add(new Sampled(name, help, true, value));
+    }
+
+    // ключей немного (типы сообщений, причины ошибок): после первого раза — только get
+    private static LongAdder adder(Map<String, LongAdder> map, String key) {
+        String k = (key == null) ? "null" : key;
+        LongAdder a = map.get(k);
+        return (a != null) ? a : map.computeIfAbsent(k, x -> new LongAdder());
+    }
+
+    /**
+     * Текстовый формат Prometheus 0.0.4.
+     */
+    public void writePrometheus(StringBuilder out) {
+        out.append("# HELP kriegspiel_stage_seconds Длительность этапов обработки сообщений.\n");
+        out.append("# TYPE kriegspiel_stage_seconds summary\n");
+        stage(out, "decode", decode);
+        stage(out, "action", action);
+        stage(out, "mapper", mapper);
+        stage(out, "encode", encode);
+        stage(out, "send", send);
+
+        labeled(out, "kriegspiel_messages_in_total", "Входящие сообщения по типу.", "type", messagesIn);
+        labeled(out, "kriegspiel_messages_out_total", "Исходящие сообщения по типу (на соединение).", "type", messagesOut);
+        labeled(out, "kriegspiel_errors_total", "Ошибки, отправленные клиентам, по причине.", "reason", errors);
+
+        single(out, "kriegspiel_bytes_in_total", "Байты входящих кадров.", "counter", bytesIn.sum());
+        single(out, "kriegspiel_bytes_out_total", "Байты кадров, переданных в Java-WebSocket.", "counter", bytesOut.sum());
+        single(out, "kriegspiel_connections", "Открытые соединения.", "gauge", connections.sum());
+        for (Sampled s : sampled) {
+            single(out, "kriegspiel_" + s.name(), s.help(), s.counter() ? "counter" : "gauge", s.value().getAsLong());
+        }
+    }
+
+    private static void stage(StringBuilder out, String stage, Histogram h) {
+        for (double q : QUANTILES) {
+            out.append("kriegspiel_stage_seconds{stage=\"").append(stage)
+                    .append("\",quantile=\"").append(q).append("\"} ")
+                    .append(seconds(h.quantileNanos(q))).append('\n');
+        }
+        out.append("kriegspiel_stage_seconds_sum{stage=\"").append(stage).append("\"} ")
+                .append(seconds(h.sumNanos())).append('\n');
+        out.append("kriegspiel_stage_seconds_count{stage=\"").append(stage).append("\"} ")
+                .append(h.count()).append('\n');
+    }
+
+    private static void labeled(StringBuilder out, String name, String help, String label,
+                                Map<String, LongAdder> values) {
+        out.append("# HELP ").append(name).append(' ').append(help).append('\n');
+        out.append("# TYPE ").append(name).append(" counter\n");
+        for (Map.Entry<String, LongAdder> e : new TreeMap<>(values).entrySet()) {
+            out.append(name).append('{').append(label).append("=\"").append(escape(e.getKey())).append("\"} ")
+                    .append(e.getValue().sum()).append('\n');
+        }
+    }
+
+    private static void single(StringBuilder out, String name, String help, String type, long value) {
+        out.append("# HELP ").append(name).append(' ').append(help).append('\n');
+        out.append("# TYPE ").append(name).append(' ').append(type).append('\n');
+        out.append(name).append(' ').append(value).append('\n');
+    }
+
+    private static String seconds(long nanos) {
+        return String.format(Locale.ROOT, "%.9f", nanos / 1e9);
+    }
+
+    private static String escape(String s) {
+        return s.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+    }
+
+    // JMX
+
+    @Override
+    public long getConnections() {
+        return connections.sum();
+    }
+
+    @Override
+    public long getBytesIn() {
+        return bytesIn.sum();
+    }
+
+    @Override
+    public long getBytesOut() {
+        return bytesOut.sum();
+    }
+
+    @Override
+    public Map<String, Long> getMessagesIn() {
+        return snapshot(messagesIn);
+    }
+
+    @Override
+    public Map<String, Long> getMessagesOut() {
+        return snapshot(messagesOut);
+    }
+
+    @Override
+    public Map<String, Long> getErrors() {
+        return snapshot(errors);
+    }
+
+    @Override
+    public Map<String, Long> getGauges() {
+        Map<String, Long> m = new TreeMap<>();
+        for (Sampled s : sampled) {
+            m.put(s.name(), s.value().getAsLong());
+        }
+        return m;
+    }
+
+    @Override
+    public Map<String, Long> getStageLatencyMicros() {
+        Map<String, Long> m = new TreeMap<>();
+        putStage(m, "decode", decode);
+        putStage(m, "action", action);
+        putStage(m, "mapper", mapper);
+        putStage(m, "encode", encode);
+        putStage(m, "send", send);
+        return m;
+    }
+
+    private static void putStage(Map<String, Long> m, String stage, Histogram h) {
+        m.put(stage + ".p50", h.quantileNanos(0.5) / 1000);
+        m.put(stage + ".p99", h.quantileNanos(0.99) / 1000);
+        m.put(stage + ".p999", h.quantileNanos(0.999) / 1000);
+        m.put(stage + ".count", h.count());
+    }
+
+    private static Map<String, Long> snapshot(Map<String, LongAdder> values) {
+        Map<String, Long> m = new TreeMap<>();
+        values.forEach((k, v) -> m.put(k, v.sum()));
+        return m;
+    }
+}
@@ -0,0 +1,32 @@
+package org.example.kriegspiel.metrics;
+
+import java.util.Map;
+
+/**
+ * Метрики сервера в JMX (jconsole, VisualVM): {@code org.example.kriegspiel:type=GameServer,port=...}.
+ * Задержки этапов — в микросекундах.
+ */
+public interface ServerMetricsMXBean {
+
+    long getConnections();
+
+    long getBytesIn();
+
+    long getBytesOut();
+
+    Map<String, Long> getMessagesIn();
+
+    Map<String, Long> getMessagesOut();
+
+    Map<String, Long> getErrors();
+
+    /**
+     * Наблюдаемые значения ({@link ServerMetrics#gauge}): комнаты, очереди и т.п.
+     */
+    Map<String, Long> getGauges();
+
+    /**
+     * p50, p99, p999 и число замеров по этапам: {@code "decode.p99"} и т.д.
+     */
+    Map<String, Long> getStageLatencyMicros();
+}
@@ -19,10 +19,25 @@ public class Player {
         units.add(unit);
     }
 
+    /**
+     * Возвращает юнит на прежнее место в списке (откат гибели в Game.unmake).
+     */
+    public void addUnit(int index, Unit unit) {
+        units.add(index, unit);
+    }
+
+    public void clearUnits() {
+        units.clear();
+    }
+
     public void removeUnit(Unit unit) {
         units.remove(unit);
     }
 
+    public int indexOf(Unit unit) {
+        return units.indexOf(unit);
+    }
+
     public boolean hasUnits() {
         return !units.isEmpty();
     }
@@ -10,7 +10,7 @@ public class Cavalry extends Unit {
     }
 
     @Override
-    protected boolean canEnterTerrain(TerrainType terrain) {
+    public boolean canEnterTerrain(TerrainType terrain) {
         return terrain != TerrainType.FOREST;
     }
 
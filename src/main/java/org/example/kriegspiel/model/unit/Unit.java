@@ -2,11 +2,13 @@ package org.example.kriegspiel.model.unit;
 
 import org.example.kriegspiel.map.GameMap;
 import org.example.kriegspiel.map.TerrainType;
+import org.example.kriegspiel.map.ZobristHash;
 import org.example.kriegspiel.model.Player;
 
 public abstract class Unit {
 
     private final Player owner;
+    private int id = -1;
     private int hp;
     private final int attackPower;
     private final int moveRange;
@@ -16,6 +18,10 @@ public abstract class Unit {
     private int y;
 
     private int skipTurnsRemaining;
+    // хэш карты, на которой стоит юнит (null — не на карте); здоровье и оглушение входят в него
+    private ZobristHash hash;
+    // биты ordinal-ов TerrainType, куда может войти юнит; -1 — ещё не вычислено
+    private int terrainMask = -1;
 
     public Unit(Player owner, int hp, int attackPower, int moveRange,
                 int attackRange, int visionRange) {
@@ -32,6 +38,17 @@ public abstract class Unit {
         return owner;
     }
 
+    /**
+     * Идентификатор юнита в пределах партии (-1, пока юнит не расставлен).
+     */
+    public int getId() {
+        return id;
+    }
+
+    public void setId(int id) {
+        this.id = id;
+    }
+
     public int getHp() {
         return hp;
     }
@@ -40,8 +57,34 @@ public abstract class Unit {
         return hp > 0;
     }
 
+    /**
+     * Прямая установка здоровья — только для отката действий (Game.unmake).
+     */
+    public void setHp(int hp) {
+        changeHp(hp);
+    }
+
     public void damage(int amount) {
-        hp = Math.max(0, hp - amount);
+        changeHp(Math.max(0, hp - amount));
+    }
+
+    private void changeHp(int newHp) {
+        if (hash != null && newHp != hp) {
+            hash.toggleHp(id, hp);
+            hash.toggleHp(id, newHp);
+        }
+        hp = newHp;
+    }
+
+    /**
+     * Привязка к хэшу карты; вызывает {@link GameMap} при расстановке и удалении.
+     */
+    public void attachHash(ZobristHash hash) {
+        this.hash = hash;
+    }
+
+    public int getAttackPower() {
+        return attackPower;
     }
 
     public int getMoveRange() {
@@ -74,23 +117,53 @@ public abstract class Unit {
     }
 
     public void stunForTurns(int turns) {
-        this.skipTurnsRemaining = Math.max(this.skipTurnsRemaining, turns);
+        changeStun(Math.max(this.skipTurnsRemaining, turns));
     }
 
     public void tickTurn() {
         if (skipTurnsRemaining > 0) {
-            skipTurnsRemaining--;
+            changeStun(skipTurnsRemaining - 1);
         }
     }
 
+    private void changeStun(int turns) {
+        if (hash != null && turns != skipTurnsRemaining) {
+            hash.toggleStun(id, skipTurnsRemaining);
+            hash.toggleStun(id, turns);
+        }
+        skipTurnsRemaining = turns;
+    }
+
     public int getSkipTurnsRemaining() {
         return skipTurnsRemaining;
     }
 
-    protected boolean canEnterTerrain(TerrainType terrain) {
+    /**
+     * Прямая установка оглушения — только для отката действий (Game.unmake).
+     */
+    public void setSkipTurnsRemaining(int turns) {
+        changeStun(turns);
+    }
+
+    public boolean canEnterTerrain(TerrainType terrain) {
         return true;
     }
 
+    /**
+     * {@link #canEnterTerrain} в виде маски: бит {@code 1 << terrain.ordinal()}.
+     */
+    public int getTerrainMask() {
+        int mask = terrainMask;
+        if (mask < 0) {
+            mask = 0;
+            for (TerrainType terrain : TerrainType.values()) {
+                if (canEnterTerrain(terrain)) mask |= 1 << terrain.ordinal();
+            }
+            terrainMask = mask;
+        }
+        return mask;
+    }
+
     public boolean canMoveTo(int targetX, int targetY, GameMap map) {
         if (!map.isInside(targetX, targetY)) return false;
         if (map.getUnitAt(targetX, targetY) != null) return false;
@@ -109,16 +182,34 @@ public abstract class Unit {
 
         int dx = Math.abs(targetX - x);
         int dy = Math.abs(targetY - y);
+        return dx + dy <= getAttackRangeOn(map);
+    }
+
+    /**
+     * Дальность атаки с текущей клетки: артиллерия на холме бьёт на 1 дальше.
+     */
+    public int getAttackRangeOn(GameMap map) {
+        return getAttackRangeOn(map.getTerrainAt(x, y));
+    }
+
+    /**
+     * Дальность атаки с клетки местности {@code here}.
+     */
+    public int getAttackRangeOn(TerrainType here) {
         int range = attackRange;
 
-        if (this instanceof Artillery) {
-            TerrainType here = map.getTerrainAt(x, y);
-            if (here == TerrainType.HILL) {
-                range += 1;
-            }
+        if (this instanceof Artillery && here == TerrainType.HILL) {
+            range += 1;
         }
 
-        return dx + dy <= range;
+        return range;
+    }
+
+    /**
+     * На сколько ходов оглушает вход в болото.
+     */
+    public int getSwampStun() {
+        return (this instanceof Cavalry) ? 2 : 1;
     }
 
     public void attack(Unit other) {
@@ -0,0 +1,460 @@
+package org.example.kriegspiel.net;
+
+import org.example.kriegspiel.map.TerrainType;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Двоичный формат протокола для WebSocket binary frames (включается
+ * {@link Protocol#CAP_BINARY} в JOIN). Кадр: байт версии
+ * ({@link Protocol#BINARY_VERSION}), байт типа сообщения, затем payload.
+ *
+ * <ul>
+ *   <li>целые — varint (LEB128), координаты из ACTION — zigzag varint;</li>
+ *   <li>строки — varint длины + UTF-8; строка, которая может быть null, —
+ *       длина + 1 (0 означает null);</li>
+ *   <li>туман в STATE — битовая маска видимых клеток, terrain — по 2 бита
+ *       только для видимых клеток;</li>
+ *   <li>тип юнита — один байт (Infantry/Cavalry/Artillery), прочие — 0xFF и строка.</li>
+ * </ul>
+ *
+ * <p>Длины, счётчики и размеры карты из кадра сверяются с оставшимися байтами
+ * и {@link Protocol#MAX_MAP_SIDE} до выделения памяти; нарушение —
+ * {@link IllegalArgumentException}. Сервер читает кадры клиентов через
+ * {@link #decodeRequest}, который принимает только JOIN, ACTION и RESYNC.
+ */
+public final class BinaryCodec {
+    private BinaryCodec() {}
+
+    private static final TerrainType[] TERRAIN = TerrainType.values();
+    private static final String[] UNIT_TYPES = {"Infantry", "Cavalry", "Artillery"};
+    private static final int UNIT_TYPE_OTHER = 0xFF;
+
+    private static final byte T_JOIN = 1;
+    private static final byte T_ACTION = 2;
+    private static final byte T_STATE = 3;
+    private static final byte T_DELTA = 4;
+    private static final byte T_ERROR = 5;
+    private static final byte T_INFO = 6;
+    private static final byte T_ROLE = 7;
+    private static final byte T_RESYNC = 8;
+
+    private static final int ACTION_MOVE = 0;
+    private static final int ACTION_ATTACK = 1;
+    private static final int ACTION_OTHER = 0xFF;
+
+    // меньше байтов юнит в кадре не занимает: id, тип, владелец, здоровье, оглушение, x, y
+    private static final int MIN_UNIT_BYTES = 7;
+
+    public static byte[] encode(NetMessage msg) {
+        Out out = new Out(64);
+        out.writeByte(Protocol.BINARY_VERSION);
+        switch (msg.type) {
+            case Protocol.TYPE_JOIN -> {
+                out.writeByte(T_JOIN);
+                JoinRequest j = (JoinRequest) msg.payload;
+                out.writeNullableString(j.playerName);
+                out.writeNullableString(j.roomId);
+                out.writeVarint(j.capabilities);
+                out.writeByte(j.vsBot ? 1 : 0);
+                out.writeNullableString(j.resumeToken);
+                out.writeVarint(j.lastSeq);
+            }
+            case Protocol.TYPE_ACTION -> {
+                out.writeByte(T_ACTION);
+                writeAction(out, (ActionRequest) msg.payload);
+            }
+            case Protocol.TYPE_STATE -> {
+                out.writeByte(T_STATE);
+                writeState(out, (GameStateDTO) msg.payload);
+            }
+            case Protocol.TYPE_DELTA -> {
+                out.writeByte(T_DELTA);
+                writeDelta(out, (StateDelta) msg.payload);
+            }
+            case Protocol.TYPE_ERROR -> {
+                out.writeByte(T_ERROR);
+                out.writeNullableString(((ErrorMessage) msg.payload).message);
+            }
+            case Protocol.TYPE_INFO -> {
+                out.writeByte(T_INFO);
+                out.writeNullableString(((InfoMessage) msg.payload).message);
+            }
+            case Protocol.TYPE_ROLE -> {
+                out.writeByte(T_ROLE);
+                RoleMessage r = (RoleMessage) msg.payload;
+                out.writeVarint(r.playerIndex);
+                out.writeNullableString(r.roomId);
+                out.writeNullableString(r.resumeToken);
+            }
+            case Protocol.TYPE_RESYNC -> out.writeByte(T_RESYNC);
+            default -> throw new IllegalArgumentException("Нет двоичного кодирования для " + msg.type);
+        }
+        return out.toByteArray();
+    }
+
+    public static NetMessage decode(ByteBuffer buf) {
+        return decode(buf, true);
+    }
+
+    /**
+     * Кадр клиента на сервере: сообщения сервера клиенту (STATE, DELTA и т.д.)
+     * отвергаются, не разбирая payload.
+     */
+    public static NetMessage decodeRequest(ByteBuffer buf) {
+        return decode(buf, false);
+    }
+
+    private static NetMessage decode(ByteBuffer buf, boolean fromServer) {
+        int version = buf.get() & 0xFF;
+        if (version != Protocol.BINARY_VERSION) {
+            throw new IllegalArgumentException("Неподдерживаемая версия двоичного протокола: " + version);
+        }
+        byte type = buf.get();
+        if (!fromServer && type != T_JOIN && type != T_ACTION && type != T_RESYNC) {
+            throw new IllegalArgumentException("Недопустимый тип сообщения от клиента: " + type);
+        }
+        return switch (type) {
+            case T_JOIN -> {
+                String name = readNullableString(buf);
+                String room = readNullableString(buf);
+                int caps = readVarint(buf);
+                JoinRequest join = new JoinRequest(name, room, caps);
+                join.vsBot = buf.get() != 0;
+                // токен возврата — с версии с переподключением, в прежних кадрах его нет
+                if (buf.hasRemaining()) {
+                    join.resumeToken = readNullableString(buf);
+                    join.lastSeq = readVarint(buf);
+                }
+                yield new NetMessage(Protocol.TYPE_JOIN, join);
+            }
+            case T_ACTION -> new NetMessage(Protocol.TYPE_ACTION, readAction(buf));
+            case T_STATE -> new NetMessage(Protocol.TYPE_STATE, readState(buf));
+            case T_DELTA -> new NetMessage(Protocol.TYPE_DELTA, readDelta(buf));
+            case T_ERROR -> new NetMessage(Protocol.TYPE_ERROR, new ErrorMessage(readNullableString(buf)));
+            case T_INFO -> new NetMessage(Protocol.TYPE_INFO, new InfoMessage(readNullableString(buf)));
+            case T_ROLE -> {
+                int idx = readVarint(buf);
+                String room = readNullableString(buf);
+                String token = buf.hasRemaining() ? readNullableString(buf) : null;
+                yield new NetMessage(Protocol.TYPE_ROLE, new RoleMessage(idx, room, token));
+            }
+            case T_RESYNC -> new NetMessage(Protocol.TYPE_RESYNC, null);
+            default -> throw new IllegalArgumentException("Неизвестный тип двоичного сообщения: " + type);
+        };
+    }
+
+    private static void writeAction(Out out, ActionRequest a) {
+        if (Protocol.ACTION_MOVE.equals(a.action)) {
+            out.writeByte(ACTION_MOVE);
+        } else if (Protocol.ACTION_ATTACK.equals(a.action)) {
+            out.writeByte(ACTION_ATTACK);
+        } else {
+            out.writeByte(ACTION_OTHER);
+            out.writeNullableString(a.action);
+        }
+        out.writeZigzag(a.fromX);
+        out.writeZigzag(a.fromY);
+        out.writeZigzag(a.toX);
+        out.writeZigzag(a.toY);
+    }
+
+    private static ActionRequest readAction(ByteBuffer buf) {
+        int code = buf.get() & 0xFF;
+        String action = switch (code) {
+            case ACTION_MOVE -> Protocol.ACTION_MOVE;
+            case ACTION_ATTACK -> Protocol.ACTION_ATTACK;
+            default -> readNullableString(buf);
+        };
+        int fromX = readZigzag(buf);
+        int fromY = readZigzag(buf);
+        int toX = readZigzag(buf);
+        int toY = readZigzag(buf);
+        return new ActionRequest(action, fromX, fromY, toX, toY);
+    }
+
+    private static void writeState(Out out, GameStateDTO dto) {
+        int w = dto.width;
+        int h = dto.height;
+        out.writeVarint(dto.seq);
+        out.writeVarint(w);
+        out.writeVarint(h);
+        out.writeNullableString(dto.player1Name);
+        out.writeNullableString(dto.player2Name);
+        out.writeVarint(dto.currentPlayer);
+        out.writeByte(dto.gameOver ? 1 : 0);
+        out.writeVarint(dto.winner);
+
+        // маска видимости, затем terrain видимых клеток по 2 бита
+        int cells = w * h;
+        byte[] mask = new byte[(cells + 7) >>> 3];
+        int visibleCount = 0;
+        for (int i = 0; i < cells; i++) {
+            if (dto.terrain != null && dto.terrain[i / w][i % w] != null) {
+                mask[i >>> 3] |= (byte) (1 << (i & 7));
+                visibleCount++;
+            }
+        }
+        out.writeBytes(mask);
+        byte[] packed = new byte[(visibleCount + 3) >>> 2];
+        int k = 0;
+        for (int i = 0; i < cells; i++) {
+            if ((mask[i >>> 3] & (1 << (i & 7))) == 0) continue;
+            packed[k >>> 2] |= (byte) (dto.terrain[i / w][i % w].ordinal() << ((k & 3) << 1));
+            k++;
+        }
+        out.writeBytes(packed);
+
+        int trapCount = 0;
+        if (dto.traps != null) {
+            for (int i = 0; i < cells; i++) if (dto.traps[i / w][i % w]) trapCount++;
+        }
+        out.writeVarint(trapCount);
+        if (trapCount > 0) {
+            for (int i = 0; i < cells; i++) if (dto.traps[i / w][i % w]) out.writeVarint(i);
+        }
+
+        List<UnitDTO> units = dto.units;
+        out.writeVarint(units == null ? 0 : units.size());
+        if (units != null) {
+            for (UnitDTO u : units) writeUnit(out, u);
+        }
+    }
+
+    private static GameStateDTO readState(ByteBuffer buf) {
+        GameStateDTO dto = new GameStateDTO();
+        dto.seq = readVarint(buf);
+        int w = dto.width = readSide(buf);
+        int h = dto.height = readSide(buf);
+        dto.player1Name = readNullableString(buf);
+        dto.player2Name = readNullableString(buf);
+        dto.currentPlayer = readVarint(buf);
+        dto.gameOver = buf.get() != 0;
+        dto.winner = readVarint(buf);
+
+        int cells = w * h;
+        byte[] mask = new byte[checkLength((cells + 7) >>> 3, buf)];
+        buf.get(mask);
+        int visibleCount = 0;
+        for (byte b : mask) visibleCount += Integer.bitCount(b & 0xFF);
+        byte[] packed = new byte[checkLength((visibleCount + 3) >>> 2, buf)];
+        buf.get(packed);
+
+        dto.terrain = new TerrainType[h][w];
+        int k = 0;
+        for (int i = 0; i < cells; i++) {
+            if ((mask[i >>> 3] & (1 << (i & 7))) == 0) continue;
+            int ord = (packed[k >>> 2] >>> ((k & 3) << 1)) & 3;
+            dto.terrain[i / w][i % w] = TERRAIN[ord];
+            k++;
+        }
+
+        dto.traps = new boolean[h][w];
+        int trapCount = readCount(buf, 1);
+        for (int i = 0; i < trapCount; i++) {
+            int cell = readVarint(buf);
+            if (cell < 0 || cell >= cells) {
+                throw new IllegalArgumentException("Ловушка вне карты: " + cell);
+            }
+            dto.traps[cell / w][cell % w] = true;
+        }
+
+        int unitCount = readCount(buf, MIN_UNIT_BYTES);
+        for (int i = 0; i < unitCount; i++) {
+            UnitDTO u = readUnit(buf);
+            if (u.x < 0 || u.x >= w || u.y < 0 || u.y >= h) {
+                throw new IllegalArgumentException("Юнит вне карты: " + u.x + "," + u.y);
+            }
+            dto.units.add(u);
+        }
+        return dto;
+    }
+
+    private static void writeDelta(Out out, StateDelta d) {
+        out.writeVarint(d.seq);
+        out.writeVarint(d.currentPlayer);
+        out.writeByte(d.gameOver ? 1 : 0);
+        out.writeVarint(d.winner);
+
+        out.writeVarint(d.units.size());
+        for (UnitDTO u : d.units) writeUnit(out, u);
+        writeIntList(out, d.removedUnits);
+        writeIntList(out, d.revealedCells);
+
+        byte[] packed = new byte[(d.revealedTerrain.size() + 3) >>> 2];
+        for (int k = 0; k < d.revealedTerrain.size(); k++) {
+            packed[k >>> 2] |= (byte) (d.revealedTerrain.get(k).ordinal() << ((k & 3) << 1));
+        }
+        out.writeBytes(packed);
+        writeIntList(out, d.hiddenCells);
+    }
+
+    private static StateDelta readDelta(ByteBuffer buf) {
+        StateDelta d = new StateDelta();
+        d.seq = readVarint(buf);
+        d.currentPlayer = readVarint(buf);
+        d.gameOver = buf.get() != 0;
+        d.winner = readVarint(buf);
+
+        int unitCount = readCount(buf, MIN_UNIT_BYTES);
+        for (int i = 0; i < unitCount; i++) d.units.add(readUnit(buf));
+        readIntList(buf, d.removedUnits);
+        readIntList(buf, d.revealedCells);
+
+        int revealed = d.revealedCells.size();
+        byte[] packed = new byte[checkLength((revealed + 3) >>> 2, buf)];
+        buf.get(packed);
+        for (int k = 0; k < revealed; k++) {
+            d.revealedTerrain.add(TERRAIN[(packed[k >>> 2] >>> ((k & 3) << 1)) & 3]);
+        }
+        readIntList(buf, d.hiddenCells);
+        return d;
+    }
+
+    private static void writeUnit(Out out, UnitDTO u) {
+        out.writeVarint(u.id);
+        int type = Arrays.asList(UNIT_TYPES).indexOf(u.type);
+        if (type >= 0) {
+            out.writeByte(type);
+        } else {
+            out.writeByte(UNIT_TYPE_OTHER);
+            out.writeNullableString(u.type);
+        }
+        out.writeVarint(u.owner);
+        out.writeVarint(u.hp);
+        out.writeVarint(u.skipTurns);
+        out.writeVarint(u.x);
+        out.writeVarint(u.y);
+    }
+
+    private static UnitDTO readUnit(ByteBuffer buf) {
+        UnitDTO u = new UnitDTO();
+        u.id = readVarint(buf);
+        int type = buf.get() & 0xFF;
+        u.type = (type < UNIT_TYPES.length) ? UNIT_TYPES[type] : readNullableString(buf);
+        u.owner = readVarint(buf);
+        u.hp = readVarint(buf);
+        u.skipTurns = readVarint(buf);
+        u.x = readVarint(buf);
+        u.y = readVarint(buf);
+        return u;
+    }
+
+    private static void writeIntList(Out out, List<Integer> list) {
+        out.writeVarint(list.size());
+        for (int v : list) out.writeVarint(v);
+    }
+
+    private static void readIntList(ByteBuffer buf, List<Integer> into) {
+        int n = readCount(buf, 1);
+        for (int i = 0; i < n; i++) into.add(readVarint(buf));
+    }
+
+    static int readVarint(ByteBuffer buf) {
+        int result = 0;
+        for (int shift = 0; shift < 35; shift += 7) {
+            int b = buf.get() & 0xFF;
+            result |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) return result;
+        }
+        throw new IllegalArgumentException("Слишком длинный varint");
+    }
+
+    static int readZigzag(ByteBuffer buf) {
+        int v = readVarint(buf);
+        return (v >>> 1) ^ -(v & 1);
+    }
+
+    static String readNullableString(ByteBuffer buf) {
+        int len = readVarint(buf);
+        if (len == 0) return null;
+        byte[] bytes = new byte[checkLength(len - 1, buf)];
+        buf.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    // сторона карты в STATE: не больше, чем может создать сервер
+    private static int readSide(ByteBuffer buf) {
+        int side = readVarint(buf);
+        if (side < 0 || side > Protocol.MAX_MAP_SIDE) {
+            throw new IllegalArgumentException("Недопустимый размер карты: " + side);
+        }
+        return side;
+    }
+
+    // число элементов, каждый из которых занимает в кадре не меньше minBytes
+    private static int readCount(ByteBuffer buf, int minBytes) {
+        int n = readVarint(buf);
+        if (n < 0 || n > buf.remaining() / minBytes) {
+            throw new IllegalArgumentException("Число элементов за пределами кадра: " + n);
+        }
+        return n;
+    }
+
+    // длина массива, который будет прочитан из кадра целиком
+    private static int checkLength(int len, ByteBuffer buf) {
+        if (len < 0 || len > buf.remaining()) {
+            throw new IllegalArgumentException("Длина за пределами кадра: " + len);
+        }
+        return len;
+    }
+
+    /**
+     * Растущий буфер записи.
+     */
+    private static final class Out {
+        private byte[] buf;
+        private int pos;
+
+        Out(int capacity) {
+            buf = new byte[capacity];
+        }
+
+        private void ensure(int extra) {
+            if (pos + extra > buf.length) {
+                buf = Arrays.copyOf(buf, Math.max(buf.length * 2, pos + extra));
+            }
+        }
+
+        void writeByte(int b) {
+            ensure(1);
+            buf[pos++] = (byte) b;
+        }
+
+        void writeBytes(byte[] bytes) {
+            ensure(bytes.length);
+            System.arraycopy(bytes, 0, buf, pos, bytes.length);
+            pos += bytes.length;
+        }
+
+        void writeVarint(int v) {
+            ensure(5);
+            while ((v & ~0x7F) != 0) {
+                buf[pos++] = (byte) ((v & 0x7F) | 0x80);
+                v >>>= 7;
+            }
+            buf[pos++] = (byte) v;
+        }
+
+        void writeZigzag(int v) {
+            writeVarint((v << 1) ^ (v >> 31));
+        }
+
+        void writeNullableString(String s) {
+            if (s == null) {
+                writeVarint(0);
+                return;
+            }
+            byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+            writeVarint(bytes.length + 1);
+            writeBytes(bytes);
+        }
+
+        byte[] toByteArray() {
+            return Arrays.copyOf(buf, pos);
+        }
+    }
+}
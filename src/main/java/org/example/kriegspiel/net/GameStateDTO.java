@@ -5,6 +5,8 @@ import java.util.ArrayList;
 import java.util.List;
 
 public class GameStateDTO {
+    public int seq; // номер состояния; следующая DELTA будет иметь seq + 1
+
     public int width;
     public int height;
 
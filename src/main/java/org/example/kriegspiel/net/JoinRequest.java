@@ -2,8 +2,23 @@ package org.example.kriegspiel.net;
 
 public class JoinRequest {
     public String playerName;
+    public String roomId; // null — сервер сам подберёт комнату с соперником
+    public int capabilities; // Protocol.CAP_*
+    public boolean vsBot; // отдельная комната, второе место занимает бот сервера
+    public String resumeToken; // из последнего ROLE: вернуться на прежнее место после обрыва
+    public int lastSeq; // seq последнего полученного STATE/DELTA (0 — нет), для возврата
 
     public JoinRequest(String playerName) {
+        this(playerName, null);
+    }
+
+    public JoinRequest(String playerName, String roomId) {
+        this(playerName, roomId, 0);
+    }
+
+    public JoinRequest(String playerName, String roomId, int capabilities) {
         this.playerName = playerName;
+        this.roomId = roomId;
+        this.capabilities = capabilities;
     }
 }
@@ -0,0 +1,434 @@
+package org.example.kriegspiel.net;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonParser;
+import com.google.gson.TypeAdapter;
+import com.google.gson.TypeAdapterFactory;
+import com.google.gson.reflect.TypeToken;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+import org.example.kriegspiel.map.TerrainType;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * JSON-кодек протокола. {@link NetMessage} читается за один проход: по полю
+ * {@code type} сразу выбирается класс payload, и он декодируется прямо из
+ * потока, без промежуточных LinkedTreeMap/JsonTree. После
+ * {@code gson.fromJson(text, NetMessage.class)} в {@code payload} уже лежит
+ * {@link ActionRequest}, {@link GameStateDTO} и т.д.
+ *
+ * <p>Terrain передаётся одной строкой по клеткам {@code y * width + x}:
+ * {@code P}/{@code F}/{@code H}/{@code S} — тип клетки, {@code .} — туман.
+ * Ловушки — список индексов клеток.
+ *
+ * <p>Сервер читает сообщения клиентов через {@link #serverGson()}: у него
+ * payload разбирается только для JOIN, ACTION и RESYNC, STATE и DELTA от
+ * клиента пропускаются не читая. Стороны карты в STATE ограничены
+ * {@link Protocol#MAX_MAP_SIDE}.
+ */
+public final class NetCodec {
+    private NetCodec() {}
+
+    private static final TerrainType[] TERRAIN = TerrainType.values();
+    private static final char[] TERRAIN_CODES = {'P', 'F', 'H', 'S'}; // по ordinal
+    private static final char FOG = '.';
+
+    public static Gson gson() {
+        return gson(false);
+    }
+
+    /**
+     * Кодек сервера: пишет все типы, а читает payload только у запросов клиента
+     * (см. {@link #requestClass}); у прочих типов payload остаётся null.
+     */
+    public static Gson serverGson() {
+        return gson(true);
+    }
+
+    private static Gson gson(boolean requestsOnly) {
+        return new GsonBuilder()
+                .registerTypeAdapterFactory(new NetMessageAdapterFactory(requestsOnly))
+                .registerTypeAdapter(ActionRequest.class, new ActionRequestAdapter().nullSafe())
+                .registerTypeAdapter(UnitDTO.class, new UnitAdapter().nullSafe())
+                .registerTypeAdapter(GameStateDTO.class, new GameStateAdapter().nullSafe())
+                .registerTypeAdapter(StateDelta.class, new StateDeltaAdapter().nullSafe())
+                .create();
+    }
+
+    /**
+     * Класс payload для типа сообщения; null — сообщение без payload или неизвестный тип.
+     */
+    public static Class<?> payloadClass(String type) {
+        if (type == null) return null;
+        return switch (type) {
+            case Protocol.TYPE_JOIN -> JoinRequest.class;
+            case Protocol.TYPE_ACTION -> ActionRequest.class;
+            case Protocol.TYPE_STATE -> GameStateDTO.class;
+            case Protocol.TYPE_DELTA -> StateDelta.class;
+            case Protocol.TYPE_ERROR -> ErrorMessage.class;
+            case Protocol.TYPE_INFO -> InfoMessage.class;
+            case Protocol.TYPE_ROLE -> RoleMessage.class;
+            default -> null;
+        };
+    }
+
+    /**
+     * Класс payload для сообщения клиента серверу; null — без payload или
+     * тип, который клиент не отправляет.
+     */
+    public static Class<?> requestClass(String type) {
+        if (type == null) return null;
+        return switch (type) {
+            case Protocol.TYPE_JOIN -> JoinRequest.class;
+            case Protocol.TYPE_ACTION -> ActionRequest.class;
+            default -> null;
+        };
+    }
+
+    static char terrainCode(TerrainType t) {
+        return t == null ? FOG : TERRAIN_CODES[t.ordinal()];
+    }
+
+    static TerrainType terrainOf(char c) {
+        for (int i = 0; i < TERRAIN_CODES.length; i++) {
+            if (TERRAIN_CODES[i] == c) return TERRAIN[i];
+        }
+        return null;
+    }
+
+    private static final class NetMessageAdapterFactory implements TypeAdapterFactory {
+        private final boolean requestsOnly;
+
+        NetMessageAdapterFactory(boolean requestsOnly) {
+            this.requestsOnly = requestsOnly;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public <T> TypeAdapter<T> create(Gson gson, TypeToken<T> type) {
+            if (type.getRawType() != NetMessage.class) return null;
+            return (TypeAdapter<T>) new NetMessageAdapter(gson, requestsOnly).nullSafe();
+        }
+    }
+
+    private static final class NetMessageAdapter extends TypeAdapter<NetMessage> {
+        private final Gson gson;
+        private final boolean requestsOnly;
+
+        NetMessageAdapter(Gson gson, boolean requestsOnly) {
+            this.gson = gson;
+            this.requestsOnly = requestsOnly;
+        }
+
+        private Class<?> classOf(String type) {
+            return requestsOnly ? requestClass(type) : payloadClass(type);
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public void write(JsonWriter out, NetMessage msg) throws IOException {
+            out.beginObject();
+            out.name("type").value(msg.type);
+            if (msg.payload != null) {
+                out.name("payload");
+                TypeAdapter<Object> adapter = (TypeAdapter<Object>) gson.getAdapter(msg.payload.getClass());
+                adapter.write(out, msg.payload);
+            }
+            out.endObject();
+        }
+
+        @Override
+        public NetMessage read(JsonReader in) throws IOException {
+            String type = null;
+            Object payload = null;
+            JsonElement early = null; // payload пришёл раньше type — редкий случай
+
+            in.beginObject();
+            while (in.hasNext()) {
+                switch (in.nextName()) {
+                    case "type" -> type = nextStringOrNull(in);
+                    case "payload" -> {
+                        if (type != null) {
+                            payload = readPayload(type, in);
+                        } else {
+                            early = JsonParser.parseReader(in);
+                        }
+                    }
+                    default -> in.skipValue();
+                }
+            }
+            in.endObject();
+
+            if (early != null) {
+                Class<?> cls = classOf(type);
+                if (cls != null) payload = gson.getAdapter(cls).fromJsonTree(early);
+            }
+            return new NetMessage(type, payload);
+        }
+
+        private Object readPayload(String type, JsonReader in) throws IOException {
+            Class<?> cls = classOf(type);
+            if (cls == null || in.peek() == JsonToken.NULL) {
+                in.skipValue();
+                return null;
+            }
+            return gson.getAdapter(cls).read(in);
+        }
+    }
+
+    private static final class ActionRequestAdapter extends TypeAdapter<ActionRequest> {
+        @Override
+        public void write(JsonWriter out, ActionRequest a) throws IOException {
+            out.beginObject();
+            out.name("action").value(a.action);
+            out.name("fromX").value(a.fromX);
+            out.name("fromY").value(a.fromY);
+            out.name("toX").value(a.toX);
+            out.name("toY").value(a.toY);
+            out.endObject();
+        }
+
+        @Override
+        public ActionRequest read(JsonReader in) throws IOException {
+            ActionRequest a = new ActionRequest(null, 0, 0, 0, 0);
+            in.beginObject();
+            while (in.hasNext()) {
+                switch (in.nextName()) {
+                    case "action" -> a.action = nextStringOrNull(in);
+                    case "fromX" -> a.fromX = in.nextInt();
+                    case "fromY" -> a.fromY = in.nextInt();
+                    case "toX" -> a.toX = in.nextInt();
+                    case "toY" -> a.toY = in.nextInt();
+                    default -> in.skipValue();
+                }
+            }
+            in.endObject();
+            return a;
+        }
+    }
+
+    private static final class UnitAdapter extends TypeAdapter<UnitDTO> {
+        @Override
+        public void write(JsonWriter out, UnitDTO u) throws IOException {
+            out.beginObject();
+            out.name("id").value(u.id);
+            out.name("type").value(u.type);
+            out.name("owner").value(u.owner);
+            out.name("hp").value(u.hp);
+            out.name("skipTurns").value(u.skipTurns);
+            out.name("x").value(u.x);
+            out.name("y").value(u.y);
+            out.endObject();
+        }
+
+        @Override
+        public UnitDTO read(JsonReader in) throws IOException {
+            UnitDTO u = new UnitDTO();
+            in.beginObject();
+            while (in.hasNext()) {
+                switch (in.nextName()) {
+                    case "id" -> u.id = in.nextInt();
+                    case "type" -> u.type = nextStringOrNull(in);
+                    case "owner" -> u.owner = in.nextInt();
+                    case "hp" -> u.hp = in.nextInt();
+                    case "skipTurns" -> u.skipTurns = in.nextInt();
+                    case "x" -> u.x = in.nextInt();
+                    case "y" -> u.y = in.nextInt();
+                    default -> in.skipValue();
+                }
+            }
+            in.endObject();
+            return u;
+        }
+    }
+
+    private static final class GameStateAdapter extends TypeAdapter<GameStateDTO> {
+        private final UnitAdapter units = new UnitAdapter();
+
+        @Override
+        public void write(JsonWriter out, GameStateDTO dto) throws IOException {
+            out.beginObject();
+            out.name("seq").value(dto.seq);
+            out.name("width").value(dto.width);
+            out.name("height").value(dto.height);
+            out.name("player1Name").value(dto.player1Name);
+            out.name("player2Name").value(dto.player2Name);
+            out.name("currentPlayer").value(dto.currentPlayer);
+
+            if (dto.terrain != null) {
+                char[] packed = new char[dto.width * dto.height];
+                for (int y = 0; y < dto.height; y++) {
+                    for (int x = 0; x < dto.width; x++) {
+                        packed[y * dto.width + x] = terrainCode(dto.terrain[y][x]);
+                    }
+                }
+                out.name("terrain").value(new String(packed));
+            }
+            if (dto.traps != null) {
+                out.name("traps").beginArray();
+                for (int y = 0; y < dto.height; y++) {
+                    for (int x = 0; x < dto.width; x++) {
+                        if (dto.traps[y][x]) out.value(y * dto.width + x);
+                    }
+                }
+                out.endArray();
+            }
+
+            out.name("units").beginArray();
+            if (dto.units != null) {
+                for (UnitDTO u : dto.units) units.write(out, u);
+            }
+            out.endArray();
+
+            out.name("gameOver").value(dto.gameOver);
+            out.name("winner").value(dto.winner);
+            out.endObject();
+        }
+
+        @Override
+        public GameStateDTO read(JsonReader in) throws IOException {
+            GameStateDTO dto = new GameStateDTO();
+            String terrain = null;
+            List<Integer> traps = null;
+
+            in.beginObject();
+            while (in.hasNext()) {
+                switch (in.nextName()) {
+                    case "seq" -> dto.seq = in.nextInt();
+                    case "width" -> dto.width = in.nextInt();
+                    case "height" -> dto.height = in.nextInt();
+                    case "player1Name" -> dto.player1Name = nextStringOrNull(in);
+                    case "player2Name" -> dto.player2Name = nextStringOrNull(in);
+                    case "currentPlayer" -> dto.currentPlayer = in.nextInt();
+                    case "terrain" -> terrain = nextStringOrNull(in);
+                    case "traps" -> traps = readIntList(in);
+                    case "units" -> {
+                        in.beginArray();
+                        while (in.hasNext()) dto.units.add(units.read(in));
+                        in.endArray();
+                    }
+                    case "gameOver" -> dto.gameOver = in.nextBoolean();
+                    case "winner" -> dto.winner = in.nextInt();
+                    default -> in.skipValue();
+                }
+            }
+            in.endObject();
+
+            // размеры могут прийти после terrain — распаковываем в конце
+            if (dto.width < 0 || dto.width > Protocol.MAX_MAP_SIDE
+                    || dto.height < 0 || dto.height > Protocol.MAX_MAP_SIDE) {
+                throw new IllegalArgumentException("Недопустимый размер карты: " + dto.width + "x" + dto.height);
+            }
+            dto.terrain = new TerrainType[dto.height][dto.width];
+            if (terrain != null) {
+                int n = Math.min(terrain.length(), dto.width * dto.height);
+                for (int i = 0; i < n; i++) {
+                    dto.terrain[i / dto.width][i % dto.width] = terrainOf(terrain.charAt(i));
+                }
+            }
+            dto.traps = new boolean[dto.height][dto.width];
+            if (traps != null) {
+                for (int cell : traps) {
+                    if (cell >= 0 && cell < dto.width * dto.height) {
+                        dto.traps[cell / dto.width][cell % dto.width] = true;
+                    }
+                }
+            }
+            return dto;
+        }
+    }
+
+    private static final class StateDeltaAdapter extends TypeAdapter<StateDelta> {
+        private final UnitAdapter units = new UnitAdapter();
+
+        @Override
+        public void write(JsonWriter out, StateDelta d) throws IOException {
+            out.beginObject();
+            out.name("seq").value(d.seq);
+            out.name("currentPlayer").value(d.currentPlayer);
+            out.name("gameOver").value(d.gameOver);
+            out.name("winner").value(d.winner);
+
+            out.name("units").beginArray();
+            for (UnitDTO u : d.units) units.write(out, u);
+            out.endArray();
+
+            writeIntList(out.name("removedUnits"), d.removedUnits);
+            writeIntList(out.name("revealedCells"), d.revealedCells);
+
+            char[] packed = new char[d.revealedTerrain.size()];
+            for (int i = 0; i < packed.length; i++) {
+                packed[i] = terrainCode(d.revealedTerrain.get(i));
+            }
+            out.name("revealedTerrain").value(new String(packed));
+
+            writeIntList(out.name("hiddenCells"), d.hiddenCells);
+            out.endObject();
+        }
+
+        @Override
+        public StateDelta read(JsonReader in) throws IOException {
+            StateDelta d = new StateDelta();
+            in.beginObject();
+            while (in.hasNext()) {
+                switch (in.nextName()) {
+                    case "seq" -> d.seq = in.nextInt();
+                    case "currentPlayer" -> d.currentPlayer = in.nextInt();
+                    case "gameOver" -> d.gameOver = in.nextBoolean();
+                    case "winner" -> d.winner = in.nextInt();
+                    case "units" -> {
+                        in.beginArray();
+                        while (in.hasNext()) d.units.add(units.read(in));
+                        in.endArray();
+                    }
+                    case "removedUnits" -> d.removedUnits = readIntList(in);
+                    case "revealedCells" -> d.revealedCells = readIntList(in);
+                    case "revealedTerrain" -> {
+                        String packed = nextStringOrNull(in);
+                        if (packed != null) {
+                            for (int i = 0; i < packed.length(); i++) {
+                                d.revealedTerrain.add(terrainOf(packed.charAt(i)));
+                            }
+                        }
+                    }
+                    case "hiddenCells" -> d.hiddenCells = readIntList(in);
+                    default -> in.skipValue();
+                }
+            }
+            in.endObject();
+            return d;
+        }
+    }
+
+    private static String nextStringOrNull(JsonReader in) throws IOException {
+        if (in.peek() == JsonToken.NULL) {
+            in.nextNull();
+            return null;
+        }
+        return in.nextString();
+    }
+
+    private static List<Integer> readIntList(JsonReader in) throws IOException {
+        List<Integer> list = new ArrayList<>();
+        if (in.peek() == JsonToken.NULL) {
+            in.nextNull();
+            return list;
+        }
+        in.beginArray();
+        while (in.hasNext()) list.add(in.nextInt());
+        in.endArray();
+        return list;
+    }
+
+    private static void writeIntList(JsonWriter out, List<Integer> list) throws IOException {
+        out.beginArray();
+        for (int v : list) out.value(v);
+        out.endArray();
+    }
+}
@@ -9,7 +9,22 @@ public final class Protocol {
     public static final String TYPE_ERROR = "ERROR";
     public static final String TYPE_INFO = "INFO";
     public static final String TYPE_ROLE = "ROLE";
+    // изменения относительно предыдущего STATE/DELTA (см. StateDelta)
+    public static final String TYPE_DELTA = "DELTA";
+    // клиент потерял последовательность DELTA и просит полный STATE
+    public static final String TYPE_RESYNC = "RESYNC";
 
     public static final String ACTION_MOVE = "MOVE";
     public static final String ACTION_ATTACK = "ATTACK";
+
+    // возможности клиента, битовая маска в JoinRequest.capabilities
+    public static final int CAP_DELTA = 1;
+    // сервер отвечает двоичными кадрами (см. BinaryCodec); JOIN всегда отправляется текстом
+    public static final int CAP_BINARY = 2;
+
+    // версия двоичного формата, первый байт каждого binary frame
+    public static final int BINARY_VERSION = 1;
+
+    // наибольшая сторона карты: сервер больших не создаёт, кодеки больших не принимают
+    public static final int MAX_MAP_SIDE = 4096;
 }
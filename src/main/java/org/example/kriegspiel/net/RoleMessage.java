@@ -2,5 +2,19 @@ package org.example.kriegspiel.net;
 
 public class RoleMessage {
     public int playerIndex;
-    public RoleMessage(int playerIndex) { this.playerIndex = playerIndex; }
+    public String roomId;
+    // токен возврата на это место после обрыва (JoinRequest.resumeToken); одноразовый
+    public String resumeToken;
+
+    public RoleMessage(int playerIndex) { this(playerIndex, null); }
+
+    public RoleMessage(int playerIndex, String roomId) {
+        this(playerIndex, roomId, null);
+    }
+
+    public RoleMessage(int playerIndex, String roomId, String resumeToken) {
+        this.playerIndex = playerIndex;
+        this.roomId = roomId;
+        this.resumeToken = resumeToken;
+    }
 }
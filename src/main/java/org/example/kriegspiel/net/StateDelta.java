@@ -0,0 +1,29 @@
+package org.example.kriegspiel.net;
+
+import org.example.kriegspiel.map.TerrainType;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Изменения персонального состояния игрока за один ход.
+ * Применяется только поверх состояния с номером {@code seq - 1}.
+ * Клетки задаются индексом {@code y * width + x}.
+ */
+public class StateDelta {
+    public int seq;
+
+    public int currentPlayer;
+    public boolean gameOver;
+    public int winner;
+
+    // появившиеся или изменившиеся юниты (сопоставляются по id)
+    public List<UnitDTO> units = new ArrayList<>();
+    // id юнитов, которые погибли или ушли в туман
+    public List<Integer> removedUnits = new ArrayList<>();
+
+    // клетки, вышедшие из тумана, и их terrain (параллельные списки)
+    public List<Integer> revealedCells = new ArrayList<>();
+    public List<TerrainType> revealedTerrain = new ArrayList<>();
+    // клетки, ушедшие в туман
+    public List<Integer> hiddenCells = new ArrayList<>();
+}
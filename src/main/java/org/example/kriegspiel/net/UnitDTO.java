@@ -1,6 +1,7 @@
 package org.example.kriegspiel.net;
 
 public class UnitDTO {
+    public int id;
     public String type;
     public int owner;
     public int hp;
@@ -2,14 +2,24 @@ package org.example.kriegspiel.net.client;
 
 import org.example.kriegspiel.map.TerrainType;
 import org.example.kriegspiel.net.GameStateDTO;
+import org.example.kriegspiel.net.StateDelta;
 import org.example.kriegspiel.net.UnitDTO;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 public class ClientGameState implements GameController {
 
     private GameStateDTO dto;
+    // юнит по клетке [y * width + x]; перестраивается при каждом изменении dto.units
+    private UnitDTO[] unitByCell = new UnitDTO[0];
+    // растёт при каждом изменении состояния; по нему MapPanel сбрасывает кэш отрисовки
+    private int version = 0;
     private int myPlayerIndex = 0;
     private GameController controller;
 
@@ -23,18 +33,117 @@ public class ClientGameState implements GameController {
         this.dto.currentPlayer = 1;
         this.dto.gameOver = false;
         this.dto.winner = 0;
+        rebuildUnitIndex();
     }
 
     public ClientGameState(GameStateDTO dto) {
         this.dto = dto;
+        rebuildUnitIndex();
     }
 
     public void updateFromDTO(GameStateDTO dto) {
         this.dto = dto;
+        version++;
+        rebuildUnitIndex();
     }
 
     public void update(GameStateDTO dto) {
-        this.dto = dto;
+        updateFromDTO(dto);
+    }
+
+    private void rebuildUnitIndex() {
+        int n = (dto != null) ? dto.width * dto.height : 0;
+        if (unitByCell.length != n) {
+            unitByCell = new UnitDTO[n];
+        } else {
+            Arrays.fill(unitByCell, null);
+        }
+        if (dto == null || dto.units == null) return;
+        for (UnitDTO u : dto.units) {
+            if (isInside(u.x, u.y)) unitByCell[u.y * dto.width + u.x] = u;
+        }
+    }
+
+    private void unindex(UnitDTO u) {
+        if (isInside(u.x, u.y) && unitByCell[u.y * dto.width + u.x] == u) {
+            unitByCell[u.y * dto.width + u.x] = null;
+        }
+    }
+
+    /**
+     * Применяет DELTA к текущему состоянию на месте.
+     *
+     * @return false, если DELTA не следует за текущим состоянием или не
+     *         сходится с ним по клеткам (нужен полный STATE — см. Protocol.TYPE_RESYNC);
+     *         состояние при этом не меняется
+     */
+    public boolean applyDelta(StateDelta delta) {
+        if (dto == null || dto.terrain == null || dto.units == null || delta.seq != dto.seq + 1) {
+            return false;
+        }
+        if (!fitsMap(delta)) {
+            return false;
+        }
+
+        dto.seq = delta.seq;
+        version++;
+        dto.currentPlayer = delta.currentPlayer;
+        dto.gameOver = delta.gameOver;
+        dto.winner = delta.winner;
+
+        int w = dto.width;
+        for (int i = 0; i < delta.revealedCells.size(); i++) {
+            int cell = delta.revealedCells.get(i);
+            dto.terrain[cell / w][cell % w] = delta.revealedTerrain.get(i);
+        }
+        for (int cell : delta.hiddenCells) {
+            dto.terrain[cell / w][cell % w] = null;
+        }
+
+        if (!delta.removedUnits.isEmpty()) {
+            Set<Integer> removed = new HashSet<>(delta.removedUnits);
+            dto.units.removeIf(u -> {
+                if (!removed.contains(u.id)) return false;
+                unindex(u);
+                return true;
+            });
+        }
+        if (!delta.units.isEmpty()) {
+            Map<Integer, Integer> indexById = new HashMap<>();
+            for (int i = 0; i < dto.units.size(); i++) {
+                indexById.put(dto.units.get(i).id, i);
+            }
+            // сначала снимаем старые позиции: юниты могли поменяться клетками
+            for (UnitDTO u : delta.units) {
+                Integer i = indexById.get(u.id);
+                if (i != null) unindex(dto.units.get(i));
+            }
+            for (UnitDTO u : delta.units) {
+                Integer i = indexById.get(u.id);
+                if (i != null) {
+                    dto.units.set(i, u);
+                } else {
+                    dto.units.add(u);
+                }
+                if (isInside(u.x, u.y)) unitByCell[u.y * dto.width + u.x] = u;
+            }
+        }
+        return true;
+    }
+
+    // клетки DELTA внутри карты, terrain — на каждую открытую клетку
+    private boolean fitsMap(StateDelta delta) {
+        if (delta.revealedCells.size() != delta.revealedTerrain.size()) {
+            return false;
+        }
+        int cells = dto.width * dto.height;
+        for (int cell : delta.revealedCells) {
+            if (cell < 0 || cell >= cells) return false;
+        }
+        for (int cell : delta.hiddenCells) {
+            if (cell < 0 || cell >= cells) return false;
+        }
+        return true;
     }
 
     public void setMyPlayerIndex(int index) {
@@ -49,6 +158,10 @@ public class ClientGameState implements GameController {
         return dto;
     }
 
+    public int getVersion() {
+        return version;
+    }
+
     public int getWidth() { 
         return dto != null ? dto.width : 0; 
     }
@@ -72,11 +185,8 @@ public class ClientGameState implements GameController {
     }
 
     public UnitDTO getUnitAt(int x, int y) {
-        if (dto == null || dto.units == null) return null;
-        for (UnitDTO u : dto.units) {
-            if (u.x == x && u.y == y) return u;
-        }
-        return null;
+        if (!isInside(x, y)) return null;
+        return unitByCell[y * dto.width + x];
     }
 
     public List<UnitDTO> getUnits() { 
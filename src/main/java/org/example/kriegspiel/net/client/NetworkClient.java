@@ -1,82 +1,208 @@
 package org.example.kriegspiel.net.client;
 
 import com.google.gson.Gson;
-import com.google.gson.GsonBuilder;
 import org.example.kriegspiel.net.*;
 
 import org.java_websocket.client.WebSocketClient;
+import org.java_websocket.framing.CloseFrame;
 import org.java_websocket.handshake.ServerHandshake;
 
 import java.net.URI;
+import java.nio.ByteBuffer;
 import java.util.function.Consumer;
 
 public class NetworkClient extends WebSocketClient implements GameController {
 
-    private final Gson gson = new GsonBuilder().create();
+    private final Gson gson = NetCodec.gson();
     private final String playerName;
+    private final String roomId;
 
     private final Consumer<GameStateDTO> onState;
     private final Consumer<String> onStatus;
     private final Runnable onConnected;
+    // если задан до connect(), сервер присылает DELTA вместо полного STATE
+    private volatile Consumer<StateDelta> onDelta;
+    // если включено до connect(), JOIN запрашивает двоичный формат (Protocol.CAP_BINARY)
+    private volatile boolean binary;
+    // сервер перешёл на двоичные кадры — свои сообщения тоже отправляем двоично
+    private volatile boolean binaryConfirmed;
+    // если включено до connect(), JOIN просит партию против бота сервера
+    private volatile boolean vsBot;
 
     private volatile int myPlayerIndex = 0;
+    private volatile String joinedRoomId = null;
+
+    private static final int RECONNECT_ATTEMPTS = 10;
+    private static final long RECONNECT_DELAY_MILLIS = 2_000;
+
+    // возврат на место после обрыва: токен из последнего ROLE и seq последнего состояния
+    private volatile String resumeToken = null;
+    private volatile int lastSeq = 0;
+    // если включено, после обрыва клиент сам переподключается и отправляет токен
+    private volatile boolean autoReconnect;
+    private volatile boolean reconnecting;
 
     public int getMyPlayerIndex() {
         return myPlayerIndex;
     }
 
+    public String getJoinedRoomId() {
+        return joinedRoomId;
+    }
+
     public NetworkClient(URI serverUri,
                          String playerName,
                          Consumer<GameStateDTO> onState,
                          Consumer<String> onStatus,
                          Runnable onConnected) {
+        this(serverUri, playerName, null, onState, onStatus, onConnected);
+    }
+
+    /**
+     * @param roomId комната для JOIN; null — сервер подберёт соперника сам
+     */
+    public NetworkClient(URI serverUri,
+                         String playerName,
+                         String roomId,
+                         Consumer<GameStateDTO> onState,
+                         Consumer<String> onStatus,
+                         Runnable onConnected) {
         super(serverUri);
         this.playerName = playerName;
+        this.roomId = roomId;
         this.onState = onState;
         this.onStatus = onStatus;
         this.onConnected = onConnected;
     }
 
+    /**
+     * Включает режим DELTA. Обработчик получает изменения по порядку seq;
+     * если последовательность нарушена, нужно вызвать {@link #requestResync()}.
+     */
+    public void setOnDelta(Consumer<StateDelta> onDelta) {
+        this.onDelta = onDelta;
+    }
+
+    /**
+     * Запрашивает у сервера двоичный формат (см. {@link BinaryCodec}).
+     * Сервер без его поддержки продолжит отвечать JSON.
+     */
+    public void setBinary(boolean binary) {
+        this.binary = binary;
+    }
+
+    /**
+     * Игра против бота: сервер создаёт отдельную комнату и сразу начинает партию.
+     */
+    public void setVsBot(boolean vsBot) {
+        this.vsBot = vsBot;
+    }
+
+    /**
+     * Переподключаться после обрыва соединения, пока сервер держит место
+     * (см. {@link RoleMessage#resumeToken}).
+     */
+    public void setAutoReconnect(boolean autoReconnect) {
+        this.autoReconnect = autoReconnect;
+    }
+
     @Override
     public void onOpen(ServerHandshake handshakedata) {
-        send(gson.toJson(new NetMessage(Protocol.TYPE_JOIN, new JoinRequest(playerName))));
+        binaryConfirmed = false;
+        int capabilities = (onDelta != null) ? Protocol.CAP_DELTA : 0;
+        if (binary) capabilities |= Protocol.CAP_BINARY;
+        // JOIN всегда текстом: формат ещё не согласован
+        JoinRequest join = new JoinRequest(playerName, roomId, capabilities);
+        join.vsBot = vsBot;
+        join.resumeToken = resumeToken;
+        join.lastSeq = lastSeq;
+        send(gson.toJson(new NetMessage(Protocol.TYPE_JOIN, join)));
         if (onConnected != null) onConnected.run();
     }
 
     @Override
     public void onMessage(String message) {
         try {
-            NetMessage msg = gson.fromJson(message, NetMessage.class);
-            if (msg == null || msg.type == null) return;
+            dispatch(gson.fromJson(message, NetMessage.class));
+        } catch (Exception ex) {
+            onStatus.accept("Ошибка обработки сообщения от сервера: " + ex.getMessage());
+        }
+    }
+
+    @Override
+    public void onMessage(ByteBuffer bytes) {
+        try {
+            binaryConfirmed = true;
+            dispatch(BinaryCodec.decode(bytes));
+        } catch (Exception ex) {
+            onStatus.accept("Ошибка обработки сообщения от сервера: " + ex.getMessage());
+        }
+    }
 
-            switch (msg.type) {
-                case Protocol.TYPE_STATE -> {
-                    GameStateDTO state = gson.fromJson(gson.toJsonTree(msg.payload), GameStateDTO.class);
+    /**
+     * Обработка декодированного сообщения (текстового или двоичного).
+     * Наследники могут наблюдать поток сообщений, вызывая super.
+     */
+    protected void dispatch(NetMessage msg) {
+        if (msg == null || msg.type == null) return;
+
+        switch (msg.type) {
+            case Protocol.TYPE_STATE -> {
+                if (msg.payload instanceof GameStateDTO state) {
+                    lastSeq = state.seq;
                     onState.accept(state);
                 }
-                case Protocol.TYPE_ERROR -> {
-                    ErrorMessage err = gson.fromJson(gson.toJsonTree(msg.payload), ErrorMessage.class);
-                    onStatus.accept(err.message);
-                }
-                case Protocol.TYPE_ROLE -> {
-                    RoleMessage role = gson.fromJson(gson.toJsonTree(msg.payload), RoleMessage.class);
-                    if (role != null) myPlayerIndex = role.playerIndex;
-                }
-                case Protocol.TYPE_INFO -> {
-                    InfoMessage inf = gson.fromJson(gson.toJsonTree(msg.payload), InfoMessage.class);
-                    onStatus.accept(inf.message);
+            }
+            case Protocol.TYPE_DELTA -> {
+                Consumer<StateDelta> handler = onDelta;
+                if (handler != null && msg.payload instanceof StateDelta delta) {
+                    if (delta.seq == lastSeq + 1) lastSeq = delta.seq;
+                    handler.accept(delta);
                 }
-                default -> {
+            }
+            case Protocol.TYPE_ERROR -> {
+                if (msg.payload instanceof ErrorMessage err) onStatus.accept(err.message);
+            }
+            case Protocol.TYPE_ROLE -> {
+                if (msg.payload instanceof RoleMessage role) {
+                    myPlayerIndex = role.playerIndex;
+                    joinedRoomId = role.roomId;
+                    resumeToken = role.resumeToken;
                 }
             }
-        } catch (Exception ex) {
-            onStatus.accept("Ошибка обработки сообщения от сервера: " + ex.getMessage());
+            case Protocol.TYPE_INFO -> {
+                if (msg.payload instanceof InfoMessage inf) onStatus.accept(inf.message);
+            }
+            default -> {
+            }
         }
     }
 
     @Override
     public void onClose(int code, String reason, boolean remote) {
         onStatus.accept("Соединение закрыто: " + reason);
+        if (autoReconnect && !reconnecting && resumeToken != null && code != CloseFrame.NORMAL) {
+            reconnecting = true;
+            // reconnectBlocking нельзя вызывать из потока самого соединения
+            Thread t = new Thread(this::reconnectLoop, "reconnect");
+            t.setDaemon(true);
+            t.start();
+        }
+    }
+
+    private void reconnectLoop() {
+        try {
+            for (int attempt = 1; attempt <= RECONNECT_ATTEMPTS; attempt++) {
+                Thread.sleep(RECONNECT_DELAY_MILLIS);
+                onStatus.accept("Переподключение, попытка " + attempt + "...");
+                if (reconnectBlocking()) return;
+            }
+            onStatus.accept("Не удалось переподключиться к серверу.");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            reconnecting = false;
+        }
     }
 
     @Override
@@ -84,19 +210,31 @@ public class NetworkClient extends WebSocketClient implements GameController {
         onStatus.accept("Ошибка сети: " + ex.getMessage());
     }
 
+    public void requestResync() {
+        sendMessage(new NetMessage(Protocol.TYPE_RESYNC, null));
+    }
+
     @Override
     public void requestMove(int fromX, int fromY, int toX, int toY) {
-        send(gson.toJson(new NetMessage(
+        sendMessage(new NetMessage(
                 Protocol.TYPE_ACTION,
                 new ActionRequest(Protocol.ACTION_MOVE, fromX, fromY, toX, toY)
-        )));
+        ));
     }
 
     @Override
     public void requestAttack(int fromX, int fromY, int toX, int toY) {
-        send(gson.toJson(new NetMessage(
+        sendMessage(new NetMessage(
                 Protocol.TYPE_ACTION,
                 new ActionRequest(Protocol.ACTION_ATTACK, fromX, fromY, toX, toY)
-        )));
+        ));
+    }
+
+    private void sendMessage(NetMessage msg) {
+        if (binaryConfirmed) {
+            send(BinaryCodec.encode(msg));
+        } else {
+            send(gson.toJson(msg));
+        }
     }
 }
\ No newline at end of file
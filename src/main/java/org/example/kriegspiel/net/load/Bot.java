@@ -0,0 +1,222 @@
+package org.example.kriegspiel.net.load;
+
+import org.example.kriegspiel.map.TerrainType;
+import org.example.kriegspiel.model.unit.Artillery;
+import org.example.kriegspiel.model.unit.Cavalry;
+import org.example.kriegspiel.model.unit.Infantry;
+import org.example.kriegspiel.model.unit.Unit;
+import org.example.kriegspiel.net.*;
+import org.example.kriegspiel.net.client.ClientGameState;
+import org.example.kriegspiel.net.client.NetworkClient;
+
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+
+/**
+ * Бот генератора нагрузки поверх {@link NetworkClient}: держит персональное
+ * состояние в {@link ClientGameState} и в свой ход отправляет случайное действие —
+ * атаку видимого врага в радиусе, иначе ход на видимую свободную клетку.
+ * Правила местности клиенту не видны, поэтому часть ходов сервер отклоняет;
+ * тогда бот пробует другой ход.
+ */
+final class Bot {
+
+    private static final int MAX_RETRIES = 16;
+
+    // дальности по типу юнита (UnitDTO.type — простое имя класса)
+    private static final Map<String, Unit> PROTOTYPES = Map.of(
+            "Infantry", new Infantry(null),
+            "Cavalry", new Cavalry(null),
+            "Artillery", new Artillery(null));
+
+    private final Match match;
+    private final URI uri;
+    private final String name;
+    private final boolean binary;
+    private final boolean deltas;
+    private final SplittableRandom random;
+
+    // всё ниже — под монитором бота
+    private NetworkClient client;
+    private final ClientGameState state = new ClientGameState();
+    private boolean awaitingResult;
+    private int retries;
+
+    Bot(Match match, URI uri, String name, boolean binary, boolean deltas, long seed) {
+        this.match = match;
+        this.uri = uri;
+        this.name = name;
+        this.binary = binary;
+        this.deltas = deltas;
+        this.random = new SplittableRandom(seed);
+    }
+
+    synchronized void connect() {
+        LoadStats stats = match.stats;
+        NetworkClient c = new NetworkClient(uri, name, match.roomId, dto -> {}, status -> {}, null) {
+            @Override
+            public void onMessage(String message) {
+                stats.bytesIn.add(utf8Length(message));
+                super.onMessage(message);
+            }
+
+            @Override
+            public void onMessage(ByteBuffer bytes) {
+                stats.bytesIn.add(bytes.remaining());
+                super.onMessage(bytes);
+            }
+
+            @Override
+            protected void dispatch(NetMessage msg) {
+                super.dispatch(msg);
+                received(this, msg);
+            }
+        };
+        if (deltas) c.setOnDelta(delta -> {});
+        c.setBinary(binary);
+        client = c;
+        awaitingResult = false;
+        c.connect();
+    }
+
+    void close() {
+        NetworkClient c;
+        synchronized (this) {
+            c = client;
+            client = null;
+        }
+        if (c == null) return;
+        try {
+            c.closeBlocking();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private synchronized void received(NetworkClient from, NetMessage msg) {
+        if (from != client || msg == null || msg.type == null) return;
+        match.stats.messagesIn.increment();
+
+        switch (msg.type) {
+            case Protocol.TYPE_STATE -> {
+                if (!(msg.payload instanceof GameStateDTO dto)) return;
+                match.stateReceived(dto.seq);
+                state.updateFromDTO(dto);
+                afterUpdate();
+            }
+            case Protocol.TYPE_DELTA -> {
+                if (!(msg.payload instanceof StateDelta delta)) return;
+                match.stateReceived(delta.seq);
+                if (!state.applyDelta(delta)) {
+                    match.stats.resyncs.increment();
+                    client.requestResync();
+                    return;
+                }
+                afterUpdate();
+            }
+            case Protocol.TYPE_ERROR -> {
+                if (!awaitingResult) return;
+                awaitingResult = false;
+                match.stats.rejected.increment();
+                if (++retries > MAX_RETRIES) {
+                    match.restart();
+                } else {
+                    match.scheduleTurn(this);
+                }
+            }
+            default -> {
+            }
+        }
+    }
+
+    private void afterUpdate() {
+        awaitingResult = false;
+        GameStateDTO dto = state.getDto();
+        if (dto.gameOver) {
+            match.restart();
+            return;
+        }
+        if (dto.currentPlayer == client.getMyPlayerIndex()) {
+            retries = 0;
+            match.scheduleTurn(this);
+        }
+    }
+
+    synchronized void act() {
+        if (client == null || awaitingResult) return;
+        GameStateDTO dto = state.getDto();
+        int me = client.getMyPlayerIndex();
+        if (dto.gameOver || dto.currentPlayer != me) return;
+
+        ActionRequest action = chooseAction(dto, me);
+        if (action == null) {
+            // ходить некем (все оглушены или зажаты), а пропустить ход протокол не позволяет
+            match.restart();
+            return;
+        }
+
+        awaitingResult = true;
+        match.actionSent(dto.seq + 1);
+        match.stats.actions.increment();
+        if (Protocol.ACTION_ATTACK.equals(action.action)) {
+            client.requestAttack(action.fromX, action.fromY, action.toX, action.toY);
+        } else {
+            client.requestMove(action.fromX, action.fromY, action.toX, action.toY);
+        }
+    }
+
+    private ActionRequest chooseAction(GameStateDTO dto, int me) {
+        List<UnitDTO> ready = new ArrayList<>();
+        List<UnitDTO> enemies = new ArrayList<>();
+        for (UnitDTO u : dto.units) {
+            if (u.owner != me) enemies.add(u);
+            else if (u.skipTurns == 0 && u.hp > 0 && PROTOTYPES.containsKey(u.type)) ready.add(u);
+        }
+        if (ready.isEmpty()) return null;
+
+        int start = random.nextInt(ready.size());
+        for (int k = 0; k < ready.size(); k++) {
+            UnitDTO u = ready.get((start + k) % ready.size());
+            Unit proto = PROTOTYPES.get(u.type);
+
+            for (UnitDTO e : enemies) {
+                if (Math.abs(e.x - u.x) + Math.abs(e.y - u.y) <= proto.getAttackRange()) {
+                    return new ActionRequest(Protocol.ACTION_ATTACK, u.x, u.y, e.x, e.y);
+                }
+            }
+
+            int range = proto.getMoveRange();
+            for (int attempt = 0; attempt < 8; attempt++) {
+                int dx = random.nextInt(2 * range + 1) - range;
+                int rest = range - Math.abs(dx);
+                int dy = random.nextInt(2 * rest + 1) - rest;
+                int tx = u.x + dx;
+                int ty = u.y + dy;
+                if ((dx == 0 && dy == 0) || tx < 0 || ty < 0 || tx >= dto.width || ty >= dto.height) continue;
+                TerrainType terrain = dto.terrain[ty][tx];
+                if (terrain != null && state.getUnitAt(tx, ty) == null) {
+                    return new ActionRequest(Protocol.ACTION_MOVE, u.x, u.y, tx, ty);
+                }
+            }
+        }
+        return null;
+    }
+
+    private static int utf8Length(String s) {
+        int n = 0;
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c < 0x80) n++;
+            else if (c < 0x800) n += 2;
+            else if (Character.isHighSurrogate(c)) {
+                n += 4;
+                i++;
+            } else n += 3;
+        }
+        return n;
+    }
+}
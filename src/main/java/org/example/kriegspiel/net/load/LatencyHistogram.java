@@ -0,0 +1,76 @@
+package org.example.kriegspiel.net.load;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Гистограмма задержек без блокировок: лог-линейные корзины по микросекундам
+ * (32 корзины на каждую степень двойки, погрешность перцентиля не больше ~3%).
+ * Запись — один {@code incrementAndGet}, поэтому её можно вызывать из любых потоков.
+ */
+public final class LatencyHistogram {
+
+    private static final int SUB_BITS = 5;
+    private static final int SUB = 1 << SUB_BITS;
+    private static final int BUCKETS = (64 - SUB_BITS) * SUB;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+
+    public void recordNanos(long nanos) {
+        counts.incrementAndGet(bucketOf(Math.max(0, nanos / 1000)));
+    }
+
+    /**
+     * Переносит накопленные значения в {@code into} и обнуляет эту гистограмму.
+     * Записи, идущие параллельно, попадают либо в снимок, либо в следующий интервал.
+     */
+    public void drainTo(LatencyHistogram into) {
+        for (int i = 0; i < BUCKETS; i++) {
+            long c = counts.getAndSet(i, 0);
+            if (c != 0) into.counts.addAndGet(i, c);
+        }
+    }
+
+    public void addTo(LatencyHistogram into) {
+        for (int i = 0; i < BUCKETS; i++) {
+            long c = counts.get(i);
+            if (c != 0) into.counts.addAndGet(i, c);
+        }
+    }
+
+    public long count() {
+        long n = 0;
+        for (int i = 0; i < BUCKETS; i++) n += counts.get(i);
+        return n;
+    }
+
+    /**
+     * Перцентиль в микросекундах (верхняя граница корзины); 0, если записей нет.
+     *
+     * @param q доля от 0 до 1, например 0.999
+     */
+    public long percentileMicros(double q) {
+        long total = count();
+        if (total == 0) return 0;
+        long rank = Math.max(1, (long) Math.ceil(q * total));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += counts.get(i);
+            if (seen >= rank) return upperBound(i);
+        }
+        return upperBound(BUCKETS - 1);
+    }
+
+    // значения меньше 2·SUB — по корзине на микросекунду, дальше SUB корзин на октаву
+    private static int bucketOf(long micros) {
+        if (micros < 2 * SUB) return (int) micros;
+        int shift = 63 - Long.numberOfLeadingZeros(micros) - SUB_BITS;
+        return Math.min(BUCKETS - 1, shift * SUB + (int) (micros >>> shift));
+    }
+
+    private static long upperBound(int bucket) {
+        if (bucket < 2 * SUB) return bucket;
+        int shift = bucket / SUB - 1;
+        long mantissa = bucket - (long) shift * SUB;
+        return ((mantissa + 1) << shift) - 1;
+    }
+}
@@ -0,0 +1,288 @@
+package org.example.kriegspiel.net.load;
+
+import org.example.kriegspiel.log.EventLog;
+import org.example.kriegspiel.net.server.GameServer;
+import org.example.kriegspiel.net.server.ServerMain;
+
+import com.sun.management.OperatingSystemMXBean;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.lang.management.ThreadInfo;
+import java.lang.management.ThreadMXBean;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.URI;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Генератор нагрузки: N партий ботов ({@link Bot}) на localhost, по два
+ * соединения на комнату, случайные ходы с заданным темпом. Раз в интервал
+ * печатает actions/sec, задержку доставки STATE/DELTA (p50/p99/p999),
+ * байты на ход и потребление CPU/heap сервером.
+ *
+ * <pre>
+ * java -cp ... org.example.kriegspiel.net.load.LoadGenerator --matches 1000 --rate 2 --duration 60
+ * </pre>
+ *
+ * Параметры:
+ * <ul>
+ *   <li>{@code --matches N} — число партий (2N соединений), по умолчанию 100;</li>
+ *   <li>{@code --rate R} — ходов в секунду на партию, 0 — без пауз; по умолчанию 2;</li>
+ *   <li>{@code --duration S}, {@code --report S} — длительность и интервал отчёта в секундах;</li>
+ *   <li>{@code --size W} — размер карты сервера;</li>
+ *   <li>{@code --server inproc|fork|external} — GameServer в этом процессе (по умолчанию),
+ *       отдельный процесс {@link ServerMain} или уже запущенный сервер;</li>
+ *   <li>{@code --port P}, {@code --json}, {@code --full-state} — порт; отключить
+ *       двоичный формат; отключить DELTA;</li>
+ *   <li>{@code --journal DIR} — сервер (inproc/fork) пишет журналы партий в DIR.</li>
+ * </ul>
+ *
+ * События inproc-сервера пишутся, только если задано {@code -Dkriegspiel.log.file}
+ * (остальные {@code kriegspiel.log.*} — см. {@link EventLog}).
+ *
+ * CPU сервера: для inproc — процессорное время всего процесса за вычетом
+ * потоков ботов (клиентские потоки Java-WebSocket и load-scheduler), то есть
+ * вместе с акторами партий, потоками outbound, GC и JIT; для fork — всего
+ * дочернего процесса. Heap известен только для inproc и включает ботов.
+ */
+public final class LoadGenerator {
+
+    private int matches = 100;
+    private double rate = 2;
+    private int durationSec = 60;
+    private int reportSec = 5;
+    private int size = 12;
+    private int port = 18080;
+    private String serverMode = "inproc";
+    private String journalDir = null;
+    private boolean binary = true;
+    private boolean deltas = true;
+
+    private final PrintStream out = System.out;
+    private final ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+    private final MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+    // процессорное время потоков ботов при прошлом замере, по id потока
+    private final Map<Long, Long> clientThreadCpu = new HashMap<>();
+    private long processCpuNanos;
+    private Process forked;
+    private long forkedCpuNanos;
+
+    public static void main(String[] args) throws Exception {
+        LoadGenerator gen = new LoadGenerator();
+        gen.parse(args);
+        gen.run();
+        System.exit(0);
+    }
+
+    private void parse(String[] args) {
+        for (int i = 0; i < args.length; i++) {
+            String arg = args[i];
+            switch (arg) {
+                case "--matches" -> matches = Integer.parseInt(args[++i]);
+                case "--rate" -> rate = Double.parseDouble(args[++i]);
+                case "--duration" -> durationSec = Integer.parseInt(args[++i]);
+                case "--report" -> reportSec = Integer.parseInt(args[++i]);
+                case "--size" -> size = Integer.parseInt(args[++i]);
+                case "--port" -> port = Integer.parseInt(args[++i]);
+                case "--server" -> serverMode = args[++i];
+                case "--json" -> binary = false;
+                case "--full-state" -> deltas = false;
+                case "--journal" -> journalDir = args[++i];
+                default -> throw new IllegalArgumentException("Неизвестный параметр: " + arg);
+            }
+        }
+    }
+
+    private void run() throws Exception {
+        GameServer server = startServer();
+        waitForPort(Duration.ofSeconds(30));
+
+        int cores = Runtime.getRuntime().availableProcessors();
+        ScheduledExecutorService scheduler = Executors.newScheduledThreadPool(Math.max(2, cores / 2), r -> {
+            Thread t = new Thread(r, "load-scheduler");
+            t.setDaemon(true);
+            return t;
+        });
+
+        LoadStats stats = new LoadStats();
+        long thinkNanos = rate > 0 ? (long) (1_000_000_000L / rate) : 0;
+        URI uri = URI.create("ws://localhost:" + port);
+        List<Match> all = new ArrayList<>(matches);
+        for (int i = 0; i < matches; i++) {
+            Match m = new Match("load-" + i, stats, scheduler, thinkNanos);
+            m.setBots(new Bot(m, uri, "bot-" + i + "a", binary, deltas, 2L * i),
+                    new Bot(m, uri, "bot-" + i + "b", binary, deltas, 2L * i + 1));
+            all.add(m);
+        }
+
+        out.printf("load: %d matches (%d connections), rate %s/match, map %dx%d, %s%s, server %s%n",
+                matches, 2 * matches, rate > 0 ? rate : "max", size, size,
+                binary ? "binary" : "json", deltas ? "+delta" : "", serverMode);
+
+        // подключаемся пачками, чтобы не упереться в backlog accept сервера
+        for (int i = 0; i < all.size(); i++) {
+            all.get(i).connect();
+            if (i % 50 == 49) Thread.sleep(20);
+        }
+
+        LatencyHistogram total = new LatencyHistogram();
+        LatencyHistogram interval = new LatencyHistogram();
+        Snapshot prev = new Snapshot(stats);
+        long start = System.nanoTime();
+        long prevTime = start;
+        sampleServerCpu();
+        out.println("   time   actions/s  rejected   p50(us)   p99(us)  p999(us)  bytes/turn  games  srvCPU%  heapMB");
+        while (System.nanoTime() - start < TimeUnit.SECONDS.toNanos(durationSec)) {
+            Thread.sleep(reportSec * 1000L);
+            long now = System.nanoTime();
+            double sec = (now - prevTime) / 1e9;
+            Snapshot cur = new Snapshot(stats);
+            stats.fanout.drainTo(interval);
+            interval.addTo(total);
+
+            long actions = cur.actions - prev.actions;
+            long rejected = cur.rejected - prev.rejected;
+            long accepted = actions - rejected;
+            double cpu = 100.0 * sampleServerCpu() / (now - prevTime);
+            out.printf("%6.0fs %11.0f %9d %9d %9d %9d %11s %6d %8s %7s%n",
+                    (now - start) / 1e9, accepted / sec, rejected,
+                    interval.percentileMicros(0.50), interval.percentileMicros(0.99),
+                    interval.percentileMicros(0.999),
+                    accepted > 0 ? String.valueOf((cur.bytesIn - prev.bytesIn) / accepted) : "-",
+                    cur.games - prev.games,
+                    cpu >= 0 ? String.format("%.0f", cpu) : "-",
+                    server != null ? String.valueOf(memory.getHeapMemoryUsage().getUsed() >> 20) : "-");
+
+            interval = new LatencyHistogram();
+            prev = cur;
+            prevTime = now;
+        }
+
+        double elapsed = (System.nanoTime() - start) / 1e9;
+        Snapshot end = new Snapshot(stats);
+        long accepted = end.actions - end.rejected;
+        out.printf("total: %d actions (%.0f/s), %d rejected, %d games, %d resyncs, %.0f bytes/turn%n",
+                accepted, accepted / elapsed, end.rejected, end.games, end.resyncs,
+                accepted > 0 ? (double) end.bytesIn / accepted : 0.0);
+        out.printf("fan-out latency: p50 %d us, p99 %d us, p999 %d us (%d samples)%n",
+                total.percentileMicros(0.50), total.percentileMicros(0.99),
+                total.percentileMicros(0.999), total.count());
+        if (server != null) {
+            GameServer.OutboundStats ob = server.getOutboundStats();
+            out.printf("outbound: %d frames sent, %d coalesced, %d clients dropped, max queue %d%n",
+                    ob.sentFrames(), ob.coalescedFrames(), ob.droppedClients(), ob.maxQueueDepth());
+        }
+
+        for (Match m : all) m.stop();
+        scheduler.shutdownNow();
+        if (server != null) server.stop(1000);
+        if (forked != null) forked.destroy();
+    }
+
+    private GameServer startServer() throws IOException {
+        switch (serverMode) {
+            case "inproc" -> {
+                // события сервера — только в файл из kriegspiel.log.file, в отчёт не смешиваются
+                EventLog log = (System.getProperty("kriegspiel.log.file") != null)
+                        ? EventLog.fromSystemProperties() : EventLog.off();
+                GameServer server = new GameServer(port, size, size,
+                        (journalDir != null) ? Path.of(journalDir) : null, log);
+                server.setReuseAddr(true);
+                server.start();
+                return server;
+            }
+            case "fork" -> {
+                String java = Path.of(System.getProperty("java.home"), "bin", "java").toString();
+                List<String> command = new ArrayList<>(List.of(java, "-cp", System.getProperty("java.class.path"),
+                        ServerMain.class.getName(), String.valueOf(port), String.valueOf(size), String.valueOf(size)));
+                if (journalDir != null) command.add(journalDir);
+                forked = new ProcessBuilder(command)
+                        .redirectOutput(ProcessBuilder.Redirect.DISCARD)
+                        .redirectError(ProcessBuilder.Redirect.INHERIT)
+                        .start();
+                return null;
+            }
+            case "external" -> {
+                return null;
+            }
+            default -> throw new IllegalArgumentException("--server: inproc, fork или external");
+        }
+    }
+
+    private void waitForPort(Duration timeout) throws InterruptedException {
+        long deadline = System.nanoTime() + timeout.toNanos();
+        while (true) {
+            try (Socket s = new Socket()) {
+                s.connect(new InetSocketAddress("localhost", port), 1000);
+                return;
+            } catch (IOException e) {
+                if (System.nanoTime() > deadline) {
+                    throw new IllegalStateException("Сервер не слушает порт " + port);
+                }
+                Thread.sleep(100);
+            }
+        }
+    }
+
+    /**
+     * Процессорное время сервера с прошлого вызова, нс; -1, если неизвестно.
+     */
+    private long sampleServerCpu() {
+        if (forked != null) {
+            long cpu = forked.info().totalCpuDuration().map(Duration::toNanos).orElse(-1L);
+            if (cpu < 0) return -1;
+            long delta = cpu - forkedCpuNanos;
+            forkedCpuNanos = cpu;
+            return delta;
+        }
+        if (!"inproc".equals(serverMode) || !threads.isThreadCpuTimeSupported()
+                || !(ManagementFactory.getOperatingSystemMXBean() instanceof OperatingSystemMXBean os)) {
+            return -1;
+        }
+        long process = os.getProcessCpuTime();
+        if (process < 0) return -1;
+
+        // сервер работает в акторах партий и пулах отправки, поэтому вычитаем ботов, а не суммируем сервер
+        long clients = 0;
+        for (ThreadInfo info : threads.getThreadInfo(threads.getAllThreadIds())) {
+            if (info == null) continue;
+            String name = info.getThreadName();
+            if (!name.startsWith("WebSocketConnectReadThread") && !name.startsWith("WebSocketWriteThread")
+                    && !name.equals("load-scheduler")) continue;
+            long cpu = threads.getThreadCpuTime(info.getThreadId());
+            if (cpu < 0) continue;
+            Long before = clientThreadCpu.put(info.getThreadId(), cpu);
+            clients += cpu - (before != null ? before : 0);
+        }
+        long delta = process - processCpuNanos - clients;
+        processCpuNanos = process;
+        return Math.max(0, delta);
+    }
+
+    private static final class Snapshot {
+        final long actions;
+        final long rejected;
+        final long bytesIn;
+        final long games;
+        final long resyncs;
+
+        Snapshot(LoadStats s) {
+            actions = s.actions.sum();
+            rejected = s.rejected.sum();
+            bytesIn = s.bytesIn.sum();
+            games = s.games.sum();
+            resyncs = s.resyncs.sum();
+        }
+    }
+}
@@ -0,0 +1,20 @@
+package org.example.kriegspiel.net.load;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Общие счётчики всех ботов генератора нагрузки.
+ */
+final class LoadStats {
+    // отправленные ACTION и отклонённые сервером (ERROR в ответ)
+    final LongAdder actions = new LongAdder();
+    final LongAdder rejected = new LongAdder();
+    // входящий трафик ботов: байты кадров и число сообщений
+    final LongAdder bytesIn = new LongAdder();
+    final LongAdder messagesIn = new LongAdder();
+    // доигранные (или зашедшие в тупик) партии и запросы RESYNC
+    final LongAdder games = new LongAdder();
+    final LongAdder resyncs = new LongAdder();
+    // от отправки ACTION до получения нового STATE/DELTA каждым участником партии
+    final LatencyHistogram fanout = new LatencyHistogram();
+}
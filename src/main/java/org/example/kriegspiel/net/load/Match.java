@@ -0,0 +1,85 @@
+package org.example.kriegspiel.net.load;
+
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Пара ботов в одной комнате. Когда партия закончилась или зашла в тупик,
+ * оба бота переподключаются и JOIN в ту же комнату начинает новую партию.
+ */
+final class Match {
+
+    final String roomId;
+    final LoadStats stats;
+    private final ScheduledExecutorService scheduler;
+    private final long thinkNanos;
+    private final Bot[] bots = new Bot[2];
+
+    // seq состояния, которое должно прийти после последнего ACTION, и время его отправки
+    private volatile int expectedSeq = -1;
+    private volatile long actionSentNanos;
+
+    private final AtomicBoolean restarting = new AtomicBoolean();
+    private volatile boolean stopped;
+
+    Match(String roomId, LoadStats stats, ScheduledExecutorService scheduler, long thinkNanos) {
+        this.roomId = roomId;
+        this.stats = stats;
+        this.scheduler = scheduler;
+        this.thinkNanos = thinkNanos;
+    }
+
+    void setBots(Bot first, Bot second) {
+        bots[0] = first;
+        bots[1] = second;
+    }
+
+    void connect() {
+        for (Bot bot : bots) bot.connect();
+    }
+
+    /**
+     * Ход бота после паузы на «обдумывание» (задаётся темпом генератора).
+     */
+    void scheduleTurn(Bot bot) {
+        if (stopped) return;
+        scheduler.schedule(bot::act, thinkNanos, TimeUnit.NANOSECONDS);
+    }
+
+    void actionSent(int nextSeq) {
+        actionSentNanos = System.nanoTime();
+        expectedSeq = nextSeq;
+    }
+
+    void stateReceived(int seq) {
+        if (seq == expectedSeq) {
+            stats.fanout.recordNanos(System.nanoTime() - actionSentNanos);
+        }
+    }
+
+    /**
+     * Новая партия: оба соединения закрываются и открываются заново.
+     * Повторные вызовы до завершения перезапуска игнорируются.
+     */
+    void restart() {
+        if (stopped || !restarting.compareAndSet(false, true)) return;
+        stats.games.increment();
+        expectedSeq = -1;
+        scheduler.execute(() -> {
+            try {
+                for (Bot bot : bots) bot.close();
+                if (!stopped) {
+                    for (Bot bot : bots) bot.connect();
+                }
+            } finally {
+                restarting.set(false);
+            }
+        });
+    }
+
+    void stop() {
+        stopped = true;
+        for (Bot bot : bots) bot.close();
+    }
+}
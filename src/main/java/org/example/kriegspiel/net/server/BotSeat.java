@@ -0,0 +1,35 @@
+package org.example.kriegspiel.net.server;
+
+import org.example.kriegspiel.Game;
+import org.example.kriegspiel.ai.AlphaBetaSearch;
+import org.example.kriegspiel.ai.SearchPosition;
+import org.example.kriegspiel.model.Player;
+
+/**
+ * Бот сервера на месте игрока. Позиция снимается под монитором комнаты,
+ * сам поиск идёт в пуле {@link AlphaBetaSearch} и комнату не держит:
+ * результат уходит в почтовый ящик комнаты и применяется через
+ * {@link GameRoom#applyBotTurn}.
+ */
+final class BotSeat {
+
+    static final String NAME = "Бот";
+
+    private final AlphaBetaSearch search;
+    private final long budgetNanos;
+
+    BotSeat(AlphaBetaSearch search, long budgetNanos) {
+        this.search = search;
+        this.budgetNanos = budgetNanos;
+    }
+
+    /**
+     * Вызывается под монитором {@code room}, когда ход перешёл к боту.
+     */
+    void requestTurn(GameRoom room, Game game, int seat, int seq) {
+        Player me = (seat == 1) ? game.getPlayer1() : game.getPlayer2();
+        SearchPosition position = SearchPosition.fromView(game, me);
+        search.searchAsync(position, budgetNanos)
+                .whenComplete((result, ex) -> room.post(() -> room.applyBotTurn(game, seq, position, result)));
+    }
+}
@@ -0,0 +1,649 @@
+package org.example.kriegspiel.net.server;
+
+import org.example.kriegspiel.ActionBuffer;
+import org.example.kriegspiel.Game;
+import org.example.kriegspiel.ai.SearchPosition;
+import org.example.kriegspiel.ai.SearchResult;
+import org.example.kriegspiel.jfr.SendStateEvent;
+import org.example.kriegspiel.journal.JournalStore;
+import org.example.kriegspiel.journal.MatchJournal;
+import org.example.kriegspiel.log.EventLog;
+import org.example.kriegspiel.map.GameMap;
+import org.example.kriegspiel.model.Player;
+import org.example.kriegspiel.model.unit.Unit;
+import org.example.kriegspiel.net.*;
+
+import org.java_websocket.WebSocket;
+
+import java.io.IOException;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Одна партия на сервере: два места, своя {@link Game} и собственный монитор.
+ * Все изменения состояния комнаты идут под {@code synchronized (this)},
+ * поэтому действия в разных комнатах никогда не конкурируют друг с другом.
+ * ACTION, RESYNC и ходы бота выполняет актор комнаты ({@link #post}), не поток
+ * WebSocket; JOIN, обрыв и возврат, результат которых нужен серверу сразу,
+ * идут в вызывающем потоке под тем же монитором.
+ *
+ * <p>При обрыве соединения игрока место сохраняется ({@link #park}), пока
+ * он не вернётся по токену из ROLE ({@link #resume}) или не истечёт время
+ * ожидания ({@link #expire}).
+ *
+ * <p>На ход даётся {@link #TURN_MILLIS}; не успевший игрок пропускает ход.
+ * Часы хода — один таймер на комнату в общем {@link TimingWheel}: он не
+ * перевзводится на каждом ходу, а при срабатывании сверяется с началом
+ * текущего хода.
+ */
+final class GameRoom {
+
+    static final long TURN_MILLIS = 60_000;
+
+    private final String id;
+    private final int width;
+    private final int height;
+    private final MessageSender sender;
+    // null — журналы партий не ведутся
+    private final JournalStore journals;
+    // null — без часов хода
+    private final TimingWheel timers;
+    private final EventLog log;
+    private final MatchActor actor;
+
+    private static final SecureRandom TOKENS = new SecureRandom();
+
+    // участники комнаты: место (1 или 2) и отправленное им состояние
+    private final Map<WebSocket, Viewer> members = new ConcurrentHashMap<>();
+    // участник на месте 1 и 2, в том числе ждущий переподключения; бот сюда не входит
+    private final Viewer[] seated = new Viewer[3];
+
+    private String p1Name = null;
+    private String p2Name = null;
+
+    private Game game = null;
+    // партий, начатых в комнате; с id комнаты даёт метку партии для JFR
+    private int matches = 0;
+    private MatchJournal journal = null;
+    // номер последнего разосланного состояния (GameStateDTO.seq / StateDelta.seq)
+    private int stateSeq = 0;
+
+    // бот сервера и его место; null — оба места за людьми
+    private BotSeat bot = null;
+    private int botSeat = 0;
+    // место 1 комнаты против бота держится за её создателем до его JOIN
+    private boolean ownerPending;
+
+    // начало текущего хода и последнего действия людей (System.nanoTime())
+    private long turnStarted;
+    private long lastActivity = System.nanoTime();
+    private boolean turnTimerArmed;
+
+    GameRoom(String id, int width, int height, MessageSender sender) {
+        this(id, width, height, sender, null);
+    }
+
+    GameRoom(String id, int width, int height, MessageSender sender, JournalStore journals) {
+        this(id, width, height, sender, journals, null);
+    }
+
+    GameRoom(String id, int width, int height, MessageSender sender, JournalStore journals, TimingWheel timers) {
+        this.id = id;
+        this.width = width;
+        this.height = height;
+        this.sender = sender;
+        this.journals = journals;
+        this.timers = timers;
+        this.log = sender.log();
+        this.actor = new MatchActor(id, log);
+    }
+
+    String getId() {
+        return id;
+    }
+
+    /**
+     * Задача в почтовый ящик партии; задачи одной комнаты выполняются по очереди.
+     */
+    void post(Runnable task) {
+        actor.post(task);
+    }
+
+    synchronized boolean hasFreeSeat() {
+        return !ownerPending && (p1Name == null || p2Name == null);
+    }
+
+    /**
+     * Ни одного соединения и ни одного места, ждущего возврата игрока.
+     */
+    synchronized boolean isEmpty() {
+        return members.isEmpty() && !isParked(1) && !isParked(2);
+    }
+
+    /**
+     * Сколько прошло с последнего JOIN, возврата или принятого хода игрока.
+     */
+    synchronized long idleMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - lastActivity);
+    }
+
+    private boolean isParked(int seat) {
+        return seated[seat] != null && seated[seat].parked;
+    }
+
+    /**
+     * Id комнаты из токена возврата; null — токен не нашего формата.
+     */
+    static String roomOfToken(String token) {
+        int dot = token.lastIndexOf('.');
+        return (dot <= 0) ? null : token.substring(0, dot);
+    }
+
+    // токен начинается с id комнаты: по нему сервер находит комнату при возврате
+    private String newToken() {
+        byte[] random = new byte[16];
+        TOKENS.nextBytes(random);
+        return id + "." + HexFormat.of().formatHex(random);
+    }
+
+    /**
+     * Занимает свободное место без привязки к соединению.
+     * Когда заняты оба места, создаётся новая партия.
+     *
+     * @return номер места (1 или 2) или 0, если комната заполнена
+     */
+    synchronized int takeSeat(String name) {
+        int seat;
+        if (p1Name == null) {
+            p1Name = name;
+            seat = 1;
+        } else if (p2Name == null) {
+            p2Name = name;
+            seat = 2;
+        } else {
+            return 0;
+        }
+
+        if (p1Name != null && p2Name != null && game == null) {
+            game = new Game(width, height, p1Name, p2Name);
+            game.getMap().setMatchId(id + "#" + (++matches));
+            stateSeq = 0;
+            openJournal();
+        }
+        return seat;
+    }
+
+    /**
+     * JOIN в эту комнату.
+     *
+     * @return номер места (1 или 2) или 0, если комната заполнена
+     */
+    synchronized int join(WebSocket conn, String name, int capabilities) {
+        if (ownerPending) {
+            return 0;
+        }
+        boolean wasStarted = game != null;
+        int seat = takeSeat(name);
+        if (seat == 0) {
+            return 0;
+        }
+        Viewer viewer = new Viewer(seat, (capabilities & Protocol.CAP_DELTA) != 0);
+        viewer.token = newToken();
+        seated[seat] = viewer;
+        members.put(conn, viewer);
+        lastActivity = System.nanoTime();
+
+        sender.send(conn, Protocol.TYPE_ROLE, new RoleMessage(seat, id, viewer.token));
+        if (game == null) {
+            sendInfo(conn, "Вы присоединились как Игрок " + seat + " (комната " + id + "). Ждём второго игрока...");
+        } else {
+            sendInfo(conn, "Вы присоединились как Игрок " + seat + " (комната " + id + "). Запускаем игру...");
+        }
+        broadcastInfo("Игрок " + seat + ": " + name);
+        if (bot != null) {
+            broadcastInfo("Игрок " + botSeat + ": " + BotSeat.NAME);
+        }
+
+        if (game != null && !wasStarted) {
+            broadcastInfo("Игра началась! Ход: " + game.getCurrentPlayer().getName());
+            broadcastState();
+        } else if (game != null) {
+            sendState(conn);
+        }
+        return seat;
+    }
+
+    /**
+     * Комната против бота: бот занимает место 2, место 1 до {@link #joinWithBot}
+     * не достаётся никому, даже JOIN с id этой комнаты. Вызывается до того,
+     * как комната попадёт в реестр.
+     */
+    synchronized void reserveForBot(BotSeat bot) {
+        this.bot = bot;
+        this.botSeat = 2;
+        p2Name = BotSeat.NAME;
+        ownerPending = true;
+    }
+
+    /**
+     * JOIN создателя комнаты против бота (см. {@link #reserveForBot}); партия начинается сразу.
+     *
+     * @return номер места (1) или 0, если комната не ждёт создателя
+     */
+    synchronized int joinWithBot(WebSocket conn, String name, int capabilities) {
+        if (!ownerPending) {
+            return 0;
+        }
+        ownerPending = false;
+        return join(conn, name, capabilities);
+    }
+
+    /**
+     * Соединение покинуло комнату. Если ушёл игрок — партия сбрасывается,
+     * остальные участники выходят из комнаты и должны отправить JOIN снова.
+     *
+     * @return соединения, которые были выведены из комнаты вместе с ушедшим
+     */
+    synchronized List<WebSocket> leave(WebSocket conn) {
+        if (members.remove(conn) == null) {
+            return new ArrayList<>();
+        }
+        return reset("Игрок отключился. Игра остановлена. Можно подключиться заново.");
+    }
+
+    /**
+     * Соединение игрока оборвалось во время партии: место, baseline и история
+     * DELTA сохраняются до {@link #resume} или {@link #expire}. Партия идёт
+     * дальше, DELTA для отключившегося строятся как обычно.
+     *
+     * @return токен места или null, если ждать нечего (партия не идёт) —
+     *         тогда соединение выходит через {@link #leave}
+     */
+    synchronized String park(WebSocket conn, long graceMillis) {
+        Viewer viewer = members.get(conn);
+        if (viewer == null || game == null || game.isGameOver()) {
+            return null;
+        }
+        members.remove(conn);
+        viewer.parked = true;
+        broadcastInfo("Игрок " + viewer.seat + " отключился. Ждём переподключения "
+                + TimeUnit.MILLISECONDS.toSeconds(graceMillis) + " с...");
+        return viewer.token;
+    }
+
+    /**
+     * Время ожидания вышло. Если место с этим токеном так и не вернулось,
+     * партия сбрасывается, как при {@link #leave}.
+     *
+     * @return соединения, выведенные из комнаты
+     */
+    synchronized List<WebSocket> expire(String token) {
+        Viewer viewer = seatByToken(token);
+        if (viewer == null || !viewer.parked) {
+            return new ArrayList<>();
+        }
+        return reset("Игрок отключился. Игра остановлена. Можно подключиться заново.");
+    }
+
+    /**
+     * В комнате давно ничего не происходит: партия сбрасывается, как при
+     * {@link #leave}, участники выходят из комнаты.
+     *
+     * @return соединения, выведенные из комнаты
+     */
+    synchronized List<WebSocket> evict(long idleMillis) {
+        return reset("Нет действий дольше " + TimeUnit.MILLISECONDS.toMinutes(idleMillis)
+                + " мин. Игра остановлена. Можно подключиться заново.");
+    }
+
+    /**
+     * Возврат игрока на место по токену из ROLE. Клиент получает новый токен
+     * и недостающие DELTA после {@code lastSeq}; полный STATE — только если
+     * история их уже не хранит или клиент не принимает DELTA. Если место ещё
+     * числится за прежним соединением (обрыв сервер не заметил), оно закрывается.
+     *
+     * @return номер места или 0, если токен не действует
+     */
+    synchronized int resume(WebSocket conn, String token, int lastSeq, int capabilities) {
+        Viewer viewer = seatByToken(token);
+        if (viewer == null || game == null) {
+            return 0;
+        }
+
+        WebSocket previous = null;
+        for (Map.Entry<WebSocket, Viewer> e : members.entrySet()) {
+            if (e.getValue() == viewer) previous = e.getKey();
+        }
+        if (previous != null) {
+            members.remove(previous);
+        }
+
+        boolean deltas = (capabilities & Protocol.CAP_DELTA) != 0;
+        if (deltas != viewer.deltas) {
+            viewer = new Viewer(viewer.seat, deltas);
+            seated[viewer.seat] = viewer;
+        }
+        viewer.parked = false;
+        viewer.token = newToken();
+        lastActivity = System.nanoTime();
+
+        broadcastInfo("Игрок " + viewer.seat + " вернулся.");
+        members.put(conn, viewer);
+        sender.send(conn, Protocol.TYPE_ROLE, new RoleMessage(viewer.seat, id, viewer.token));
+        sendInfo(conn, "Вы вернулись в игру как Игрок " + viewer.seat + " (комната " + id + ").");
+
+        List<StateDelta> missed = viewer.deltasSince(lastSeq);
+        if (missed == null) {
+            sendSnapshot(conn, viewer);
+        } else {
+            for (StateDelta delta : missed) {
+                sender.send(conn, Protocol.TYPE_DELTA, delta);
+            }
+        }
+
+        if (previous != null) {
+            previous.close();
+        }
+        return viewer.seat;
+    }
+
+    private Viewer seatByToken(String token) {
+        for (int seat = 1; seat <= 2; seat++) {
+            if (seated[seat] != null && seated[seat].token.equals(token)) return seated[seat];
+        }
+        return null;
+    }
+
+    // партия сбрасывается, остальные участники выходят из комнаты
+    private List<WebSocket> reset(String message) {
+        // Для простого учебного мультиплеера: если кто-то вышел — сбрасываем матч.
+        broadcastInfo(message);
+        game = null;
+        closeJournal();
+        p1Name = null;
+        p2Name = null;
+        bot = null;
+        botSeat = 0;
+        ownerPending = false;
+        seated[1] = null;
+        seated[2] = null;
+
+        List<WebSocket> evicted = new ArrayList<>();
+        for (WebSocket c : new ArrayList<>(members.keySet())) {
+            members.remove(c);
+            evicted.add(c);
+            sendInfo(c, "Лобби сброшено. Отправьте JOIN снова.");
+        }
+        return evicted;
+    }
+
+    synchronized void handleAction(WebSocket conn, ActionRequest action) {
+        Viewer viewer = members.get(conn);
+        if (viewer == null) {
+            sendError(conn, "not-joined", "Сначала отправьте JOIN.");
+            return;
+        }
+
+        try {
+            applyAction(viewer.seat, action);
+            lastActivity = System.nanoTime();
+            broadcastState();
+        } catch (IllegalArgumentException | IllegalStateException ex) {
+            sendError(conn, "rule", ex.getMessage());
+        } catch (RuntimeException ex) {
+            // ошибка сервера, а не нарушение правил: клиент не должен остаться без ответа
+            log.error("action", id, ex.toString());
+            sendError(conn, "internal", "Внутренняя ошибка сервера.");
+        }
+    }
+
+    /**
+     * Проверяет и применяет действие игрока {@code playerIdx}, затем передаёт ход.
+     * Не выполняет сетевых операций; при нарушении правил бросает исключение
+     * с текстом для игрока.
+     */
+    synchronized void applyAction(int playerIdx, ActionRequest action) {
+        if (game == null) {
+            throw new IllegalStateException("Игра ещё не началась. Ждём подключения 2 игроков.");
+        }
+        if (action == null || action.action == null) {
+            throw new IllegalArgumentException("Некорректный ACTION.");
+        }
+
+        Player current = game.getCurrentPlayer();
+        int currentIdx = (current == game.getPlayer1()) ? 1 : 2;
+
+        if (playerIdx != currentIdx) {
+            throw new IllegalArgumentException("Сейчас ходит другой игрок.");
+        }
+
+        GameMap map = game.getMap();
+        Unit fromUnit = map.getUnitAt(action.fromX, action.fromY);
+        if (fromUnit == null) {
+            throw new IllegalArgumentException("В выбранной клетке нет юнита.");
+        }
+
+        // защитная проверка: нельзя двигать/атаковать чужим юнитом
+        Player owner = fromUnit.getOwner();
+        Player expectedOwner = (playerIdx == 1) ? game.getPlayer1() : game.getPlayer2();
+        if (owner != expectedOwner) {
+            throw new IllegalArgumentException("Это не ваш юнит.");
+        }
+
+        switch (action.action) {
+            case Protocol.ACTION_MOVE -> game.moveUnit(fromUnit, action.toX, action.toY);
+            case Protocol.ACTION_ATTACK -> {
+                Unit target = map.getUnitAt(action.toX, action.toY);
+                if (target == null) throw new IllegalArgumentException("Цель для атаки отсутствует.");
+                game.attack(fromUnit, target);
+            }
+            default -> throw new IllegalArgumentException("Неизвестное действие: " + action.action);
+        }
+        game.endTurn();
+        journal(playerIdx, Protocol.ACTION_MOVE.equals(action.action) ? ActionBuffer.MOVE : ActionBuffer.ATTACK,
+                action.fromX, action.fromY, action.toX, action.toY);
+    }
+
+    /**
+     * Клиент потерял последовательность DELTA — отправляем полный STATE.
+     */
+    synchronized void resync(WebSocket conn) {
+        Viewer viewer = members.get(conn);
+        if (viewer == null) {
+            sendError(conn, "not-joined", "Сначала отправьте JOIN.");
+            return;
+        }
+        viewer.resetBaseline();
+        sendState(conn);
+    }
+
+    /**
+     * Итог поиска бота (в акторе комнаты). Применяется, только если партия и её
+     * состояние не изменились с момента запроса; ходы, отвергнутые правилами
+     * (позиция бота не знает ловушек и местности в тумане), пропускаются в пользу
+     * следующих по оценке. Без допустимых действий бот пропускает ход.
+     */
+    synchronized void applyBotTurn(Game game, int seq, SearchPosition position, SearchResult result) {
+        if (bot == null || this.game != game || stateSeq != seq) {
+            return;
+        }
+
+        boolean applied = false;
+        if (result != null) {
+            int width = position.getWidth();
+            for (long a : result.rankedActions) {
+                int kind = SearchPosition.kindOf(a);
+                if (kind == SearchPosition.PASS) break;
+                int unit = SearchPosition.unitOf(a);
+                int cell = SearchPosition.cellOf(a);
+                ActionRequest request = new ActionRequest(
+                        kind == SearchPosition.ATTACK ? Protocol.ACTION_ATTACK : Protocol.ACTION_MOVE,
+                        position.getUnitX(unit), position.getUnitY(unit), cell % width, cell / width);
+                try {
+                    applyAction(botSeat, request);
+                    applied = true;
+                    break;
+                } catch (IllegalArgumentException ignored) {
+                    // следующее по оценке
+                }
+            }
+        }
+        if (!applied) {
+            game.endTurn();
+            journal(botSeat, ActionBuffer.PASS, 0, 0, 0, 0);
+            broadcastInfo(BotSeat.NAME + " пропускает ход.");
+        }
+        broadcastState();
+    }
+
+    /**
+     * Сработал таймер хода (в акторе комнаты). Ход сменился после его постановки —
+     * таймер взводится на остаток нового хода; иначе ход пропускается.
+     */
+    synchronized void turnTimerFired() {
+        turnTimerArmed = false;
+        if (game == null || game.isGameOver()) {
+            return;
+        }
+        long left = TURN_MILLIS - TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - turnStarted);
+        if (left > 0) {
+            armTurnTimer(left);
+            return;
+        }
+        int currentIdx = (game.getCurrentPlayer() == game.getPlayer1()) ? 1 : 2;
+        game.endTurn();
+        journal(currentIdx, ActionBuffer.PASS, 0, 0, 0, 0);
+        broadcastInfo("Время хода Игрока " + currentIdx + " вышло, ход переходит сопернику.");
+        broadcastState();
+    }
+
+    private void armTurnTimer(long delayMillis) {
+        turnTimerArmed = true;
+        timers.schedule(() -> post(this::turnTimerFired), delayMillis, TimeUnit.MILLISECONDS);
+    }
+
+    private void broadcastState() {
+        stateSeq++;
+        turnStarted = System.nanoTime();
+        if (timers != null && !turnTimerArmed && game != null && !game.isGameOver()) {
+            armTurnTimer(TURN_MILLIS);
+        }
+        for (WebSocket c : members.keySet()) {
+            sendState(c);
+        }
+        // отключившимся DELTA не отправляются, но копятся в истории для возврата
+        for (int seat = 1; seat <= 2; seat++) {
+            if (game != null && isParked(seat) && seated[seat].canReceiveDelta()) {
+                seated[seat].nextDelta(game, stateSeq);
+            }
+        }
+        if (bot != null && game != null && !game.isGameOver()) {
+            int currentIdx = (game.getCurrentPlayer() == game.getPlayer1()) ? 1 : 2;
+            if (currentIdx == botSeat) {
+                bot.requestTurn(this, game, botSeat, stateSeq);
+            }
+        }
+    }
+
+    /**
+     * Клиентам с CAP_DELTA после первого полного STATE отправляем только DELTA,
+     * пока они успевают их принимать.
+     */
+    private void sendState(WebSocket conn) {
+        if (game == null) {
+            sendInfo(conn, "Ожидаем второго игрока...");
+            return;
+        }
+
+        Viewer viewer = members.get(conn);
+        if (viewer == null) {
+            sendInfo(conn, "Ожидаем JOIN...");
+            return;
+        }
+
+        SendStateEvent event = new SendStateEvent();
+        event.begin();
+        String type;
+        int bytes;
+        // отстающему клиенту — полный STATE: он заменит в очереди всё неотправленное
+        if (viewer.canReceiveDelta() && !MessageSender.isLagging(conn)) {
+            long start = System.nanoTime();
+            StateDelta delta = viewer.nextDelta(game, stateSeq);
+            sender.metrics().mapper.recordSince(start);
+            type = Protocol.TYPE_DELTA;
+            bytes = sender.send(conn, type, delta);
+        } else {
+            type = Protocol.TYPE_STATE;
+            bytes = sendSnapshot(conn, viewer);
+        }
+        if (event.shouldCommit()) {
+            event.actionType = type;
+            event.payloadBytes = bytes;
+            event.setMap(game.getMap());
+            event.commit();
+        }
+    }
+
+    /**
+     * Отправляем каждому игроку персональный state:
+     * - terrain скрыт вне видимости (туман войны)
+     * - traps не передаются
+     * - enemy units только в видимости
+     */
+    private int sendSnapshot(WebSocket conn, Viewer viewer) {
+        long start = System.nanoTime();
+        GameStateDTO dto = viewer.snapshot(game, stateSeq);
+        sender.metrics().mapper.recordSince(start);
+        return sender.send(conn, Protocol.TYPE_STATE, dto);
+    }
+
+    /**
+     * Журнал новой партии: seed карты и имена, дальше каждое принятое действие.
+     * Ошибка файловой системы не мешает игре — партия идёт без журнала.
+     */
+    private void openJournal() {
+        if (journals == null) return;
+        try {
+            journal = journals.open(id, game.getMap().getSeed(), width, height, p1Name, p2Name);
+        } catch (IOException ex) {
+            log.error("journal", id, ex.getMessage());
+            journal = null;
+        }
+    }
+
+    private void journal(int seat, int kind, int fromX, int fromY, int toX, int toY) {
+        if (journal == null) return;
+        try {
+            journal.append(seat, kind, fromX, fromY, toX, toY);
+        } catch (IOException ex) {
+            log.error("journal", id, ex.getMessage());
+            closeJournal();
+        }
+    }
+
+    private void closeJournal() {
+        if (journal != null) {
+            journals.release(journal);
+            journal = null;
+        }
+    }
+
+    // reason — ключ для метрик, message — текст для игрока
+    private void sendError(WebSocket conn, String reason, String message) {
+        sender.metrics().error(reason);
+        sender.send(conn, Protocol.TYPE_ERROR, new ErrorMessage(message));
+    }
+
+    private void sendInfo(WebSocket conn, String message) {
+        sender.send(conn, Protocol.TYPE_INFO, new InfoMessage(message));
+    }
+
+    private void broadcastInfo(String message) {
+        sender.broadcast(members.keySet(), Protocol.TYPE_INFO, new InfoMessage(message));
+    }
+}
@@ -1,267 +1,355 @@
 package org.example.kriegspiel.net.server;
 
 import com.google.gson.Gson;
-import com.google.gson.GsonBuilder;
-import org.example.kriegspiel.Game;
-import org.example.kriegspiel.map.GameMap;
-import org.example.kriegspiel.model.Player;
-import org.example.kriegspiel.model.unit.Unit;
+import org.example.kriegspiel.ai.AlphaBetaSearch;
+import org.example.kriegspiel.journal.JournalStore;
+import org.example.kriegspiel.log.EventLog;
+import org.example.kriegspiel.metrics.MetricsHttpServer;
+import org.example.kriegspiel.metrics.ServerMetrics;
 import org.example.kriegspiel.net.*;
 
 import org.java_websocket.WebSocket;
 import org.java_websocket.handshake.ClientHandshake;
 import org.java_websocket.server.WebSocketServer;
 
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
 import java.net.InetSocketAddress;
-import java.util.ArrayList;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
-
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+/**
+ * WebSocket-сервер партий. Метрики ({@link #getMetrics()}) регистрируются в JMX
+ * при старте; если задано {@code -Dkriegspiel.metrics.port}, они же отдаются
+ * в формате Prometheus по {@code http://127.0.0.1:<port>/metrics}.
+ */
 public class GameServer extends WebSocketServer {
 
-    private final Gson gson = new GsonBuilder().create();
-
-    private final int width;
-    private final int height;
+    // пишет все типы, а из сообщений клиентов читает только JOIN/ACTION/RESYNC
+    private final Gson gson = NetCodec.serverGson();
+    private final EventLog log;
+    private final ServerMetrics metrics = new ServerMetrics();
+    private final MessageSender sender;
+    private ObjectName mbeanName;
+    private MetricsHttpServer metricsHttp;
+
+    // время на ход бота; поиск идёт в своём пуле, потоки WebSocket не занимает
+    private static final long BOT_BUDGET_NANOS = TimeUnit.MILLISECONDS.toNanos(500);
+    // сколько место игрока ждёт переподключения после обрыва
+    static final long RESUME_GRACE_MILLIS = 30_000;
+    // шаг колеса таймеров: точность часов хода, ожидания возврата и роспуска комнат
+    static final long TIMER_TICK_MILLIS = 10;
 
-    // потокобезопасно, т.к. WebSocketServer может дергать колбэки из разных потоков
-    private final Map<WebSocket, Integer> playerIndexByConn = new ConcurrentHashMap<>();
+    /**
+     * Счётчики исходящих очередей: отправлено кадров, заменено более новым STATE,
+     * отключено медленных клиентов, кадров в очередях сейчас и наибольшая глубина
+     * очереди одного соединения.
+     */
+    public record OutboundStats(long sentFrames, long coalescedFrames, long droppedClients,
+                                int queuedFrames, int maxQueueDepth) {}
 
-    private String p1Name = null;
-    private String p2Name = null;
+    private final RoomRegistry rooms;
+    // null — журналы партий не ведутся
+    private final JournalStore journals;
+    // пул поиска бота; гасится в stop()
+    private final ForkJoinPool botPool = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+    private final BotSeat bot = new BotSeat(new AlphaBetaSearch(botPool), BOT_BUDGET_NANOS);
+    private final TimingWheel timers;
 
-    private Game game = null;
+    // потокобезопасно, т.к. WebSocketServer может дергать колбэки из разных потоков;
+    // у каждой комнаты свой монитор, общего серверного монитора нет
+    private final Map<WebSocket, GameRoom> roomByConn = new ConcurrentHashMap<>();
 
     public GameServer(int port, int width, int height) {
         super(new InetSocketAddress(port));
-        this.width = width;
-        this.height = height;
+        this.log = EventLog.fromSystemProperties();
+        this.timers = new TimingWheel("timers", TIMER_TICK_MILLIS, log);
+        this.sender = new MessageSender(gson, log, metrics);
+        this.journals = null;
+        this.rooms = new RoomRegistry(width, height, sender, null, timers, this::evicted);
+        registerGauges();
+    }
+
+    /**
+     * Сервер, который пишет журнал каждой партии в {@code journalDir}
+     * (см. {@link org.example.kriegspiel.journal.JournalReader}).
+     */
+    public GameServer(int port, int width, int height, Path journalDir) throws IOException {
+        this(port, width, height, journalDir, EventLog.fromSystemProperties());
+    }
+
+    /**
+     * @param journalDir каталог журналов партий; null — без журналов
+     * @param log        события сервера; закрывается в {@link #stop(int)}
+     */
+    public GameServer(int port, int width, int height, Path journalDir, EventLog log) throws IOException {
+        super(new InetSocketAddress(port));
+        this.log = log;
+        this.timers = new TimingWheel("timers", TIMER_TICK_MILLIS, log);
+        this.sender = new MessageSender(gson, log, metrics);
+        this.journals = (journalDir != null) ? new JournalStore(journalDir, log) : null;
+        this.rooms = new RoomRegistry(width, height, sender, journals, timers, this::evicted);
+        registerGauges();
+    }
+
+    private void registerGauges() {
+        metrics.gauge("rooms", "Комнаты на сервере.", rooms::size);
+        metrics.gauge("outbound_queued_frames", "Кадры в исходящих очередях.", () -> sender.stats().queuedFrames());
+        metrics.counter("outbound_coalesced_total", "Кадры, заменённые более новым STATE.",
+                () -> sender.stats().coalescedFrames());
+        metrics.counter("outbound_dropped_clients_total", "Отключённые медленные клиенты.",
+                () -> sender.stats().droppedClients());
+        metrics.gauge("timers", "Взведённые таймеры.", timers::size);
+        metrics.counter("log_dropped_total", "События журнала, не уместившиеся в буфер.", log::getDropped);
+    }
+
+    @Override
+    public void stop(int timeout) throws InterruptedException {
+        super.stop(timeout);
+        if (metricsHttp != null) metricsHttp.stop();
+        if (mbeanName != null) {
+            try {
+                ManagementFactory.getPlatformMBeanServer().unregisterMBean(mbeanName);
+            } catch (JMException ignored) {
+                // уже снят
+            }
+        }
+        timers.stop();
+        botPool.shutdownNow();
+        sender.close();
+        if (journals != null) journals.close();
+        log.close();
+    }
+
+    public OutboundStats getOutboundStats() {
+        return sender.stats();
+    }
+
+    public ServerMetrics getMetrics() {
+        return metrics;
     }
 
     @Override
     public void onStart() {
-        System.out.println("GameServer started on " + getAddress());
+        log.info("start", getAddress(), null);
+        try {
+            mbeanName = new ObjectName("org.example.kriegspiel:type=GameServer,port=" + getPort());
+            ManagementFactory.getPlatformMBeanServer().registerMBean(metrics, mbeanName);
+        } catch (JMException ex) {
+            mbeanName = null;
+            log.warn("jmx", null, ex.toString());
+        }
+        String port = System.getProperty("kriegspiel.metrics.port");
+        if (port != null) {
+            try {
+                metricsHttp = new MetricsHttpServer(Integer.parseInt(port), metrics);
+                metricsHttp.start();
+                log.info("metrics", metricsHttp.getAddress(), null);
+            } catch (IOException ex) {
+                log.warn("metrics", null, ex.toString());
+            }
+        }
     }
 
     @Override
     public void onOpen(WebSocket conn, ClientHandshake handshake) {
-        System.out.println("CLIENT CONNECTED: " + conn.getRemoteSocketAddress());
-        // роль назначится после JOIN, но чтобы conn был учтен — кладём 0
-        playerIndexByConn.put(conn, 0);
+        log.info("open", conn.getRemoteSocketAddress(), null);
+        metrics.connectionOpened();
+        // роль и комната назначатся после JOIN
         sendInfo(conn, "Подключено. Отправьте JOIN (введите имя/подключитесь через клиент).");
     }
 
     @Override
     public void onMessage(WebSocket conn, String message) {
-        System.out.println("MSG FROM " + conn.getRemoteSocketAddress() + ": " + message);
+        // на каждый кадр: адрес и длина только при включённом DEBUG, текст — если разрешён
+        if (log.isEnabled(EventLog.Level.DEBUG)) {
+            log.log(EventLog.Level.DEBUG, "message", conn.getRemoteSocketAddress(), message.length(),
+                    log.logsPayloads() ? message : null);
+        }
+        metrics.bytesIn(MessageSender.utf8Length(message));
         try {
+            long start = System.nanoTime();
             NetMessage msg = gson.fromJson(message, NetMessage.class);
-            if (msg == null || msg.type == null) return;
-
-            switch (msg.type) {
-                case Protocol.TYPE_JOIN -> handleJoin(conn, msg);
-                case Protocol.TYPE_ACTION -> handleAction(conn, msg);
-                default -> sendError(conn, "Неизвестный тип сообщения: " + msg.type);
-            }
+            metrics.decode.recordSince(start);
+            dispatch(conn, msg);
         } catch (Exception ex) {
-            sendError(conn, "Ошибка обработки запроса: " + ex.getMessage());
+            sendError(conn, "bad-request", "Ошибка обработки запроса: " + ex.getMessage());
         }
     }
 
     @Override
-    public void onClose(WebSocket conn, int code, String reason, boolean remote) {
-        Integer idx = playerIndexByConn.remove(conn);
-        System.out.println("CLIENT CLOSED: " + conn.getRemoteSocketAddress()
-                + " code=" + code + " reason=" + reason + " idx=" + idx);
-
-        // Для простого учебного мультиплеера: если кто-то вышел — сбрасываем матч.
-        if (idx != null && idx != 0) {
-            broadcastInfo("Игрок отключился. Игра остановлена. Можно подключиться заново.");
-            resetGame();
+    public void onMessage(WebSocket conn, ByteBuffer message) {
+        if (log.isEnabled(EventLog.Level.DEBUG)) {
+            log.log(EventLog.Level.DEBUG, "message", conn.getRemoteSocketAddress(), message.remaining(), null);
         }
-    }
-
-    @Override
-    public void onError(WebSocket conn, Exception ex) {
-        System.out.println("SERVER ERROR: " + (conn != null ? conn.getRemoteSocketAddress() : "null")
-                + " err=" + ex.getMessage());
-        if (conn != null) {
-            sendError(conn, "Сетевая ошибка: " + ex.getMessage());
+        metrics.bytesIn(message.remaining());
+        try {
+            long start = System.nanoTime();
+            NetMessage msg = BinaryCodec.decodeRequest(message);
+            metrics.decode.recordSince(start);
+            dispatch(conn, msg);
+        } catch (Exception ex) {
+            sendError(conn, "bad-request", "Ошибка обработки запроса: " + ex.getMessage());
         }
     }
 
-    private synchronized void resetGame() {
-        game = null;
-        p1Name = null;
-        p2Name = null;
+    private void dispatch(WebSocket conn, NetMessage msg) {
+        if (msg == null || msg.type == null) return;
 
-        // роли сбрасываем в 0 (ожидаем JOIN заново)
-        for (WebSocket c : new ArrayList<>(playerIndexByConn.keySet())) {
-            playerIndexByConn.put(c, 0);
-            sendInfo(c, "Лобби сброшено. Отправьте JOIN снова.");
+        // тип от клиента произволен: считаем только известные, чтобы не плодить счётчики
+        switch (msg.type) {
+            case Protocol.TYPE_JOIN, Protocol.TYPE_ACTION, Protocol.TYPE_RESYNC -> metrics.messageIn(msg.type);
+            default -> metrics.messageIn("OTHER");
+        }
+        switch (msg.type) {
+            case Protocol.TYPE_JOIN -> handleJoin(conn, msg);
+            case Protocol.TYPE_ACTION -> handleAction(conn, msg);
+            case Protocol.TYPE_RESYNC -> handleResync(conn);
+            default -> sendError(conn, "unknown-type", "Неизвестный тип сообщения: " + msg.type);
         }
     }
 
-    private synchronized void handleJoin(WebSocket conn, NetMessage msg) {
-        Integer existing = playerIndexByConn.get(conn);
-        if (existing != null && existing != 0) {
-            sendError(conn, "Вы уже присоединились.");
-            return;
+    @Override
+    public void onClose(WebSocket conn, int code, String reason, boolean remote) {
+        GameRoom room = roomByConn.remove(conn);
+        metrics.connectionClosed();
+        log.log(EventLog.Level.INFO, "close", conn.getRemoteSocketAddress(), code,
+                "reason=" + reason + " room=" + (room != null ? room.getId() : null));
+
+        if (room != null) {
+            String token = room.park(conn, RESUME_GRACE_MILLIS);
+            if (token != null) {
+                timers.schedule(() -> room.post(() -> expire(room, token)), RESUME_GRACE_MILLIS, TimeUnit.MILLISECONDS);
+                return;
+            }
+            for (WebSocket c : room.leave(conn)) {
+                roomByConn.remove(c, room);
+            }
+            rooms.removeIfEmpty(room);
         }
+    }
 
-        JoinRequest join = gson.fromJson(gson.toJsonTree(msg.payload), JoinRequest.class);
-        String name = (join == null || join.playerName == null || join.playerName.isBlank())
-                ? "Игрок" : join.playerName.trim();
-
-        if (p1Name == null) {
-            p1Name = name;
-            playerIndexByConn.put(conn, 1);
-
-            conn.send(gson.toJson(new NetMessage(Protocol.TYPE_ROLE, new RoleMessage(1))));
-            sendInfo(conn, "Вы присоединились как Игрок 1. Ждём второго игрока...");
-            broadcastInfo("Игрок 1: " + p1Name);
-
-        } else if (p2Name == null) {
-            p2Name = name;
-            playerIndexByConn.put(conn, 2);
-
-            conn.send(gson.toJson(new NetMessage(Protocol.TYPE_ROLE, new RoleMessage(2))));
-            sendInfo(conn, "Вы присоединились как Игрок 2. Запускаем игру...");
-            broadcastInfo("Игрок 2: " + p2Name);
-
-        } else {
-            sendError(conn, "Лобби заполнено (2 игрока).");
-            conn.close();
-            return;
-        }
+    private void expire(GameRoom room, String token) {
+        evicted(room, room.expire(token));
+        rooms.removeIfEmpty(room);
+    }
 
-        if (p1Name != null && p2Name != null && game == null) {
-            game = new Game(width, height, p1Name, p2Name);
-            broadcastInfo("Игра началась! Ход: " + game.getCurrentPlayer().getName());
-            broadcastState();
-        } else if (game != null) {
-            sendState(conn);
+    private void evicted(GameRoom room, List<WebSocket> evicted) {
+        for (WebSocket c : evicted) {
+            roomByConn.remove(c, room);
         }
     }
 
-    private synchronized void handleAction(WebSocket conn, NetMessage msg) {
-        if (game == null) {
-            sendError(conn, "Игра ещё не началась. Ждём подключения 2 игроков.");
-            return;
+    @Override
+    public void onError(WebSocket conn, Exception ex) {
+        log.warn("error", conn != null ? conn.getRemoteSocketAddress() : null, String.valueOf(ex.getMessage()));
+        if (conn != null) {
+            sendError(conn, "network", "Сетевая ошибка: " + ex.getMessage());
         }
+    }
 
-        Integer playerIdx = playerIndexByConn.get(conn);
-        if (playerIdx == null || playerIdx == 0) {
-            sendError(conn, "Сначала отправьте JOIN.");
+    private void handleJoin(WebSocket conn, NetMessage msg) {
+        if (roomByConn.containsKey(conn)) {
+            sendError(conn, "already-joined", "Вы уже присоединились.");
             return;
         }
 
-        ActionRequest action = gson.fromJson(gson.toJsonTree(msg.payload), ActionRequest.class);
-        if (action == null || action.action == null) {
-            sendError(conn, "Некорректный ACTION.");
-            return;
+        JoinRequest join = (msg.payload instanceof JoinRequest j) ? j : null;
+        String name = (join == null || join.playerName == null || join.playerName.isBlank())
+                ? "Игрок" : join.playerName.trim();
+        String roomId = (join == null || join.roomId == null || join.roomId.isBlank())
+                ? null : join.roomId.trim();
+        int capabilities = (join == null) ? 0 : join.capabilities;
+        // формат переключается до ROLE: все ответы на JOIN уже в согласованном формате
+        if ((capabilities & Protocol.CAP_BINARY) != 0) {
+            MessageSender.useBinary(conn);
         }
 
-        Player current = game.getCurrentPlayer();
-        int currentIdx = (current == game.getPlayer1()) ? 1 : 2;
-
-        if (playerIdx != currentIdx) {
-            sendError(conn, "Сейчас ходит другой игрок.");
-            return;
+        if (join != null && join.resumeToken != null) {
+            String roomOfToken = GameRoom.roomOfToken(join.resumeToken);
+            GameRoom room = (roomOfToken == null) ? null : rooms.get(roomOfToken);
+            if (room != null) {
+                roomByConn.put(conn, room);
+                if (room.resume(conn, join.resumeToken, join.lastSeq, capabilities) != 0) {
+                    return;
+                }
+                roomByConn.remove(conn, room);
+            }
+            sendInfo(conn, "Прежняя партия уже недоступна, подключаемся заново.");
         }
 
-        GameMap map = game.getMap();
-        Unit fromUnit = map.getUnitAt(action.fromX, action.fromY);
-        if (fromUnit == null) {
-            sendError(conn, "В выбранной клетке нет юнита.");
+        if (join != null && join.vsBot) {
+            GameRoom room = rooms.createWithBot(bot);
+            roomByConn.put(conn, room);
+            if (room.joinWithBot(conn, name, capabilities) == 0) {
+                // комнату распустили раньше, чем создатель успел войти
+                roomByConn.remove(conn, room);
+                rooms.removeIfEmpty(room);
+                sendError(conn, "internal", "Не удалось создать комнату против бота, повторите JOIN.");
+            }
             return;
         }
 
-        // защитная проверка: нельзя двигать/атаковать чужим юнитом
-        Player owner = fromUnit.getOwner();
-        Player expectedOwner = (playerIdx == 1) ? game.getPlayer1() : game.getPlayer2();
-        if (owner != expectedOwner) {
-            sendError(conn, "Это не ваш юнит.");
+        if (roomId != null) {
+            GameRoom room = rooms.getOrCreate(roomId);
+            roomByConn.put(conn, room);
+            if (room.join(conn, name, capabilities) == 0) {
+                roomByConn.remove(conn, room);
+                sendError(conn, "room-full", "Комната " + roomId + " заполнена (2 игрока).");
+                conn.close();
+            }
             return;
         }
 
-        try {
-            switch (action.action) {
-                case Protocol.ACTION_MOVE -> {
-                    game.moveUnit(fromUnit, action.toX, action.toY);
-                    game.endTurn();
-                    broadcastState();
-                }
-                case Protocol.ACTION_ATTACK -> {
-                    Unit target = map.getUnitAt(action.toX, action.toY);
-                    if (target == null) throw new IllegalArgumentException("Цель для атаки отсутствует.");
-                    game.attack(fromUnit, target);
-                    game.endTurn();
-                    broadcastState();
-                }
-                default -> sendError(conn, "Неизвестное действие: " + action.action);
+        // подбор соперника: свободное место могут занять параллельно — тогда берём следующую комнату
+        while (true) {
+            GameRoom room = rooms.findOpen();
+            roomByConn.put(conn, room);
+            if (room.join(conn, name, capabilities) != 0) {
+                return;
             }
-        } catch (Exception ex) {
-            sendError(conn, ex.getMessage());
+            roomByConn.remove(conn, room);
         }
     }
 
-    private synchronized void broadcastState() {
-        for (WebSocket c : new ArrayList<>(playerIndexByConn.keySet())) {
-            sendState(c);
-        }
-    }
-
-    /**
-     * Отправляем каждому игроку персональный state:
-     * - terrain скрываем вне видимости (туман войны)
-     * - traps скрываем вне видимости
-     * - enemy units скрываем вне видимости
-     */
-    private void sendState(WebSocket conn) {
-        if (game == null) {
-            sendInfo(conn, "Ожидаем второго игрока...");
-            return;
-        }
-
-        Integer idx = playerIndexByConn.get(conn);
-        if (idx == null || idx == 0) {
-            sendInfo(conn, "Ожидаем JOIN...");
+    private void handleAction(WebSocket conn, NetMessage msg) {
+        GameRoom room = roomByConn.get(conn);
+        if (room == null) {
+            sendError(conn, "not-joined", "Сначала отправьте JOIN.");
             return;
         }
 
-        GameStateDTO dto = GameStateMapper.fromGame(game);
-
-        Player viewer = (idx == 1) ? game.getPlayer1() : game.getPlayer2();
-        GameMap map = game.getMap();
-        boolean[][] visible = map.getVisibilityFor(viewer); // [y][x]
+        ActionRequest action = (msg.payload instanceof ActionRequest a) ? a : null;
+        room.post(() -> {
+            long start = System.nanoTime();
+            room.handleAction(conn, action);
+            metrics.action.recordSince(start);
+        });
+    }
 
-        // Скрываем terrain вне видимости (туман войны)
-        for (int y = 0; y < dto.height; y++) {
-            for (int x = 0; x < dto.width; x++) {
-                if (!visible[y][x]) {
-                    dto.terrain[y][x] = null; // null означает туман
-                }
-                // Ловушки скрыты от всех игроков - всегда false
-                dto.traps[y][x] = false;
-            }
+    private void handleResync(WebSocket conn) {
+        GameRoom room = roomByConn.get(conn);
+        if (room == null) {
+            sendError(conn, "not-joined", "Сначала отправьте JOIN.");
+            return;
         }
-
-        // враг виден только в видимости
-        dto.units.removeIf(u -> u.owner != idx && !visible[u.y][u.x]);
-
-        conn.send(gson.toJson(new NetMessage(Protocol.TYPE_STATE, dto)));
+        room.post(() -> room.resync(conn));
     }
 
-    private void sendError(WebSocket conn, String message) {
-        conn.send(gson.toJson(new NetMessage(Protocol.TYPE_ERROR, new ErrorMessage(message))));
+    // reason — ключ для метрик, message — текст для игрока
+    private void sendError(WebSocket conn, String reason, String message) {
+        metrics.error(reason);
+        sender.send(conn, Protocol.TYPE_ERROR, new ErrorMessage(message));
     }
 
     private void sendInfo(WebSocket conn, String message) {
-        conn.send(gson.toJson(new NetMessage(Protocol.TYPE_INFO, new InfoMessage(message))));
-    }
-
-    private void broadcastInfo(String message) {
-        broadcast(gson.toJson(new NetMessage(Protocol.TYPE_INFO, new InfoMessage(message))));
+        sender.send(conn, Protocol.TYPE_INFO, new InfoMessage(message));
     }
 }
\ No newline at end of file
@@ -1,7 +1,10 @@
 package org.example.kriegspiel.net.server;
 
 import org.example.kriegspiel.Game;
+import org.example.kriegspiel.jfr.StateMappingEvent;
 import org.example.kriegspiel.map.GameMap;
+import org.example.kriegspiel.map.TerrainType;
+import org.example.kriegspiel.map.VisibilityGrid;
 import org.example.kriegspiel.model.Player;
 import org.example.kriegspiel.model.unit.Unit;
 import org.example.kriegspiel.net.GameStateDTO;
@@ -11,6 +14,25 @@ public final class GameStateMapper {
     private GameStateMapper() {}
 
     public static GameStateDTO fromGame(Game game) {
+        StateMappingEvent event = new StateMappingEvent();
+        event.begin();
+        GameStateDTO dto = mapFull(game);
+        commit(event, "FULL", game);
+        return dto;
+    }
+
+    /**
+     * Событие JFR построения состояния; поля заполняются, только если оно включено.
+     */
+    static void commit(StateMappingEvent event, String type, Game game) {
+        if (event.shouldCommit()) {
+            event.actionType = type;
+            event.setMap(game.getMap());
+            event.commit();
+        }
+    }
+
+    private static GameStateDTO mapFull(Game game) {
         GameMap map = game.getMap();
         GameStateDTO dto = new GameStateDTO();
 
@@ -65,7 +87,85 @@ public final class GameStateMapper {
         return dto;
     }
 
-    private static int resolveOwnerIndex(Unit u, Player p1, Player p2) {
+    /**
+     * Персональное состояние игрока {@code seat} (1 или 2) за один проход по его видимости:
+     * terrain вне видимости — null, ловушки не передаются, враги — только видимые.
+     * Скрытые данные в DTO не попадают даже временно.
+     */
+    public static GameStateDTO forViewer(Game game, int seat) {
+        return forViewer(game, seat, new GameStateDTO());
+    }
+
+    /**
+     * То же, но с переиспользованием {@code into}: массивы terrain/traps
+     * сохраняются, если размер карты не изменился. Ловушки в {@code into}
+     * никогда не выставляются, поэтому массив traps не перезаполняется.
+     */
+    static GameStateDTO forViewer(Game game, int seat, GameStateDTO into) {
+        StateMappingEvent event = new StateMappingEvent();
+        event.begin();
+        GameStateDTO dto = mapForViewer(game, seat, into);
+        commit(event, "STATE", game);
+        return dto;
+    }
+
+    private static GameStateDTO mapForViewer(Game game, int seat, GameStateDTO into) {
+        GameMap map = game.getMap();
+        Player p1 = game.getPlayer1();
+        Player p2 = game.getPlayer2();
+        Player me = (seat == 1) ? p1 : p2;
+        Player enemy = (seat == 1) ? p2 : p1;
+        VisibilityGrid visible = map.getVisibilityGrid(me);
+
+        int w = map.getWidth();
+        int h = map.getHeight();
+        if (into.terrain == null || into.width != w || into.height != h) {
+            into.terrain = new TerrainType[h][w];
+            into.traps = new boolean[h][w];
+        }
+        into.width = w;
+        into.height = h;
+        into.player1Name = p1.getName();
+        into.player2Name = p2.getName();
+        into.currentPlayer = game.getCurrentPlayer() == p1 ? 1 : 2;
+
+        for (int y = 0; y < h; y++) {
+            TerrainType[] row = into.terrain[y];
+            int base = y * w;
+            for (int x = 0; x < w; x++) {
+                row[x] = visible.isVisibleCell(base + x) ? map.getTerrainAt(x, y) : null;
+            }
+        }
+
+        into.units.clear();
+        int enemyIdx = 3 - seat;
+        for (Unit u : me.getUnits()) {
+            into.units.add(toUnitDTO(u, seat, u.getX(), u.getY()));
+        }
+        for (Unit u : enemy.getUnits()) {
+            if (visible.isVisible(u.getX(), u.getY())) {
+                into.units.add(toUnitDTO(u, enemyIdx, u.getX(), u.getY()));
+            }
+        }
+
+        into.gameOver = game.isGameOver();
+        into.winner = winnerOf(game);
+        return into;
+    }
+
+    /**
+     * Победитель по живым юнитам: 1 или 2, 0 — ничья или игра продолжается.
+     */
+    static int winnerOf(Game game) {
+        if (!game.isGameOver()) return 0;
+        boolean p1Alive = game.getPlayer1().hasUnits();
+        boolean p2Alive = game.getPlayer2().hasUnits();
+        if (p1Alive && !p2Alive) return 1;
+        if (p2Alive && !p1Alive) return 2;
+        return 0;
+    }
+
+    static int resolveOwnerIndex(Unit u, Player p1, Player p2) {
         try {
             Player owner = u.getOwner();
             if (owner == p1) return 1;
@@ -80,8 +180,9 @@ public final class GameStateMapper {
         return 0;
     }
 
-    private static UnitDTO toUnitDTO(Unit u, int ownerIdx, int x, int y) {
+    static UnitDTO toUnitDTO(Unit u, int ownerIdx, int x, int y) {
         UnitDTO dto = new UnitDTO();
+        dto.id = u.getId();
         dto.type = u.getClass().getSimpleName();
         dto.owner = ownerIdx;
         dto.hp = u.getHp();
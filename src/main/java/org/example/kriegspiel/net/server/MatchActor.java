@@ -0,0 +1,53 @@
+package org.example.kriegspiel.net.server;
+
+import org.example.kriegspiel.log.EventLog;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Почтовый ящик партии. Задачи выполняются по одной в порядке поступления
+ * в виртуальном потоке, который запускается, когда ящик перестаёт быть пустым,
+ * и завершается, разобрав его. Поток WebSocket только кладёт задачу и
+ * возвращается: журнал, ожидание монитора комнаты и применение хода бота
+ * его не занимают.
+ */
+final class MatchActor {
+
+    private final String name;
+    private final EventLog log;
+    private final Queue<Runnable> mailbox = new ConcurrentLinkedQueue<>();
+    // поток разбора уже запущен
+    private final AtomicBoolean running = new AtomicBoolean();
+
+    MatchActor(String name, EventLog log) {
+        this.name = name;
+        this.log = log;
+    }
+
+    void post(Runnable task) {
+        mailbox.add(task);
+        if (running.compareAndSet(false, true)) {
+            Thread.ofVirtual().name("match-" + name).start(this::drain);
+        }
+    }
+
+    private void drain() {
+        while (true) {
+            for (Runnable task; (task = mailbox.poll()) != null; ) {
+                try {
+                    task.run();
+                } catch (RuntimeException ex) {
+                    // ошибка одной задачи не останавливает партию
+                    log.error("actor", name, ex.toString());
+                }
+            }
+            running.set(false);
+            // задача могла прийти после poll() == null, но до сброса флага
+            if (mailbox.isEmpty() || !running.compareAndSet(false, true)) {
+                return;
+            }
+        }
+    }
+}
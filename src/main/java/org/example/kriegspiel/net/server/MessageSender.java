@@ -0,0 +1,304 @@
+package org.example.kriegspiel.net.server;
+
+import com.google.gson.Gson;
+import org.example.kriegspiel.log.EventLog;
+import org.example.kriegspiel.metrics.ServerMetrics;
+import org.example.kriegspiel.net.BinaryCodec;
+import org.example.kriegspiel.net.NetMessage;
+import org.example.kriegspiel.net.Protocol;
+
+import org.java_websocket.WebSocket;
+import org.java_websocket.framing.CloseFrame;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Отправка сообщений в формате, согласованном с клиентом при JOIN:
+ * JSON-текст по умолчанию, двоичные кадры после {@link #useBinary(WebSocket)}.
+ *
+ * <p>У каждого соединения своя ограниченная очередь ({@link Outbound}, хранится
+ * во вложении соединения). {@code send} только кодирует сообщение и ставит его
+ * в очередь — под монитором комнаты не выполняется ни одной записи в сокет.
+ * Очереди разбирают потоки отправителя; пока у Java-WebSocket не ушли в сеть
+ * прежние кадры соединения, новые ждут здесь. Новый STATE заменяет ещё не
+ * отправленные STATE и DELTA (клиент применяет его целиком). Клиент, у которого
+ * очередь переполнена или отставание длится дольше {@link #MAX_LAG_MILLIS},
+ * отключается и может вернуться по токену (см. {@link GameRoom#resume}).
+ */
+final class MessageSender {
+
+    static final int MAX_QUEUED_FRAMES = 64;
+    static final long MAX_LAG_MILLIS = 10_000;
+    // отставание, после которого клиент получает STATE вместо DELTA
+    static final long LAG_MILLIS = 50;
+    // через сколько проверить снова соединение, у которого буфер сокета ещё не пуст
+    private static final long RETRY_MILLIS = 2;
+
+    private final Gson gson;
+    private final EventLog log;
+    private final ServerMetrics metrics;
+    private final ScheduledExecutorService pool;
+
+    private final LongAdder sentFrames = new LongAdder();
+    private final LongAdder coalescedFrames = new LongAdder();
+    private final LongAdder droppedClients = new LongAdder();
+    private final AtomicInteger queuedFrames = new AtomicInteger();
+    private final AtomicInteger maxQueueDepth = new AtomicInteger();
+
+    MessageSender(Gson gson) {
+        this(gson, EventLog.off(), new ServerMetrics());
+    }
+
+    MessageSender(Gson gson, EventLog log, ServerMetrics metrics) {
+        this.gson = gson;
+        this.log = log;
+        this.metrics = metrics;
+        AtomicInteger n = new AtomicInteger();
+        this.pool = Executors.newScheduledThreadPool(Runtime.getRuntime().availableProcessors(), r -> {
+            Thread t = new Thread(r, "outbound-" + n.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    private record Frame(Object data, int bytes, boolean state) {}
+
+    /**
+     * Исходящая очередь соединения. Поля под монитором самого объекта.
+     */
+    static final class Outbound {
+        final WebSocket conn;
+        volatile boolean binary;
+
+        private final ArrayDeque<Frame> frames = new ArrayDeque<>();
+        // задача разбора уже поставлена (сейчас или с задержкой)
+        private boolean scheduled;
+        // с какого момента буфер сокета не успевает опустеть; 0 — клиент успевает
+        private long lagSince;
+        private boolean dropped;
+
+        Outbound(WebSocket conn) {
+            this.conn = conn;
+        }
+    }
+
+    static Outbound outbound(WebSocket conn) {
+        Outbound out = conn.getAttachment();
+        if (out == null) {
+            out = new Outbound(conn);
+            conn.setAttachment(out);
+        }
+        return out;
+    }
+
+    static void useBinary(WebSocket conn) {
+        outbound(conn).binary = true;
+    }
+
+    static boolean isBinary(WebSocket conn) {
+        return outbound(conn).binary;
+    }
+
+    /**
+     * Клиент дольше {@link #LAG_MILLIS} не успевает принимать: вместо DELTA ему
+     * выгоднее отправить полный STATE, который заменит всё, что ждёт в очереди.
+     */
+    static boolean isLagging(WebSocket conn) {
+        Outbound out = outbound(conn);
+        synchronized (out) {
+            return out.lagSince != 0
+                    && System.nanoTime() - out.lagSince > TimeUnit.MILLISECONDS.toNanos(LAG_MILLIS);
+        }
+    }
+
+    ServerMetrics metrics() {
+        return metrics;
+    }
+
+    // журнал событий сервера; комнаты пишут в него свои ошибки
+    EventLog log() {
+        return log;
+    }
+
+    /**
+     * @return размер закодированного сообщения, байт
+     */
+    int send(WebSocket conn, String type, Object payload) {
+        NetMessage msg = new NetMessage(type, payload);
+        Outbound out = outbound(conn);
+        long start = System.nanoTime();
+        if (out.binary) {
+            byte[] binary = BinaryCodec.encode(msg);
+            metrics.encode.recordSince(start);
+            enqueue(out, binary, binary.length, type);
+            return binary.length;
+        }
+        String json = gson.toJson(msg);
+        metrics.encode.recordSince(start);
+        int bytes = utf8Length(json);
+        enqueue(out, json, bytes, type);
+        return bytes;
+    }
+
+    /**
+     * Одно сообщение нескольким соединениям; каждый формат кодируется не больше одного раза.
+     */
+    void broadcast(Collection<WebSocket> conns, String type, Object payload) {
+        NetMessage msg = new NetMessage(type, payload);
+        String json = null;
+        int jsonBytes = 0;
+        byte[] binary = null;
+        for (WebSocket c : conns) {
+            Outbound out = outbound(c);
+            if (out.binary) {
+                if (binary == null) {
+                    long start = System.nanoTime();
+                    binary = BinaryCodec.encode(msg);
+                    metrics.encode.recordSince(start);
+                }
+                enqueue(out, binary, binary.length, type);
+            } else {
+                if (json == null) {
+                    long start = System.nanoTime();
+                    json = gson.toJson(msg);
+                    metrics.encode.recordSince(start);
+                    jsonBytes = utf8Length(json);
+                }
+                enqueue(out, json, jsonBytes, type);
+            }
+        }
+    }
+
+    /**
+     * Размер строки в UTF-8 без копирования в массив байтов.
+     */
+    static int utf8Length(String s) {
+        int n = s.length();
+        int bytes = n;
+        for (int i = 0; i < n; i++) {
+            char c = s.charAt(i);
+            if (c < 0x80) continue;
+            if (c < 0x800) {
+                bytes++;
+            } else if (Character.isHighSurrogate(c) && i + 1 < n && Character.isLowSurrogate(s.charAt(i + 1))) {
+                bytes += 2;
+                i++;
+            } else {
+                bytes += 2;
+            }
+        }
+        return bytes;
+    }
+
+    private void enqueue(Outbound out, Object data, int bytes, String type) {
+        boolean fullState = Protocol.TYPE_STATE.equals(type);
+        boolean state = fullState || Protocol.TYPE_DELTA.equals(type);
+        synchronized (out) {
+            if (out.dropped) return;
+            if (fullState) {
+                int removed = 0;
+                for (Iterator<Frame> it = out.frames.iterator(); it.hasNext(); ) {
+                    if (it.next().state()) {
+                        it.remove();
+                        removed++;
+                    }
+                }
+                if (removed > 0) {
+                    coalescedFrames.add(removed);
+                    queuedFrames.addAndGet(-removed);
+                }
+            }
+            // отключённому клиенту ничего не ставится — и в счётчик не попадает
+            metrics.messageOut(type);
+            out.frames.addLast(new Frame(data, bytes, state));
+            queuedFrames.incrementAndGet();
+            maxQueueDepth.accumulateAndGet(out.frames.size(), Math::max);
+            if (out.frames.size() > MAX_QUEUED_FRAMES) {
+                drop(out, "очередь " + out.frames.size() + " сообщений");
+                return;
+            }
+            if (out.scheduled) return;
+            out.scheduled = true;
+        }
+        pool.execute(() -> drain(out));
+    }
+
+    // всё, что накопилось, уходит в сокет пачкой, когда его буфер пуст; пока идёт
+    // разбор, второй не начинается (scheduled), поэтому порядок кадров сохраняется
+    private void drain(Outbound out) {
+        boolean first = true;
+        while (true) {
+            List<Frame> batch;
+            synchronized (out) {
+                if (out.dropped || out.frames.isEmpty()) {
+                    out.scheduled = false;
+                    return;
+                }
+                if (!out.conn.isOpen()) {
+                    // соединение уже закрыто, его onClose разберётся с комнатой
+                    queuedFrames.addAndGet(-out.frames.size());
+                    out.frames.clear();
+                    out.dropped = true;
+                    return;
+                }
+                // кадры, пришедшие во время отправки пачки, догоняют её сразу
+                if (first && out.conn.hasBufferedData()) {
+                    long now = System.nanoTime();
+                    if (out.lagSince == 0) {
+                        out.lagSince = now;
+                    } else if (now - out.lagSince > TimeUnit.MILLISECONDS.toNanos(MAX_LAG_MILLIS)) {
+                        drop(out, "отставание дольше " + MAX_LAG_MILLIS + " мс");
+                        return;
+                    }
+                    pool.schedule(() -> drain(out), RETRY_MILLIS, TimeUnit.MILLISECONDS);
+                    return;
+                }
+                out.lagSince = 0;
+                batch = new ArrayList<>(out.frames);
+                out.frames.clear();
+            }
+            first = false;
+            queuedFrames.addAndGet(-batch.size());
+            for (Frame f : batch) {
+                long start = System.nanoTime();
+                if (f.data() instanceof byte[] bytes) {
+                    out.conn.send(bytes);
+                } else {
+                    out.conn.send((String) f.data());
+                }
+                metrics.send.recordSince(start);
+                metrics.bytesOut(f.bytes());
+            }
+            sentFrames.add(batch.size());
+        }
+    }
+
+    // под монитором out; закрытие соединения — в потоке отправителя, не у вызывающего
+    private void drop(Outbound out, String reason) {
+        out.dropped = true;
+        out.scheduled = true;
+        queuedFrames.addAndGet(-out.frames.size());
+        out.frames.clear();
+        droppedClients.increment();
+        log.warn("slow-client", out.conn.getRemoteSocketAddress(), reason);
+        pool.execute(() -> out.conn.close(CloseFrame.POLICY_VALIDATION, "Клиент не успевает принимать сообщения"));
+    }
+
+    GameServer.OutboundStats stats() {
+        return new GameServer.OutboundStats(sentFrames.sum(), coalescedFrames.sum(), droppedClients.sum(),
+                queuedFrames.get(), maxQueueDepth.get());
+    }
+
+    void close() {
+        pool.shutdownNow();
+    }
+}
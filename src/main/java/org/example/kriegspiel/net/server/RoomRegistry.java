@@ -0,0 +1,151 @@
+package org.example.kriegspiel.net.server;
+
+import org.example.kriegspiel.journal.JournalStore;
+import org.example.kriegspiel.net.Protocol;
+
+import org.java_websocket.WebSocket;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiConsumer;
+
+/**
+ * Реестр комнат сервера. Поиск комнаты по id lock-free (ConcurrentHashMap),
+ * под монитором реестра выполняется только подбор пары для JOIN без roomId.
+ *
+ * <p>Комната, в которой дольше {@link #IDLE_MILLIS} не было JOIN, возврата
+ * или хода игрока, распускается и удаляется. Проверка — один таймер на комнату
+ * в {@link TimingWheel}; пока комната жива, он перевзводится на остаток срока.
+ */
+final class RoomRegistry {
+
+    static final long IDLE_MILLIS = TimeUnit.MINUTES.toMillis(10);
+
+    private final int width;
+    private final int height;
+    private final MessageSender sender;
+    private final JournalStore journals;
+    // null — без часов хода и роспуска простаивающих комнат
+    private final TimingWheel timers;
+    // соединения распущенной комнаты, чтобы сервер забыл их привязку
+    private final BiConsumer<GameRoom, List<WebSocket>> onEvict;
+
+    private final Map<String, GameRoom> rooms = new ConcurrentHashMap<>();
+    private final AtomicLong nextId = new AtomicLong(1);
+
+    // комната, в которой ждут второго игрока JOIN без roomId (guarded by this)
+    private GameRoom lobby = null;
+
+    RoomRegistry(int width, int height, MessageSender sender, JournalStore journals) {
+        this(width, height, sender, journals, null, (room, evicted) -> { });
+    }
+
+    RoomRegistry(int width, int height, MessageSender sender, JournalStore journals,
+                 TimingWheel timers, BiConsumer<GameRoom, List<WebSocket>> onEvict) {
+        // карту больше клиентский кодек не примет
+        if (width > Protocol.MAX_MAP_SIDE || height > Protocol.MAX_MAP_SIDE) {
+            throw new IllegalArgumentException("Карта больше " + Protocol.MAX_MAP_SIDE + " клеток по стороне");
+        }
+        this.width = width;
+        this.height = height;
+        this.sender = sender;
+        this.journals = journals;
+        this.timers = timers;
+        this.onEvict = onEvict;
+    }
+
+    /**
+     * Комната с явно заданным id; создаётся при первом обращении.
+     */
+    GameRoom getOrCreate(String roomId) {
+        return rooms.computeIfAbsent(roomId, id -> watchIdle(newRoom(id), IDLE_MILLIS));
+    }
+
+    /**
+     * Существующая комната; null — такой нет.
+     */
+    GameRoom get(String roomId) {
+        return rooms.get(roomId);
+    }
+
+    /**
+     * Новая комната с ещё не занятым id.
+     */
+    GameRoom create() {
+        return create(null);
+    }
+
+    /**
+     * Новая комната против {@code bot}: место бота и место создателя заняты
+     * ещё до того, как комнату можно найти по id.
+     */
+    GameRoom createWithBot(BotSeat bot) {
+        return create(bot);
+    }
+
+    private GameRoom create(BotSeat bot) {
+        while (true) {
+            String id = "r" + nextId.getAndIncrement();
+            GameRoom room = newRoom(id);
+            if (bot != null) room.reserveForBot(bot);
+            if (rooms.putIfAbsent(id, room) == null) {
+                return watchIdle(room, IDLE_MILLIS);
+            }
+        }
+    }
+
+    /**
+     * Комната со свободным местом для автоматического подбора соперника.
+     */
+    synchronized GameRoom findOpen() {
+        if (lobby == null || !lobby.hasFreeSeat() || rooms.get(lobby.getId()) != lobby) {
+            lobby = create();
+        }
+        return lobby;
+    }
+
+    /**
+     * Удаляет комнату, если в ней никого не осталось.
+     */
+    void removeIfEmpty(GameRoom room) {
+        if (room.isEmpty()) {
+            rooms.remove(room.getId(), room);
+        }
+    }
+
+    private GameRoom newRoom(String id) {
+        return new GameRoom(id, width, height, sender, journals, timers);
+    }
+
+    private GameRoom watchIdle(GameRoom room, long delayMillis) {
+        if (timers != null) {
+            timers.schedule(() -> room.post(() -> checkIdle(room)), delayMillis, TimeUnit.MILLISECONDS);
+        }
+        return room;
+    }
+
+    // в акторе комнаты
+    private void checkIdle(GameRoom room) {
+        if (rooms.get(room.getId()) != room) {
+            return;
+        }
+        long idle = room.idleMillis();
+        if (idle < IDLE_MILLIS) {
+            watchIdle(room, IDLE_MILLIS - idle);
+            return;
+        }
+        onEvict.accept(room, room.evict(idle));
+        removeIfEmpty(room);
+        if (rooms.get(room.getId()) == room) {
+            // кто-то успел войти после роспуска
+            watchIdle(room, IDLE_MILLIS);
+        }
+    }
+
+    int size() {
+        return rooms.size();
+    }
+}
@@ -1,5 +1,7 @@
 package org.example.kriegspiel.net.server;
 
+import java.nio.file.Path;
+
 public class ServerMain {
     public static void main(String[] args) throws Exception {
         int port = 8080;
@@ -12,8 +14,12 @@ public class ServerMain {
             h = Integer.parseInt(args[2]);
         }
 
-        GameServer server = new GameServer(port, w, h);
+        // четвёртый аргумент — каталог журналов партий
+        GameServer server = (args.length >= 4)
+                ? new GameServer(port, w, h, Path.of(args[3]))
+                : new GameServer(port, w, h);
         server.start();
-        System.out.println("Kriegspiel WebSocket server started on port " + port + " (" + w + "x" + h + ")");
+        System.out.println("Kriegspiel WebSocket server started on port " + port + " (" + w + "x" + h + ")"
+                + (args.length >= 4 ? ", journal: " + args[3] : ""));
     }
 }
@@ -0,0 +1,229 @@
+package org.example.kriegspiel.net.server;
+
+import org.example.kriegspiel.log.EventLog;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Иерархическое колесо таймеров: {@value #LEVELS} уровня по {@value #SLOTS} ячеек,
+ * ячейка уровня {@code L} покрывает {@code 64^L} тиков. Таймер лежит в ячейке
+ * того уровня, чей охват больше его задержки; когда время доходит до ячейки,
+ * её таймеры переезжают на уровень ниже, с нулевого — срабатывают.
+ *
+ * <p>Постановка и отмена — O(1) (очередь для потока колеса и двусвязный список
+ * ячейки), тик обходит только ячейки, до которых дошло время, поэтому цена тика
+ * не зависит от числа взведённых таймеров. Таймер — один небольшой объект;
+ * задачи выполняются в потоке колеса и должны лишь передать работу дальше
+ * (например, в актор комнаты).
+ */
+final class TimingWheel {
+
+    static final int LEVELS = 4;
+    static final int SLOTS = 64;
+    private static final int SLOT_BITS = 6;
+
+    private static final int PENDING = 0;
+    private static final int ARMED = 1;
+    private static final int CANCELLED = 2;
+    private static final int FIRED = 3;
+
+    /**
+     * Взведённый таймер.
+     */
+    static final class Timeout {
+        private static final AtomicIntegerFieldUpdater<Timeout> STATE =
+                AtomicIntegerFieldUpdater.newUpdater(Timeout.class, "state");
+
+        private final TimingWheel wheel;
+        private final Runnable task;
+        private final long deadline;
+        private volatile int state = PENDING;
+
+        // ячейка и соседи по ней; только поток колеса
+        private Timeout[] bucket;
+        private int slot;
+        private Timeout prev;
+        private Timeout next;
+
+        private Timeout(TimingWheel wheel, Runnable task, long deadline) {
+            this.wheel = wheel;
+            this.task = task;
+            this.deadline = deadline;
+        }
+
+        /**
+         * @return false, если таймер уже сработал или отменён
+         */
+        boolean cancel() {
+            while (true) {
+                int s = state;
+                if (s == CANCELLED || s == FIRED) return false;
+                if (STATE.compareAndSet(this, s, CANCELLED)) {
+                    wheel.armed.decrementAndGet();
+                    if (s == ARMED) wheel.cancelled.add(this);
+                    return true;
+                }
+            }
+        }
+    }
+
+    private final long tickNanos;
+    private final long start = System.nanoTime();
+    private final Thread thread;
+    private final EventLog log;
+
+    // [уровень][ячейка] -> голова списка; только поток колеса
+    private final Timeout[][] wheel = new Timeout[LEVELS][SLOTS];
+    // тиков обработано; только поток колеса
+    private long tick;
+
+    private final Queue<Timeout> added = new ConcurrentLinkedQueue<>();
+    private final Queue<Timeout> cancelled = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger armed = new AtomicInteger();
+    private volatile boolean stopped;
+
+    TimingWheel(String name, long tickMillis) {
+        this(name, tickMillis, EventLog.off());
+    }
+
+    TimingWheel(String name, long tickMillis, EventLog log) {
+        this.log = log;
+        this.tickNanos = TimeUnit.MILLISECONDS.toNanos(tickMillis);
+        this.thread = new Thread(this::run, name);
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Выполнит {@code task} в потоке колеса не раньше чем через {@code delay}
+     * (с точностью до тика).
+     */
+    Timeout schedule(Runnable task, long delay, TimeUnit unit) {
+        long deadline = (System.nanoTime() - start + unit.toNanos(delay) + tickNanos - 1) / tickNanos;
+        Timeout t = new Timeout(this, task, deadline);
+        armed.incrementAndGet();
+        added.add(t);
+        return t;
+    }
+
+    /**
+     * Число взведённых и ещё не сработавших таймеров.
+     */
+    int size() {
+        return armed.get();
+    }
+
+    void stop() {
+        stopped = true;
+        thread.interrupt();
+    }
+
+    private void run() {
+        while (!stopped) {
+            long wait = start + (tick + 1) * tickNanos - System.nanoTime();
+            if (wait > 0) {
+                LockSupport.parkNanos(this, wait);
+                continue;
+            }
+            tick++;
+            drainQueues();
+            // сначала верхние уровни: их таймеры успевают опуститься до нулевого
+            for (int level = LEVELS - 1; level > 0; level--) {
+                int shift = level * SLOT_BITS;
+                if ((tick & ((1L << shift) - 1)) == 0) {
+                    cascade(level, (int) (tick >>> shift) & (SLOTS - 1));
+                }
+            }
+            expire(wheel[0], (int) tick & (SLOTS - 1));
+        }
+    }
+
+    private void drainQueues() {
+        for (Timeout t; (t = cancelled.poll()) != null; ) {
+            unlink(t);
+        }
+        for (Timeout t; (t = added.poll()) != null; ) {
+            if (Timeout.STATE.compareAndSet(t, PENDING, ARMED)) {
+                place(t);
+            }
+        }
+    }
+
+    private void place(Timeout t) {
+        long delta = t.deadline - tick;
+        if (delta <= 0) {
+            fire(t);
+            return;
+        }
+        int level = 0;
+        while (level < LEVELS - 1 && delta >= 1L << ((level + 1) * SLOT_BITS)) {
+            level++;
+        }
+        int shift = level * SLOT_BITS;
+        // дальше охвата колеса: в последнюю ячейку верхнего уровня, оттуда ещё раз
+        long at = (delta >= 1L << (LEVELS * SLOT_BITS)) ? tick + (1L << (LEVELS * SLOT_BITS)) - (1L << shift) : t.deadline;
+        link(t, wheel[level], (int) (at >>> shift) & (SLOTS - 1));
+    }
+
+    private void cascade(int level, int slot) {
+        Timeout t = wheel[level][slot];
+        wheel[level][slot] = null;
+        while (t != null) {
+            Timeout next = t.next;
+            t.bucket = null;
+            t.prev = null;
+            t.next = null;
+            place(t);
+            t = next;
+        }
+    }
+
+    private void expire(Timeout[] bucket, int slot) {
+        Timeout t = bucket[slot];
+        bucket[slot] = null;
+        while (t != null) {
+            Timeout next = t.next;
+            t.bucket = null;
+            t.prev = null;
+            t.next = null;
+            fire(t);
+            t = next;
+        }
+    }
+
+    private void fire(Timeout t) {
+        if (!Timeout.STATE.compareAndSet(t, ARMED, FIRED)) return;
+        armed.decrementAndGet();
+        try {
+            t.task.run();
+        } catch (RuntimeException ex) {
+            log.error("timer", thread.getName(), ex.toString());
+        }
+    }
+
+    private static void link(Timeout t, Timeout[] bucket, int slot) {
+        t.bucket = bucket;
+        t.slot = slot;
+        t.next = bucket[slot];
+        if (t.next != null) t.next.prev = t;
+        bucket[slot] = t;
+    }
+
+    private static void unlink(Timeout t) {
+        if (t.bucket == null) return;
+        if (t.prev != null) {
+            t.prev.next = t.next;
+        } else {
+            t.bucket[t.slot] = t.next;
+        }
+        if (t.next != null) t.next.prev = t.prev;
+        t.bucket = null;
+        t.prev = null;
+        t.next = null;
+    }
+}
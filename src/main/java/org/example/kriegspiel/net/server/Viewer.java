@@ -0,0 +1,188 @@
+package org.example.kriegspiel.net.server;
+
+import org.example.kriegspiel.Game;
+import org.example.kriegspiel.jfr.StateMappingEvent;
+import org.example.kriegspiel.map.GameMap;
+import org.example.kriegspiel.map.VisibilityGrid;
+import org.example.kriegspiel.model.Player;
+import org.example.kriegspiel.model.unit.Unit;
+import org.example.kriegspiel.net.GameStateDTO;
+import org.example.kriegspiel.net.StateDelta;
+import org.example.kriegspiel.net.UnitDTO;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Участник комнаты: место, возможности клиента и то, что ему уже отправлено.
+ * По отправленному состоянию (baseline) строятся DELTA. Последние DELTA
+ * хранятся, чтобы вернувшийся после обрыва клиент догнал партию без полного
+ * STATE. Доступ только под монитором комнаты.
+ */
+final class Viewer {
+
+    private static final int HISTORY = 16;
+
+    final int seat;
+    final boolean deltas;
+
+    // токен возврата на место (RoleMessage.resumeToken); новый после каждого возврата
+    String token;
+    // соединение оборвалось, место ждёт переподключения; DELTA строятся как обычно
+    boolean parked;
+
+    // baseline: видимые клетки [y * width + x] и юниты по id в последнем отправленном состоянии
+    private boolean[] visible;
+    private final Map<Integer, UnitDTO> sentUnits = new HashMap<>();
+    private boolean hasBaseline;
+    // seq baseline и построенные после полного STATE DELTA (подряд, последняя — baselineSeq)
+    private int baselineSeq;
+    private final ArrayDeque<StateDelta> history = new ArrayDeque<>();
+
+    // буфер полного STATE, переиспользуется между отправками
+    private final GameStateDTO snapshot = new GameStateDTO();
+
+    Viewer(int seat, boolean deltas) {
+        this.seat = seat;
+        this.deltas = deltas;
+    }
+
+    boolean canReceiveDelta() {
+        return deltas && hasBaseline;
+    }
+
+    void resetBaseline() {
+        hasBaseline = false;
+        sentUnits.clear();
+        history.clear();
+    }
+
+    /**
+     * Персональный полный STATE в переиспользуемом буфере; становится baseline.
+     * Буфер валиден до следующего вызова — его нужно отправить сразу.
+     */
+    GameStateDTO snapshot(Game game, int seq) {
+        GameStateDTO dto = GameStateMapper.forViewer(game, seat, snapshot);
+        dto.seq = seq;
+        rememberSnapshot(dto);
+        return dto;
+    }
+
+    /**
+     * Запоминает отправленный полный STATE как baseline для следующих DELTA.
+     */
+    void rememberSnapshot(GameStateDTO dto) {
+        if (!deltas) return;
+
+        int w = dto.width;
+        if (visible == null || visible.length != w * dto.height) {
+            visible = new boolean[w * dto.height];
+        }
+        for (int y = 0; y < dto.height; y++) {
+            for (int x = 0; x < w; x++) {
+                visible[y * w + x] = dto.terrain[y][x] != null;
+            }
+        }
+
+        sentUnits.clear();
+        for (UnitDTO u : dto.units) {
+            sentUnits.put(u.id, u);
+        }
+        hasBaseline = true;
+        baselineSeq = dto.seq;
+        history.clear();
+    }
+
+    /**
+     * Изменения персонального состояния относительно baseline; baseline сдвигается.
+     * Туман проверяется только по клеткам из списка изменений видимости
+     * последнего действия, а не по всей карте.
+     */
+    StateDelta nextDelta(Game game, int seq) {
+        StateMappingEvent event = new StateMappingEvent();
+        event.begin();
+        StateDelta delta = buildDelta(game, seq);
+        GameStateMapper.commit(event, "DELTA", game);
+        return delta;
+    }
+
+    private StateDelta buildDelta(Game game, int seq) {
+        GameMap map = game.getMap();
+        Player p1 = game.getPlayer1();
+        Player p2 = game.getPlayer2();
+        Player me = (seat == 1) ? p1 : p2;
+        VisibilityGrid now = map.getVisibilityGrid(me);
+
+        StateDelta delta = new StateDelta();
+        delta.seq = seq;
+        delta.currentPlayer = game.getCurrentPlayer() == p1 ? 1 : 2;
+        delta.gameOver = game.isGameOver();
+        delta.winner = GameStateMapper.winnerOf(game);
+
+        int w = map.getWidth();
+        for (int i = 0; i < now.getChangedCount(); i++) {
+            int cell = now.getChangedCell(i);
+            boolean v = now.isVisibleCell(cell);
+            if (v == visible[cell]) continue;
+            visible[cell] = v;
+            if (v) {
+                delta.revealedCells.add(cell);
+                delta.revealedTerrain.add(map.getTerrainAt(cell % w, cell / w));
+            } else {
+                delta.hiddenCells.add(cell);
+            }
+        }
+
+        Map<Integer, UnitDTO> current = new HashMap<>();
+        collectUnits(p1, 1, now, current);
+        collectUnits(p2, 2, now, current);
+
+        for (UnitDTO u : current.values()) {
+            UnitDTO old = sentUnits.put(u.id, u);
+            if (old == null || old.x != u.x || old.y != u.y
+                    || old.hp != u.hp || old.skipTurns != u.skipTurns) {
+                delta.units.add(u);
+            }
+        }
+        for (Iterator<Integer> it = sentUnits.keySet().iterator(); it.hasNext(); ) {
+            Integer id = it.next();
+            if (!current.containsKey(id)) {
+                delta.removedUnits.add(id);
+                it.remove();
+            }
+        }
+
+        if (history.size() == HISTORY) {
+            history.removeFirst();
+        }
+        history.addLast(delta);
+        baselineSeq = seq;
+        return delta;
+    }
+
+    /**
+     * DELTA, которые переводят клиента из состояния {@code lastSeq} в baseline.
+     *
+     * @return пустой список, если клиент уже в baseline; null — история этих
+     *         DELTA не хранит, нужен полный STATE
+     */
+    List<StateDelta> deltasSince(int lastSeq) {
+        if (!canReceiveDelta() || lastSeq <= 0 || lastSeq > baselineSeq) return null;
+        int missing = baselineSeq - lastSeq;
+        if (missing > history.size()) return null;
+        List<StateDelta> all = new ArrayList<>(history);
+        return all.subList(all.size() - missing, all.size());
+    }
+
+    private void collectUnits(Player owner, int ownerIdx, VisibilityGrid now, Map<Integer, UnitDTO> out) {
+        for (Unit u : owner.getUnits()) {
+            // враг виден только в видимости
+            if (ownerIdx != seat && !now.isVisible(u.getX(), u.getY())) continue;
+            out.put(u.getId(), GameStateMapper.toUnitDTO(u, ownerIdx, u.getX(), u.getY()));
+        }
+    }
+}
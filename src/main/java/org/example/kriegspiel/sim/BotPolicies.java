@@ -0,0 +1,109 @@
+package org.example.kriegspiel.sim;
+
+import org.example.kriegspiel.ActionBuffer;
+import org.example.kriegspiel.Game;
+import org.example.kriegspiel.map.GameMap;
+import org.example.kriegspiel.map.VisibilityGrid;
+import org.example.kriegspiel.model.Player;
+import org.example.kriegspiel.model.unit.Unit;
+
+import java.util.List;
+import java.util.SplittableRandom;
+
+/**
+ * Встроенные стратегии симулятора и поиск стратегии по имени.
+ */
+public final class BotPolicies {
+    private BotPolicies() {}
+
+    /**
+     * Новый экземпляр стратегии: {@code random}, {@code greedy} или имя класса,
+     * реализующего {@link BotPolicy}.
+     */
+    public static BotPolicy create(String name) {
+        switch (name) {
+            case "random" -> {
+                return BotPolicies::random;
+            }
+            case "greedy" -> {
+                return BotPolicies::greedy;
+            }
+            default -> {
+                try {
+                    return (BotPolicy) Class.forName(name).getDeclaredConstructor().newInstance();
+                } catch (ReflectiveOperationException | ClassCastException ex) {
+                    throw new IllegalArgumentException("Неизвестная стратегия: " + name, ex);
+                }
+            }
+        }
+    }
+
+    /**
+     * Случайное допустимое действие.
+     */
+    static long random(Game game, ActionBuffer actions, SplittableRandom random) {
+        return actions.get(random.nextInt(actions.size()));
+    }
+
+    /**
+     * Атака, если она есть: сначала добивающая, затем самой сильной рукой по
+     * самой слабой цели. Иначе ход к ближайшему видимому врагу, а если врагов
+     * не видно — к углу, где начинал соперник. Равные варианты — случайно.
+     * Ловушки и местность не учитываются.
+     */
+    static long greedy(Game game, ActionBuffer actions, SplittableRandom random) {
+        GameMap map = game.getMap();
+        int w = map.getWidth();
+
+        long best = 0;
+        int bestScore = Integer.MIN_VALUE;
+        int ties = 0;
+        for (int i = 0; i < actions.size(); i++) {
+            if (actions.getKind(i) != ActionBuffer.ATTACK) continue;
+            long a = actions.get(i);
+            Unit attacker = map.getUnitAtCell(ActionBuffer.fromCellOf(a));
+            Unit target = map.getUnitAtCell(ActionBuffer.toCellOf(a));
+            int score = (target.getHp() <= attacker.getAttackPower() ? 1000 : 0)
+                    + 10 * attacker.getAttackPower() - target.getHp();
+            if (score > bestScore) {
+                best = a;
+                bestScore = score;
+                ties = 1;
+            } else if (score == bestScore && random.nextInt(++ties) == 0) {
+                best = a;
+            }
+        }
+        if (bestScore != Integer.MIN_VALUE) return best;
+
+        Player me = game.getCurrentPlayer();
+        VisibilityGrid visible = map.getVisibilityGrid(me);
+        List<Unit> enemies = game.getOpponentPlayer().getUnits();
+        int cornerX = (me == game.getPlayer1()) ? w - 1 : 0;
+        int cornerY = (me == game.getPlayer1()) ? map.getHeight() - 1 : 0;
+
+        int bestDistance = Integer.MAX_VALUE;
+        for (int i = 0; i < actions.size(); i++) {
+            long a = actions.get(i);
+            int to = ActionBuffer.toCellOf(a);
+            int x = to % w;
+            int y = to / w;
+            int distance = Integer.MAX_VALUE;
+            for (int e = 0; e < enemies.size(); e++) {
+                Unit enemy = enemies.get(e);
+                if (!visible.isVisible(enemy.getX(), enemy.getY())) continue;
+                distance = Math.min(distance, Math.abs(enemy.getX() - x) + Math.abs(enemy.getY() - y));
+            }
+            if (distance == Integer.MAX_VALUE) {
+                distance = Math.abs(cornerX - x) + Math.abs(cornerY - y);
+            }
+            if (distance < bestDistance) {
+                best = a;
+                bestDistance = distance;
+                ties = 1;
+            } else if (distance == bestDistance && random.nextInt(++ties) == 0) {
+                best = a;
+            }
+        }
+        return best;
+    }
+}
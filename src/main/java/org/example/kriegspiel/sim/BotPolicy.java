@@ -0,0 +1,25 @@
+package org.example.kriegspiel.sim;
+
+import org.example.kriegspiel.ActionBuffer;
+import org.example.kriegspiel.Game;
+
+import java.util.SplittableRandom;
+
+/**
+ * Стратегия бота для {@link Simulator}: выбирает действие текущего игрока.
+ * Экземпляр создаётся на каждый поток симулятора и вызывается только из него,
+ * поэтому может держать свои буферы. Свою стратегию можно подключить по
+ * имени класса ({@code --p1 com.example.MyPolicy}): нужен публичный
+ * конструктор без параметров.
+ */
+@FunctionalInterface
+public interface BotPolicy {
+
+    /**
+     * @param actions допустимые действия текущего игрока (уже заполнен
+     *                {@link Game#generateActions(ActionBuffer)}, не пуст)
+     * @param random  генератор партии: с тем же seed партия повторяется
+     * @return одно из {@code actions} или {@code ActionBuffer.encode(ActionBuffer.PASS, 0, 0)}
+     */
+    long choose(Game game, ActionBuffer actions, SplittableRandom random);
+}
@@ -0,0 +1,106 @@
+package org.example.kriegspiel.sim;
+
+import org.example.kriegspiel.model.unit.Artillery;
+import org.example.kriegspiel.model.unit.Cavalry;
+import org.example.kriegspiel.model.unit.Unit;
+
+import java.util.Arrays;
+
+/**
+ * Итоги партий. Поток симулятора копит свои итоги в отдельном экземпляре и
+ * сливает их в общий ({@link #mergeFrom}) после каждой пачки партий; общий
+ * экземпляр читается и пополняется под его монитором.
+ */
+final class SimStats {
+
+    static final String[] TYPES = {"Infantry", "Cavalry", "Artillery"};
+
+    long games;
+    long p1Wins;
+    long p2Wins;
+    // партии, упёршиеся в лимит ходов, и взаимное уничтожение
+    long draws;
+    long plies;
+    // число партий по длине в ходах (ход — действие или пропуск одного игрока)
+    final long[] lengths;
+    // kills[тип атакующего][тип погибшего]
+    final long[][] kills = new long[TYPES.length][TYPES.length];
+    final long[] damage = new long[TYPES.length];
+    // урон от ловушек по типу пострадавшего
+    final long[] trapDamage = new long[TYPES.length];
+
+    SimStats(int maxPlies) {
+        this.lengths = new long[maxPlies + 1];
+    }
+
+    static int typeOf(Unit unit) {
+        if (unit instanceof Cavalry) return 1;
+        if (unit instanceof Artillery) return 2;
+        return 0;
+    }
+
+    void gameOver(int winner, int length) {
+        games++;
+        if (winner == 1) p1Wins++;
+        else if (winner == 2) p2Wins++;
+        else draws++;
+        plies += length;
+        lengths[length]++;
+    }
+
+    /**
+     * Добавляет {@code other} к этому экземпляру и обнуляет {@code other}.
+     */
+    synchronized void mergeFrom(SimStats other) {
+        add(other);
+        other.clear();
+    }
+
+    /**
+     * Согласованная копия для отчёта.
+     */
+    synchronized SimStats snapshot() {
+        SimStats copy = new SimStats(lengths.length - 1);
+        copy.add(this);
+        return copy;
+    }
+
+    private void add(SimStats other) {
+        games += other.games;
+        p1Wins += other.p1Wins;
+        p2Wins += other.p2Wins;
+        draws += other.draws;
+        plies += other.plies;
+        for (int i = 0; i < lengths.length; i++) {
+            lengths[i] += other.lengths[i];
+        }
+        for (int a = 0; a < TYPES.length; a++) {
+            for (int t = 0; t < TYPES.length; t++) {
+                kills[a][t] += other.kills[a][t];
+            }
+            damage[a] += other.damage[a];
+            trapDamage[a] += other.trapDamage[a];
+        }
+    }
+
+    private void clear() {
+        games = p1Wins = p2Wins = draws = plies = 0;
+        Arrays.fill(lengths, 0);
+        for (long[] row : kills) Arrays.fill(row, 0);
+        Arrays.fill(damage, 0);
+        Arrays.fill(trapDamage, 0);
+    }
+
+    /**
+     * Длина партии, не превышенная долей {@code q} партий.
+     */
+    int lengthPercentile(double q) {
+        long rank = Math.max(1, (long) Math.ceil(q * games));
+        long seen = 0;
+        for (int i = 0; i < lengths.length; i++) {
+            seen += lengths[i];
+            if (seen >= rank) return i;
+        }
+        return lengths.length - 1;
+    }
+}
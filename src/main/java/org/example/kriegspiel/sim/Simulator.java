@@ -0,0 +1,214 @@
+package org.example.kriegspiel.sim;
+
+import org.example.kriegspiel.ActionBuffer;
+import org.example.kriegspiel.Game;
+import org.example.kriegspiel.map.GameMap;
+import org.example.kriegspiel.model.unit.Unit;
+
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Пакетная симуляция партий бот против бота без сети и без
+ * {@code GameStateMapper}: для подбора характеристик юнитов и генерации
+ * местности. Каждый поток пула держит одну {@link Game} ({@link Game#reset})
+ * и свои стратегии, берёт партии пачками и сливает итоги в общие после
+ * каждой пачки. Раз в интервал печатает скорость и доли побед, в конце —
+ * длины партий и убийства по типам юнитов.
+ *
+ * <pre>
+ * java -cp ... org.example.kriegspiel.sim.Simulator --games 1000000 --p1 greedy --p2 random
+ * </pre>
+ *
+ * Параметры:
+ * <ul>
+ *   <li>{@code --games N} — число партий, по умолчанию 100000;</li>
+ *   <li>{@code --duration S} — остановиться раньше через S секунд, 0 — без ограничения;</li>
+ *   <li>{@code --p1 P}, {@code --p2 P} — стратегии игроков: {@code random}, {@code greedy}
+ *       (по умолчанию) или имя класса {@link BotPolicy};</li>
+ *   <li>{@code --threads T} — потоков, по умолчанию по числу ядер;</li>
+ *   <li>{@code --size W}, {@code --max-turns N} — размер карты и лимит ходов (ничья);</li>
+ *   <li>{@code --seed S} — партия номер i зависит только от S и i, а не от числа потоков;</li>
+ *   <li>{@code --report S} — интервал отчёта в секундах.</li>
+ * </ul>
+ */
+public final class Simulator {
+
+    // партий в пачке: реже слияние итогов, но и реже обновляется отчёт
+    private static final int CHUNK = 256;
+    private static final long PASS = ActionBuffer.encode(ActionBuffer.PASS, 0, 0);
+
+    private long games = 100_000;
+    private int durationSec = 0;
+    private String p1Policy = "greedy";
+    private String p2Policy = "greedy";
+    private int threads = Runtime.getRuntime().availableProcessors();
+    private int size = 12;
+    private int maxPlies = 400;
+    private long seed = 1;
+    private int reportSec = 5;
+
+    private final PrintStream out = System.out;
+    private final AtomicLong nextGame = new AtomicLong();
+    private volatile boolean stopped;
+    private SimStats total;
+
+    public static void main(String[] args) throws Exception {
+        Simulator sim = new Simulator();
+        sim.parse(args);
+        sim.run();
+    }
+
+    private void parse(String[] args) {
+        for (int i = 0; i < args.length; i++) {
+            String arg = args[i];
+            switch (arg) {
+                case "--games" -> games = Long.parseLong(args[++i]);
+                case "--duration" -> durationSec = Integer.parseInt(args[++i]);
+                case "--p1" -> p1Policy = args[++i];
+                case "--p2" -> p2Policy = args[++i];
+                case "--threads" -> threads = Integer.parseInt(args[++i]);
+                case "--size" -> size = Integer.parseInt(args[++i]);
+                case "--max-turns" -> maxPlies = Integer.parseInt(args[++i]);
+                case "--seed" -> seed = Long.parseLong(args[++i]);
+                case "--report" -> reportSec = Integer.parseInt(args[++i]);
+                default -> throw new IllegalArgumentException("Неизвестный параметр: " + arg);
+            }
+        }
+        // стратегии проверяются до запуска потоков
+        BotPolicies.create(p1Policy);
+        BotPolicies.create(p2Policy);
+    }
+
+    private void run() throws Exception {
+        total = new SimStats(maxPlies);
+        AtomicInteger n = new AtomicInteger();
+        ExecutorService pool = Executors.newFixedThreadPool(threads, r -> {
+            Thread t = new Thread(r, "sim-" + n.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+        List<Future<?>> workers = new ArrayList<>(threads);
+        for (int i = 0; i < threads; i++) {
+            workers.add(pool.submit(this::work));
+        }
+        pool.shutdown();
+
+        out.printf("sim: %d games, %s vs %s, map %dx%d, max %d turns, %d threads, seed %d%n",
+                games, p1Policy, p2Policy, size, size, maxPlies, threads, seed);
+        out.println("   time   games/min      games  p1 win%  p2 win%   draw%  turns avg   p50   p90");
+        long start = System.nanoTime();
+        long prevTime = start;
+        long prevGames = 0;
+        boolean done = false;
+        while (!done) {
+            done = pool.awaitTermination(reportSec, TimeUnit.SECONDS);
+            long now = System.nanoTime();
+            if (durationSec > 0 && now - start >= TimeUnit.SECONDS.toNanos(durationSec)) {
+                stopped = true;
+                done = pool.awaitTermination(1, TimeUnit.MINUTES);
+            }
+            SimStats s = total.snapshot();
+            out.printf("%6.0fs %11.0f %10d %8.1f %8.1f %7.1f %10.1f %5d %5d%n",
+                    (now - start) / 1e9, (s.games - prevGames) * 60e9 / (now - prevTime), s.games,
+                    percent(s.p1Wins, s.games), percent(s.p2Wins, s.games), percent(s.draws, s.games),
+                    s.games > 0 ? (double) s.plies / s.games : 0.0,
+                    s.lengthPercentile(0.50), s.lengthPercentile(0.90));
+            prevGames = s.games;
+            prevTime = now;
+        }
+        // ошибка стратегии останавливает прогон
+        for (Future<?> w : workers) {
+            w.get();
+        }
+
+        double elapsed = (System.nanoTime() - start) / 1e9;
+        SimStats s = total.snapshot();
+        out.printf("total: %d games in %.1f s (%.0f/min); p1 %.1f%%, p2 %.1f%%, draw %.1f%%%n",
+                s.games, elapsed, s.games * 60 / elapsed,
+                percent(s.p1Wins, s.games), percent(s.p2Wins, s.games), percent(s.draws, s.games));
+        out.printf("turns: avg %.1f, p50 %d, p90 %d, p99 %d%n",
+                s.games > 0 ? (double) s.plies / s.games : 0.0,
+                s.lengthPercentile(0.50), s.lengthPercentile(0.90), s.lengthPercentile(0.99));
+        out.println("kills per game (row: attacker, column: killed), damage per game:");
+        out.printf("%-10s", "");
+        for (String type : SimStats.TYPES) out.printf(" %9s", type);
+        out.printf(" %9s %9s%n", "damage", "trap dmg");
+        for (int a = 0; a < SimStats.TYPES.length; a++) {
+            out.printf("%-10s", SimStats.TYPES[a]);
+            for (int t = 0; t < SimStats.TYPES.length; t++) {
+                out.printf(" %9.3f", perGame(s.kills[a][t], s.games));
+            }
+            out.printf(" %9.2f %9.2f%n", perGame(s.damage[a], s.games), perGame(s.trapDamage[a], s.games));
+        }
+    }
+
+    private static double percent(long part, long whole) {
+        return whole > 0 ? 100.0 * part / whole : 0.0;
+    }
+
+    private static double perGame(long value, long games) {
+        return games > 0 ? (double) value / games : 0.0;
+    }
+
+    // поток пула: одна партия и одни стратегии на весь прогон
+    private void work() {
+        Game game = new Game(size, size, "Игрок 1", "Игрок 2", seed);
+        ActionBuffer actions = new ActionBuffer();
+        BotPolicy[] policies = {null, BotPolicies.create(p1Policy), BotPolicies.create(p2Policy)};
+        SimStats local = new SimStats(maxPlies);
+        while (!stopped) {
+            long first = nextGame.getAndAdd(CHUNK);
+            if (first >= games) break;
+            long last = Math.min(games, first + CHUNK);
+            for (long i = first; i < last && !stopped; i++) {
+                play(game, i, actions, policies, local);
+            }
+            total.mergeFrom(local);
+        }
+    }
+
+    private void play(Game game, long index, ActionBuffer actions, BotPolicy[] policies, SimStats stats) {
+        SplittableRandom random = new SplittableRandom(seed + index * 0x9E3779B97F4A7C15L);
+        game.reset(random.nextLong());
+        GameMap map = game.getMap();
+
+        int ply = 0;
+        while (!game.isGameOver() && ply < maxPlies) {
+            int seat = (game.getCurrentPlayer() == game.getPlayer1()) ? 1 : 2;
+            long action = (game.generateActions(actions) == 0)
+                    ? PASS : policies[seat].choose(game, actions, random);
+            int kind = ActionBuffer.kindOf(action);
+            if (kind == ActionBuffer.ATTACK) {
+                Unit attacker = map.getUnitAtCell(ActionBuffer.fromCellOf(action));
+                Unit target = map.getUnitAtCell(ActionBuffer.toCellOf(action));
+                int hp = target.getHp();
+                game.make(action);
+                stats.damage[SimStats.typeOf(attacker)] += hp - target.getHp();
+                if (!target.isAlive()) {
+                    stats.kills[SimStats.typeOf(attacker)][SimStats.typeOf(target)]++;
+                }
+            } else if (kind == ActionBuffer.MOVE) {
+                Unit unit = map.getUnitAtCell(ActionBuffer.fromCellOf(action));
+                int hp = unit.getHp();
+                game.make(action);
+                stats.trapDamage[SimStats.typeOf(unit)] += hp - unit.getHp();
+            } else {
+                game.make(action);
+            }
+            ply++;
+        }
+
+        boolean p1Alive = game.getPlayer1().hasUnits();
+        boolean p2Alive = game.getPlayer2().hasUnits();
+        stats.gameOver(p1Alive && !p2Alive ? 1 : (p2Alive && !p1Alive ? 2 : 0), ply);
+    }
+}
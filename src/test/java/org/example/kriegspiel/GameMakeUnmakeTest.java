@@ -0,0 +1,181 @@
+package org.example.kriegspiel;
+
+import org.example.kriegspiel.map.GameMap;
+import org.example.kriegspiel.map.ZobristHash;
+import org.example.kriegspiel.model.Player;
+import org.example.kriegspiel.model.unit.Unit;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.SplittableRandom;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Случайные блуждания make/unmake: откат восстанавливает позицию точно,
+ * генератор действий совпадает с перебором {@code canMoveTo}/{@code canAttack},
+ * инкрементальный хэш — с пересчётом с нуля.
+ */
+class GameMakeUnmakeTest {
+
+    private static final int SEEDS = 60;
+    private static final int STEPS = 400;
+
+    // что встретилось за все блуждания: иначе тест мог бы не дойти до ловушек и гибели
+    private int traps;
+    private int kills;
+    private int stuns;
+    private int unmakes;
+
+    @Test
+    void unmakeRestoresPositionExactly() {
+        walk(false);
+        assertTrue(unmakes > 1000, "откатов: " + unmakes);
+        assertTrue(traps > 0, "ловушек: " + traps);
+        assertTrue(kills > 0, "убийств: " + kills);
+        assertTrue(stuns > 0, "оглушений: " + stuns);
+    }
+
+    @Test
+    void incrementalHashMatchesRecomputation() {
+        walk(true);
+    }
+
+    private void walk(boolean checkHash) {
+        ActionBuffer actions = new ActionBuffer();
+        for (int seed = 1; seed <= SEEDS; seed++) {
+            SplittableRandom random = new SplittableRandom(seed);
+            Game game = new Game(10, 10, "Игрок 1", "Игрок 2", seed);
+            List<String> before = new ArrayList<>();
+            for (int step = 0; step < STEPS; step++) {
+                if (checkHash) {
+                    assertEquals(recomputeHash(game), game.getHash(), "seed " + seed + ", шаг " + step);
+                }
+                if (!before.isEmpty() && (game.isGameOver() || random.nextInt(10) < 3)) {
+                    game.unmake();
+                    unmakes++;
+                    assertEquals(before.remove(before.size() - 1), snapshot(game), "seed " + seed + ", шаг " + step);
+                    continue;
+                }
+                if (game.isGameOver()) break;
+
+                int n = game.generateActions(actions);
+                assertEquals(bruteForce(game), generated(actions), "seed " + seed + ", шаг " + step);
+                long action = (n == 0) ? ActionBuffer.encode(ActionBuffer.PASS, 0, 0) : pick(actions, random);
+
+                int trapsBefore = countTraps(game.getMap());
+                int unitsBefore = game.getMap().getUnitCount();
+                Unit mover = (ActionBuffer.kindOf(action) == ActionBuffer.MOVE)
+                        ? game.getMap().getUnitAtCell(ActionBuffer.fromCellOf(action)) : null;
+                before.add(snapshot(game));
+                game.make(action);
+                if (countTraps(game.getMap()) < trapsBefore) traps++;
+                if (game.getMap().getUnitCount() < unitsBefore) kills++;
+                if (mover != null && mover.getSkipTurnsRemaining() > 0) stuns++;
+            }
+            // полный откат возвращает начальную расстановку
+            while (!before.isEmpty()) {
+                game.unmake();
+                assertEquals(before.remove(before.size() - 1), snapshot(game), "seed " + seed);
+            }
+            assertEquals(snapshot(new Game(10, 10, "Игрок 1", "Игрок 2", seed)), snapshot(game), "seed " + seed);
+        }
+    }
+
+    // атаки чаще, чем в равномерном выборе: иначе юниты почти не гибнут
+    private static long pick(ActionBuffer actions, SplittableRandom random) {
+        if (random.nextBoolean()) {
+            for (int i = 0, start = random.nextInt(actions.size()); i < actions.size(); i++) {
+                int k = (start + i) % actions.size();
+                if (actions.getKind(k) == ActionBuffer.ATTACK) return actions.get(k);
+            }
+        }
+        return actions.get(random.nextInt(actions.size()));
+    }
+
+    private static Set<Long> generated(ActionBuffer actions) {
+        Set<Long> set = new HashSet<>();
+        for (int i = 0; i < actions.size(); i++) set.add(actions.get(i));
+        assertEquals(actions.size(), set.size(), "повторы в генераторе");
+        return set;
+    }
+
+    private static Set<Long> bruteForce(Game game) {
+        Set<Long> set = new HashSet<>();
+        if (game.isActionPerformedThisTurn()) return set;
+        GameMap map = game.getMap();
+        int w = map.getWidth();
+        for (Unit unit : game.getCurrentPlayer().getUnits()) {
+            int from = unit.getY() * w + unit.getX();
+            for (int y = 0; y < map.getHeight(); y++) {
+                for (int x = 0; x < w; x++) {
+                    if (unit.canMoveTo(x, y, map)) set.add(ActionBuffer.encode(ActionBuffer.MOVE, from, y * w + x));
+                }
+            }
+            for (Unit target : game.getOpponentPlayer().getUnits()) {
+                if (unit.canAttack(target.getX(), target.getY(), map)) {
+                    set.add(ActionBuffer.encode(ActionBuffer.ATTACK, from, target.getY() * w + target.getX()));
+                }
+            }
+        }
+        return set;
+    }
+
+    private static long recomputeHash(Game game) {
+        ZobristHash hash = new ZobristHash();
+        GameMap map = game.getMap();
+        int w = map.getWidth();
+        for (Player p : List.of(game.getPlayer1(), game.getPlayer2())) {
+            for (Unit u : p.getUnits()) {
+                hash.toggleUnitAt(u.getId(), u.getY() * w + u.getX());
+                hash.toggleHp(u.getId(), u.getHp());
+                hash.toggleStun(u.getId(), u.getSkipTurnsRemaining());
+            }
+        }
+        for (int y = 0; y < map.getHeight(); y++) {
+            for (int x = 0; x < w; x++) {
+                if (map.hasTrapAt(x, y)) hash.toggleTrap(y * w + x);
+            }
+        }
+        if (game.getCurrentPlayer() == game.getPlayer2()) hash.toggleSide();
+        return hash.get();
+    }
+
+    private static int countTraps(GameMap map) {
+        int n = 0;
+        for (int y = 0; y < map.getHeight(); y++) {
+            for (int x = 0; x < map.getWidth(); x++) {
+                if (map.hasTrapAt(x, y)) n++;
+            }
+        }
+        return n;
+    }
+
+    // всё, что должен восстановить unmake: порядок юнитов в списках, клетки, здоровье,
+    // оглушение, ловушки, сторону хода и хэш
+    private static String snapshot(Game game) {
+        StringBuilder sb = new StringBuilder();
+        GameMap map = game.getMap();
+        for (Player p : List.of(game.getPlayer1(), game.getPlayer2())) {
+            sb.append(p.getName()).append(':');
+            for (Unit u : p.getUnits()) {
+                sb.append(' ').append(u.getId()).append('@').append(u.getX()).append(',').append(u.getY())
+                        .append(" hp").append(u.getHp()).append(" skip").append(u.getSkipTurnsRemaining());
+            }
+            sb.append('\n');
+        }
+        for (int cell = 0; cell < map.getWidth() * map.getHeight(); cell++) {
+            Unit u = map.getUnitAtCell(cell);
+            if (u != null) sb.append(cell).append('=').append(u.getId()).append(' ');
+            if (map.hasTrapAt(cell % map.getWidth(), cell / map.getWidth())) sb.append('T').append(cell).append(' ');
+        }
+        sb.append("\nturn ").append(game.getCurrentPlayer().getName())
+                .append(" acted ").append(game.isActionPerformedThisTurn())
+                .append(" hash ").append(Long.toHexString(game.getHash()));
+        return sb.toString();
+    }
+}
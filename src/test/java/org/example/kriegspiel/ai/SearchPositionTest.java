@@ -0,0 +1,79 @@
+package org.example.kriegspiel.ai;
+
+import org.example.kriegspiel.ActionBuffer;
+import org.example.kriegspiel.Game;
+import org.example.kriegspiel.map.VisibilityGrid;
+import org.example.kriegspiel.model.Player;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashSet;
+import java.util.Set;
+import java.util.SplittableRandom;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Генератор поиска против {@link Game#generateActions}: когда игрок видит всю карту,
+ * у позиции поиска те же действия, что у партии, — правила не разошлись.
+ */
+class SearchPositionTest {
+
+    @Test
+    void fullyVisiblePositionHasSameActionsAsGame() {
+        ActionBuffer buffer = new ActionBuffer();
+        ActionList list = new ActionList();
+        int compared = 0;
+        for (int seed = 1; seed <= 300; seed++) {
+            SplittableRandom random = new SplittableRandom(seed);
+            Game game = new Game(6, 6, "Игрок 1", "Игрок 2", seed);
+            for (int ply = 0; ply < 60 && !game.isGameOver(); ply++) {
+                Player viewer = game.getCurrentPlayer();
+                int n = game.generateActions(buffer);
+                if (seesWholeMap(game, viewer)) {
+                    SearchPosition position = SearchPosition.fromView(game, viewer);
+                    position.generate(list);
+                    assertEquals(fromGame(buffer), fromSearch(position, list), "seed " + seed + ", ход " + ply);
+                    compared++;
+                }
+                game.make(n == 0 ? ActionBuffer.encode(ActionBuffer.PASS, 0, 0) : buffer.get(random.nextInt(n)));
+            }
+        }
+        assertTrue(compared > 500, "сравнено позиций: " + compared);
+    }
+
+    private static boolean seesWholeMap(Game game, Player viewer) {
+        VisibilityGrid visible = game.getMap().getVisibilityGrid(viewer);
+        for (int cell = 0; cell < game.getMap().getWidth() * game.getMap().getHeight(); cell++) {
+            if (!visible.isVisibleCell(cell)) return false;
+        }
+        return true;
+    }
+
+    private static Set<Long> fromGame(ActionBuffer buffer) {
+        Set<Long> set = new HashSet<>();
+        for (int i = 0; i < buffer.size(); i++) set.add(buffer.get(i));
+        if (set.isEmpty()) set.add(ActionBuffer.encode(ActionBuffer.PASS, 0, 0));
+        return set;
+    }
+
+    // действие поиска в кодировке ActionBuffer: индекс юнита -> его клетка
+    private static Set<Long> fromSearch(SearchPosition position, ActionList list) {
+        Set<Long> set = new HashSet<>();
+        int w = position.getWidth();
+        for (int i = 0; i < list.size(); i++) {
+            long a = list.get(i);
+            int u = SearchPosition.unitOf(a);
+            int from = position.getUnitY(u) * w + position.getUnitX(u);
+            int kind = switch (SearchPosition.kindOf(a)) {
+                case SearchPosition.MOVE -> ActionBuffer.MOVE;
+                case SearchPosition.ATTACK -> ActionBuffer.ATTACK;
+                default -> ActionBuffer.PASS;
+            };
+            set.add(kind == ActionBuffer.PASS ? ActionBuffer.encode(kind, 0, 0)
+                    : ActionBuffer.encode(kind, from, SearchPosition.cellOf(a)));
+        }
+        assertEquals(list.size(), set.size(), "повторы в генераторе поиска");
+        return set;
+    }
+}
@@ -0,0 +1,80 @@
+package org.example.kriegspiel.map;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class MapGeneratorTest {
+
+    // несколько тайлов с неполными крайними, одна строка тайлов, ровно тайл, меньше тайла
+    private static final int[][] SIZES = {{150, 130}, {200, 70}, {64, 64}, {65, 129}, {12, 12}};
+    private static final long[] SEEDS = {1, 42, -7, 0x9E3779B97F4A7C15L};
+
+    @Test
+    void sameSeedGivesSameMapForAnyThreadCount() {
+        ForkJoinPool one = new ForkJoinPool(1);
+        ForkJoinPool three = new ForkJoinPool(3);
+        try {
+            for (int[] size : SIZES) {
+                int w = size[0];
+                int h = size[1];
+                for (long seed : SEEDS) {
+                    byte[] expected = new byte[w * h];
+                    int[] expectedTraps = MapGenerator.generate(seed, w, h, expected, null);
+                    for (ForkJoinPool pool : new ForkJoinPool[]{one, three, ForkJoinPool.commonPool()}) {
+                        byte[] terrain = new byte[w * h];
+                        int[] traps = MapGenerator.generate(seed, w, h, terrain, pool);
+                        String where = w + "x" + h + " seed " + seed + " threads " + pool.getParallelism();
+                        assertArrayEquals(expected, terrain, where);
+                        assertArrayEquals(expectedTraps, traps, where);
+                    }
+                }
+            }
+        } finally {
+            one.shutdownNow();
+            three.shutdownNow();
+        }
+    }
+
+    @Test
+    void seedChangesMap() {
+        byte[] a = new byte[150 * 130];
+        byte[] b = new byte[150 * 130];
+        MapGenerator.generate(1, 150, 130, a, null);
+        MapGenerator.generate(2, 150, 130, b, null);
+        assertFalse(Arrays.equals(a, b));
+    }
+
+    @Test
+    void trapsAreDistinctAndOnAllowedCells() {
+        for (int[] size : SIZES) {
+            int w = size[0];
+            int h = size[1];
+            for (long seed = 0; seed < 200; seed++) {
+                byte[] terrain = new byte[w * h];
+                int[] traps = MapGenerator.generate(seed, w, h, terrain, null);
+                assertEquals(Math.max(3, Math.min(w * h / 20, 15)), traps.length, w + "x" + h);
+                Set<Integer> seen = new HashSet<>();
+                for (int cell : traps) {
+                    String where = w + "x" + h + " seed " + seed + " cell " + cell;
+                    assertTrue(seen.add(cell), where + ": повтор");
+                    assertTrue(cell >= 0 && cell < w * h, where + ": вне карты");
+                    assertNotEquals(TerrainType.SWAMP.ordinal(), (int) terrain[cell], where + ": болото");
+                    int x = cell % w;
+                    int y = cell / w;
+                    boolean start = (x < 3 && y < 3) || (x >= w - 3 && y >= h - 3);
+                    assertFalse(start, where + ": стартовая зона");
+                }
+            }
+        }
+    }
+}
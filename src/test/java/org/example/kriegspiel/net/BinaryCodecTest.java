@@ -0,0 +1,265 @@
+package org.example.kriegspiel.net;
+
+import org.example.kriegspiel.map.TerrainType;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class BinaryCodecTest {
+
+    private static NetMessage roundTrip(NetMessage msg) {
+        return BinaryCodec.decode(ByteBuffer.wrap(BinaryCodec.encode(msg)));
+    }
+
+    // кадр из отдельных байтов; varint меньше 128 — один байт
+    private static ByteBuffer frame(int... bytes) {
+        byte[] b = new byte[bytes.length];
+        for (int i = 0; i < bytes.length; i++) b[i] = (byte) bytes[i];
+        return ByteBuffer.wrap(b);
+    }
+
+    /**
+     * Карта 3×2: клетка (1,0) и вся нижняя строка кроме (0,1) в тумане.
+     */
+    static GameStateDTO sampleState() {
+        GameStateDTO dto = new GameStateDTO();
+        dto.seq = 7;
+        dto.width = 3;
+        dto.height = 2;
+        dto.player1Name = "Анна";
+        dto.player2Name = null;
+        dto.currentPlayer = 2;
+        dto.terrain = new TerrainType[][]{
+                {TerrainType.PLAIN, null, TerrainType.SWAMP},
+                {TerrainType.HILL, null, null}
+        };
+        dto.traps = new boolean[][]{{false, false, true}, {false, false, false}};
+        UnitDTO u = new UnitDTO();
+        u.id = 3;
+        u.type = "Cavalry";
+        u.owner = 1;
+        u.hp = 12;
+        u.skipTurns = 1;
+        u.x = 2;
+        u.y = 0;
+        dto.units.add(u);
+        UnitDTO other = new UnitDTO();
+        other.id = 200;
+        other.type = "Scout";
+        other.owner = 2;
+        other.hp = 5;
+        other.x = 0;
+        other.y = 1;
+        dto.units.add(other);
+        dto.gameOver = true;
+        dto.winner = 1;
+        return dto;
+    }
+
+    static StateDelta sampleDelta() {
+        StateDelta d = new StateDelta();
+        d.seq = 8;
+        d.currentPlayer = 1;
+        UnitDTO u = new UnitDTO();
+        u.id = 3;
+        u.type = "Infantry";
+        u.owner = 1;
+        u.hp = 9;
+        u.x = 1;
+        u.y = 1;
+        d.units.add(u);
+        d.removedUnits.add(200);
+        d.revealedCells.addAll(List.of(1, 4, 5));
+        d.revealedTerrain.addAll(List.of(TerrainType.FOREST, TerrainType.PLAIN, TerrainType.HILL));
+        d.hiddenCells.add(3);
+        return d;
+    }
+
+    static void assertStateEquals(GameStateDTO expected, GameStateDTO actual) {
+        assertEquals(expected.seq, actual.seq);
+        assertEquals(expected.width, actual.width);
+        assertEquals(expected.height, actual.height);
+        assertEquals(expected.player1Name, actual.player1Name);
+        assertEquals(expected.player2Name, actual.player2Name);
+        assertEquals(expected.currentPlayer, actual.currentPlayer);
+        for (int y = 0; y < expected.height; y++) {
+            assertArrayEquals(expected.terrain[y], actual.terrain[y]);
+            assertArrayEquals(expected.traps[y], actual.traps[y]);
+        }
+        assertUnitsEqual(expected.units, actual.units);
+        assertEquals(expected.gameOver, actual.gameOver);
+        assertEquals(expected.winner, actual.winner);
+    }
+
+    static void assertDeltaEquals(StateDelta expected, StateDelta actual) {
+        assertEquals(expected.seq, actual.seq);
+        assertEquals(expected.currentPlayer, actual.currentPlayer);
+        assertEquals(expected.gameOver, actual.gameOver);
+        assertEquals(expected.winner, actual.winner);
+        assertUnitsEqual(expected.units, actual.units);
+        assertEquals(expected.removedUnits, actual.removedUnits);
+        assertEquals(expected.revealedCells, actual.revealedCells);
+        assertEquals(expected.revealedTerrain, actual.revealedTerrain);
+        assertEquals(expected.hiddenCells, actual.hiddenCells);
+    }
+
+    private static void assertUnitsEqual(List<UnitDTO> expected, List<UnitDTO> actual) {
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            UnitDTO e = expected.get(i);
+            UnitDTO a = actual.get(i);
+            assertEquals(e.id, a.id);
+            assertEquals(e.type, a.type);
+            assertEquals(e.owner, a.owner);
+            assertEquals(e.hp, a.hp);
+            assertEquals(e.skipTurns, a.skipTurns);
+            assertEquals(e.x, a.x);
+            assertEquals(e.y, a.y);
+        }
+    }
+
+    @Test
+    void stateWithFogRoundTrip() {
+        GameStateDTO dto = sampleState();
+        NetMessage msg = roundTrip(new NetMessage(Protocol.TYPE_STATE, dto));
+        assertEquals(Protocol.TYPE_STATE, msg.type);
+        assertStateEquals(dto, (GameStateDTO) msg.payload);
+    }
+
+    @Test
+    void deltaRoundTrip() {
+        StateDelta d = sampleDelta();
+        NetMessage msg = roundTrip(new NetMessage(Protocol.TYPE_DELTA, d));
+        assertEquals(Protocol.TYPE_DELTA, msg.type);
+        assertDeltaEquals(d, (StateDelta) msg.payload);
+    }
+
+    @Test
+    void joinWithResumeToken() {
+        JoinRequest join = new JoinRequest("Анна", "r1", Protocol.CAP_BINARY);
+        join.vsBot = true;
+        join.resumeToken = "tok-1";
+        join.lastSeq = 42;
+        JoinRequest back = (JoinRequest) roundTrip(new NetMessage(Protocol.TYPE_JOIN, join)).payload;
+        assertEquals("Анна", back.playerName);
+        assertEquals("r1", back.roomId);
+        assertEquals(Protocol.CAP_BINARY, back.capabilities);
+        assertTrue(back.vsBot);
+        assertEquals("tok-1", back.resumeToken);
+        assertEquals(42, back.lastSeq);
+    }
+
+    @Test
+    void joinWithoutResumeToken() {
+        JoinRequest back = (JoinRequest) roundTrip(
+                new NetMessage(Protocol.TYPE_JOIN, new JoinRequest("b"))).payload;
+        assertEquals("b", back.playerName);
+        assertNull(back.roomId);
+        assertFalse(back.vsBot);
+        assertNull(back.resumeToken);
+        assertEquals(0, back.lastSeq);
+
+        // кадр прежней версии: после vsBot ничего нет
+        NetMessage old = BinaryCodec.decodeRequest(frame(1, 1, 2, 'b', 0, 0, 0));
+        JoinRequest legacy = (JoinRequest) old.payload;
+        assertEquals("b", legacy.playerName);
+        assertNull(legacy.resumeToken);
+    }
+
+    @Test
+    void nullStrings() {
+        ErrorMessage error = (ErrorMessage) roundTrip(
+                new NetMessage(Protocol.TYPE_ERROR, new ErrorMessage(null))).payload;
+        assertNull(error.message);
+        ErrorMessage empty = (ErrorMessage) roundTrip(
+                new NetMessage(Protocol.TYPE_ERROR, new ErrorMessage(""))).payload;
+        assertEquals("", empty.message);
+
+        RoleMessage role = (RoleMessage) roundTrip(
+                new NetMessage(Protocol.TYPE_ROLE, new RoleMessage(2, null, null))).payload;
+        assertEquals(2, role.playerIndex);
+        assertNull(role.roomId);
+        assertNull(role.resumeToken);
+    }
+
+    @Test
+    void actionRoundTrip() {
+        ActionRequest a = (ActionRequest) roundTrip(new NetMessage(Protocol.TYPE_ACTION,
+                new ActionRequest(Protocol.ACTION_ATTACK, -1, 2, 300, -400))).payload;
+        assertEquals(Protocol.ACTION_ATTACK, a.action);
+        assertEquals(-1, a.fromX);
+        assertEquals(2, a.fromY);
+        assertEquals(300, a.toX);
+        assertEquals(-400, a.toY);
+    }
+
+    @Test
+    void rejectsStringLongerThanFrame() {
+        // JOIN: имя длиной 2^28 - 2 байт при пустом кадре
+        assertThrows(IllegalArgumentException.class,
+                () -> BinaryCodec.decodeRequest(frame(1, 1, 0xFF, 0xFF, 0xFF, 0x7F)));
+    }
+
+    @Test
+    void rejectsNegativeStringLength() {
+        // пятибайтовый varint с переполнением в знак
+        assertThrows(IllegalArgumentException.class,
+                () -> BinaryCodec.decodeRequest(frame(1, 1, 0xFF, 0xFF, 0xFF, 0xFF, 0x0F)));
+    }
+
+    @Test
+    void rejectsMapLargerThanLimit() {
+        // STATE: seq 0, ширина 2^21 - 1
+        assertThrows(IllegalArgumentException.class,
+                () -> BinaryCodec.decode(frame(1, 3, 0, 0xFF, 0xFF, 0x7F, 1, 0, 0, 0, 0, 0)));
+    }
+
+    @Test
+    void rejectsMaskLongerThanFrame() {
+        // STATE 4096×4096 без маски тумана
+        assertThrows(IllegalArgumentException.class,
+                () -> BinaryCodec.decode(frame(1, 3, 0, 0x80, 0x20, 0x80, 0x20, 0, 0, 0, 0, 0)));
+    }
+
+    @Test
+    void rejectsTrapOutsideMap() {
+        // STATE 1×1 в тумане, ловушка в клетке 5
+        assertThrows(IllegalArgumentException.class,
+                () -> BinaryCodec.decode(frame(1, 3, 0, 1, 1, 0, 0, 0, 0, 0, 0, 1, 5, 0)));
+    }
+
+    @Test
+    void rejectsUnitOutsideMap() {
+        // STATE 1×1, юнит пехоты в (3, 0)
+        assertThrows(IllegalArgumentException.class,
+                () -> BinaryCodec.decode(frame(1, 3, 0, 1, 1, 0, 0, 0, 0, 0, 0, 0, 1, 1, 0, 1, 5, 0, 3, 0)));
+    }
+
+    @Test
+    void rejectsCountLongerThanFrame() {
+        // DELTA: 100 юнитов в пустом кадре
+        assertThrows(IllegalArgumentException.class,
+                () -> BinaryCodec.decode(frame(1, 4, 1, 1, 0, 0, 100)));
+    }
+
+    @Test
+    void requestDecoderRefusesServerMessages() {
+        byte[] state = BinaryCodec.encode(new NetMessage(Protocol.TYPE_STATE, sampleState()));
+        assertThrows(IllegalArgumentException.class, () -> BinaryCodec.decodeRequest(ByteBuffer.wrap(state)));
+        byte[] delta = BinaryCodec.encode(new NetMessage(Protocol.TYPE_DELTA, sampleDelta()));
+        assertThrows(IllegalArgumentException.class, () -> BinaryCodec.decodeRequest(ByteBuffer.wrap(delta)));
+        byte[] info = BinaryCodec.encode(new NetMessage(Protocol.TYPE_INFO, new InfoMessage("x")));
+        assertThrows(IllegalArgumentException.class, () -> BinaryCodec.decodeRequest(ByteBuffer.wrap(info)));
+
+        byte[] resync = BinaryCodec.encode(new NetMessage(Protocol.TYPE_RESYNC, null));
+        assertEquals(Protocol.TYPE_RESYNC, BinaryCodec.decodeRequest(ByteBuffer.wrap(resync)).type);
+    }
+}
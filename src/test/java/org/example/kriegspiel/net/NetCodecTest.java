@@ -0,0 +1,117 @@
+package org.example.kriegspiel.net;
+
+import com.google.gson.Gson;
+import org.junit.jupiter.api.Test;
+
+import static org.example.kriegspiel.net.BinaryCodecTest.assertDeltaEquals;
+import static org.example.kriegspiel.net.BinaryCodecTest.assertStateEquals;
+import static org.example.kriegspiel.net.BinaryCodecTest.sampleDelta;
+import static org.example.kriegspiel.net.BinaryCodecTest.sampleState;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class NetCodecTest {
+
+    private final Gson gson = NetCodec.gson();
+    private final Gson server = NetCodec.serverGson();
+
+    private NetMessage roundTrip(NetMessage msg) {
+        return gson.fromJson(gson.toJson(msg), NetMessage.class);
+    }
+
+    @Test
+    void stateWithFogRoundTrip() {
+        GameStateDTO dto = sampleState();
+        NetMessage msg = roundTrip(new NetMessage(Protocol.TYPE_STATE, dto));
+        assertEquals(Protocol.TYPE_STATE, msg.type);
+        assertStateEquals(dto, (GameStateDTO) msg.payload);
+    }
+
+    @Test
+    void deltaRoundTrip() {
+        StateDelta d = sampleDelta();
+        NetMessage msg = roundTrip(new NetMessage(Protocol.TYPE_DELTA, d));
+        assertEquals(Protocol.TYPE_DELTA, msg.type);
+        assertDeltaEquals(d, (StateDelta) msg.payload);
+    }
+
+    @Test
+    void joinWithResumeToken() {
+        JoinRequest join = new JoinRequest("Анна", "r1", Protocol.CAP_BINARY);
+        join.vsBot = true;
+        join.resumeToken = "tok-1";
+        join.lastSeq = 42;
+        JoinRequest back = (JoinRequest) server.fromJson(
+                gson.toJson(new NetMessage(Protocol.TYPE_JOIN, join)), NetMessage.class).payload;
+        assertEquals("Анна", back.playerName);
+        assertEquals("r1", back.roomId);
+        assertEquals(Protocol.CAP_BINARY, back.capabilities);
+        assertTrue(back.vsBot);
+        assertEquals("tok-1", back.resumeToken);
+        assertEquals(42, back.lastSeq);
+    }
+
+    @Test
+    void joinWithoutResumeToken() {
+        NetMessage msg = server.fromJson("{\"type\":\"JOIN\",\"payload\":{\"playerName\":\"b\"}}", NetMessage.class);
+        JoinRequest back = (JoinRequest) msg.payload;
+        assertEquals("b", back.playerName);
+        assertNull(back.roomId);
+        assertFalse(back.vsBot);
+        assertNull(back.resumeToken);
+        assertEquals(0, back.lastSeq);
+    }
+
+    @Test
+    void nullStrings() {
+        ErrorMessage error = (ErrorMessage) roundTrip(
+                new NetMessage(Protocol.TYPE_ERROR, new ErrorMessage(null))).payload;
+        assertNull(error.message);
+        RoleMessage role = (RoleMessage) roundTrip(
+                new NetMessage(Protocol.TYPE_ROLE, new RoleMessage(1, null, null))).payload;
+        assertEquals(1, role.playerIndex);
+        assertNull(role.roomId);
+        assertNull(role.resumeToken);
+    }
+
+    @Test
+    void payloadBeforeType() {
+        NetMessage msg = server.fromJson(
+                "{\"payload\":{\"action\":\"MOVE\",\"fromX\":1,\"toY\":-2},\"type\":\"ACTION\"}", NetMessage.class);
+        ActionRequest a = assertInstanceOf(ActionRequest.class, msg.payload);
+        assertEquals(Protocol.ACTION_MOVE, a.action);
+        assertEquals(1, a.fromX);
+        assertEquals(-2, a.toY);
+    }
+
+    @Test
+    void rejectsMapLargerThanLimit() {
+        String json = "{\"type\":\"STATE\",\"payload\":{\"width\":100000,\"height\":100000}}";
+        assertThrows(IllegalArgumentException.class, () -> gson.fromJson(json, NetMessage.class));
+        String negative = "{\"type\":\"STATE\",\"payload\":{\"width\":-1,\"height\":3}}";
+        assertThrows(IllegalArgumentException.class, () -> gson.fromJson(negative, NetMessage.class));
+    }
+
+    @Test
+    void serverSkipsServerMessages() {
+        String state = "{\"type\":\"STATE\",\"payload\":{\"width\":100000,\"height\":100000}}";
+        NetMessage msg = server.fromJson(state, NetMessage.class);
+        assertEquals(Protocol.TYPE_STATE, msg.type);
+        assertNull(msg.payload);
+
+        NetMessage delta = server.fromJson(gson.toJson(new NetMessage(Protocol.TYPE_DELTA, sampleDelta())),
+                NetMessage.class);
+        assertNull(delta.payload);
+    }
+
+    @Test
+    void serverStillWritesState() {
+        GameStateDTO dto = sampleState();
+        NetMessage msg = gson.fromJson(server.toJson(new NetMessage(Protocol.TYPE_STATE, dto)), NetMessage.class);
+        assertStateEquals(dto, (GameStateDTO) msg.payload);
+    }
+}
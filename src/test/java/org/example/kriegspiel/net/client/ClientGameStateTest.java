@@ -0,0 +1,81 @@
+package org.example.kriegspiel.net.client;
+
+import org.example.kriegspiel.map.TerrainType;
+import org.example.kriegspiel.net.GameStateDTO;
+import org.example.kriegspiel.net.StateDelta;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ClientGameStateTest {
+
+    private static ClientGameState state() {
+        GameStateDTO dto = new GameStateDTO();
+        dto.seq = 5;
+        dto.width = 3;
+        dto.height = 2;
+        dto.currentPlayer = 1;
+        dto.terrain = new TerrainType[2][3];
+        dto.traps = new boolean[2][3];
+        return new ClientGameState(dto);
+    }
+
+    private static StateDelta delta(List<Integer> revealed, List<TerrainType> terrain, List<Integer> hidden) {
+        StateDelta d = new StateDelta();
+        d.seq = 6;
+        d.currentPlayer = 2;
+        d.gameOver = true;
+        d.winner = 2;
+        d.revealedCells.addAll(revealed);
+        d.revealedTerrain.addAll(terrain);
+        d.hiddenCells.addAll(hidden);
+        return d;
+    }
+
+    private static void assertUntouched(ClientGameState s, int version) {
+        assertEquals(5, s.getDto().seq);
+        assertEquals(1, s.getCurrentPlayer());
+        assertFalse(s.isGameOver());
+        assertEquals(0, s.getWinner());
+        assertEquals(version, s.getVersion());
+    }
+
+    @Test
+    void appliesDelta() {
+        ClientGameState s = state();
+        assertTrue(s.applyDelta(delta(List.of(0, 5), List.of(TerrainType.HILL, TerrainType.SWAMP), List.of())));
+        assertEquals(6, s.getDto().seq);
+        assertEquals(2, s.getCurrentPlayer());
+        assertEquals(TerrainType.HILL, s.getTerrainAt(0, 0));
+        assertEquals(TerrainType.SWAMP, s.getTerrainAt(2, 1));
+
+        StateDelta next = delta(List.of(), List.of(), List.of(5));
+        next.seq = 7;
+        assertTrue(s.applyDelta(next));
+        assertNull(s.getTerrainAt(2, 1));
+    }
+
+    @Test
+    void rejectsCellOutsideMap() {
+        ClientGameState s = state();
+        int version = s.getVersion();
+        assertFalse(s.applyDelta(delta(List.of(6), List.of(TerrainType.PLAIN), List.of())));
+        assertUntouched(s, version);
+        assertFalse(s.applyDelta(delta(List.of(), List.of(), List.of(-1))));
+        assertUntouched(s, version);
+    }
+
+    @Test
+    void rejectsTerrainCountMismatch() {
+        ClientGameState s = state();
+        int version = s.getVersion();
+        assertFalse(s.applyDelta(delta(List.of(0, 1), List.of(TerrainType.PLAIN), List.of())));
+        assertUntouched(s, version);
+        assertNull(s.getTerrainAt(0, 0));
+    }
+}